@@ -52,9 +52,10 @@ public class Chunk
     private int posFirstChar;
     private int posLastChar;
     private String content;
-    private double[] embeddings;
+    private float[] embeddings;
     private String errorMessage;
     private String storeHint;
+    private String embeddingKey;
 
     @Inject
     private Logger logger;
@@ -124,6 +125,25 @@ public class Chunk
         this.storeHint = storeHint;
     }
 
+    /**
+     * @return the key of the model and configuration that computed the embedding of this chunk, embeddings are only
+     * reused for chunks with the same key
+     * @since 0.9.1
+     */
+    public String getEmbeddingKey()
+    {
+        return this.embeddingKey;
+    }
+
+    /**
+     * @param embeddingKey the key of the model and configuration that computed the embedding of this chunk
+     * @since 0.9.1
+     */
+    public void setEmbeddingKey(String embeddingKey)
+    {
+        this.embeddingKey = embeddingKey;
+    }
+
     /**
      * @return the error message if computing or embedding the chunk failed, the embedding should be empty when the
      * error message is set
@@ -225,9 +245,9 @@ public class Chunk
     /**
      * Getter for the embeddings.
      *
-     * @return the embeddings as double array
+     * @return the embeddings as float array
      */
-    public double[] getEmbeddings()
+    public float[] getEmbeddings()
     {
         return embeddings;
     }
@@ -313,9 +333,9 @@ public class Chunk
     }
 
     /**
-     * @param embeddings the embeddings as double array
+     * @param embeddings the embeddings as float array
      */
-    public void setEmbeddings(double[] embeddings)
+    public void setEmbeddings(float[] embeddings)
     {
         this.embeddings = embeddings;
     }
@@ -387,6 +407,7 @@ public class Chunk
             .append(getEmbeddings(), chunk.getEmbeddings())
             .append(getErrorMessage(), chunk.getErrorMessage())
             .append(getStoreHint(), chunk.getStoreHint())
+            .append(getEmbeddingKey(), chunk.getEmbeddingKey())
             .isEquals();
     }
 
@@ -406,6 +427,7 @@ public class Chunk
             .append(getEmbeddings())
             .append(getErrorMessage())
             .append(getStoreHint())
+            .append(getEmbeddingKey())
             .toHashCode();
     }
 }
@@ -19,21 +19,24 @@
  */
 package org.xwiki.contrib.llm;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.OptionalInt;
 import java.util.function.Function;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.function.FailableConsumer;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.internal.ChunkBoundaryIndex;
+import org.xwiki.contrib.llm.internal.CollectionSnapshotCache;
 
 import com.xpn.xwiki.XWikiContext;
 
@@ -46,17 +49,11 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class ChunkingUtils
 {
-    private static final String HEADING_REGEX = "^( *=+[^=\n]|#+|(?:[^\n]*\n(?:=+|-+)$))";
-
-    private static final Pattern HEADING_PATTERN = Pattern.compile(HEADING_REGEX, Pattern.MULTILINE);
-
-    private static final List<String> SEPARATORS = List.of("\n\n", "\n", ". ", " ");
-
     @Inject
     private Provider<Chunk> chunkProvider;
 
     @Inject
-    private CollectionManager collectionManager;
+    private CollectionSnapshotCache collectionSnapshotCache;
 
     @Inject
     private Logger logger;
@@ -74,7 +71,7 @@ public class ChunkingUtils
     {
         Collection collection;
         try {
-            collection = collectionManager.getCollection(document.getCollection());
+            collection = this.collectionSnapshotCache.get(document.getCollection());
             return chunkDocument(collection, document).stream()
                 .collect(Collectors.toMap(Chunk::getChunkIndex, Function.identity()));
         } catch (IndexException e) {
@@ -93,64 +90,169 @@ public class ChunkingUtils
      */
     public List<Chunk> chunkDocument(Collection collection, Document document)
         throws IndexException
+    {
+        List<Chunk> result = new ArrayList<>();
+        chunkDocument(collection, document, result::add);
+        return result;
+    }
+
+    /**
+     * Split the document of the given collection into chunks and pass every chunk to the given consumer as soon as it
+     * has been created. The content of the document is read incrementally, only a window of about the maximum chunk
+     * size is kept in memory.
+     *
+     * @param collection the collection the document is part of
+     * @param document the document whose content shall be chunked
+     * @param consumer the consumer of the chunks, in the order of the chunk index
+     * @throws IndexException if an error occurs while chunking the document, the chunking configuration is invalid or
+     *     the consumer failed
+     * @since 0.9.1
+     */
+    public void chunkDocument(Collection collection, Document document,
+        FailableConsumer<Chunk, IndexException> consumer) throws IndexException
     {
         int maxChunkSize = collection.getChunkingMaxSize();
         int offset = collection.getChunkingOverlapOffset();
 
         validateChunkSizeAndOffset(maxChunkSize, offset);
 
-        // get the document content
-        String content = document.getContent();
+        XWikiContext context = this.contextProvider.get();
 
-        // Initialize the chunks map
-        List<Chunk> result = new ArrayList<>();
+        try (Reader reader = document.getContentReader()) {
+            ContentWindow content = new ContentWindow(reader);
 
-        int start = 0;
-        int end;
-        int chunkIndex = 0;
+            int start = 0;
+            int end;
+            int chunkIndex = 0;
 
-        XWikiContext context = this.contextProvider.get();
-    
-        while (start < content.length()) {
-            // Find the next index to end the chunk
-            end = Math.min(start + maxChunkSize, content.length());
-    
-            // Extract the chunk content
-            String chunkContent = content.substring(start, end);
-
-            // Truncate the content to a semantic boundary if we're not at the end of the document, yet.
-            if (end < content.length()) {
-                OptionalInt truncateIndex = findGoodBoundaryAtEnd(chunkContent, maxChunkSize / 2);
-                if (truncateIndex.isPresent()) {
-                    end = start + truncateIndex.getAsInt();
-                    chunkContent = content.substring(start, end);
+            // Read one character more than the chunk to know if the chunk is at the end of the document.
+            while (content.fill(start + maxChunkSize + 1) > start) {
+                // Find the next index to end the chunk
+                end = Math.min(start + maxChunkSize, content.getEnd());
+                boolean atEnd = end == content.getEnd();
+
+                // Truncate the content to a semantic boundary if we're not at the end of the document, yet.
+                if (!atEnd) {
+                    OptionalInt truncateIndex = content.findBoundaryAtEnd(start, end, maxChunkSize / 2);
+                    if (truncateIndex.isPresent()) {
+                        end = truncateIndex.getAsInt();
+                        atEnd = end == content.getEnd();
+                    }
                 }
+
+                // Extract the chunk content
+                String chunkContent = content.substring(start, end);
+
+                Chunk chunk = chunkProvider.get();
+                chunk.initialize(document.getID(),
+                                document.getCollection(),
+                                document.getURL(),
+                                document.getLanguage(),
+                                start, end, chunkContent);
+                chunk.setChunkIndex(chunkIndex);
+                chunk.setWiki(context.getWikiId());
+                chunk.setStoreHint(collection.getDocumentStoreHint());
+                chunk.computeId();
+                consumer.accept(chunk);
+
+                // Prepare for the next iteration
+                if (!atEnd && offset > 0) {
+                    start = content.findBoundaryAtStart(end - offset, end, offset / 2).orElse(end - offset);
+                } else {
+                    start = end;
+                }
+                content.discardBefore(start);
+                chunkIndex++;
             }
+        } catch (IOException e) {
+            throw new IndexException("Failed to read the content of document [%s]".formatted(document.getID()), e);
+        }
+    }
 
-            Chunk chunk = chunkProvider.get();
-            chunk.initialize(document.getID(),
-                            document.getCollection(),
-                            document.getURL(),
-                            document.getLanguage(),
-                            start, end, chunkContent);
-            chunk.setChunkIndex(chunkIndex);
-            chunk.setWiki(context.getWikiId());
-            chunk.setStoreHint(collection.getDocumentStoreHint());
-            chunk.computeId();
-            result.add(chunk);
-    
-            // Prepare for the next iteration
-            if (end < content.length() && offset > 0) {
-                OptionalInt goodOverlap =
-                    findGoodBoundaryAtStart(chunkContent.substring(chunkContent.length() - offset), offset / 2);
-                start = end - offset + goodOverlap.orElse(0);
-            } else {
-                start = end;
+    /**
+     * The part of the content of a document that is needed for the current chunk, with the index of the semantic
+     * boundaries in it.
+     */
+    private static final class ContentWindow
+    {
+        private static final int BUFFER_SIZE = 8192;
+
+        private final Reader reader;
+
+        private final StringBuilder content = new StringBuilder();
+
+        private final char[] buffer = new char[BUFFER_SIZE];
+
+        private final ChunkBoundaryIndex boundaryIndex = new ChunkBoundaryIndex();
+
+        /**
+         * The offset of the first character of the window in the content of the document.
+         */
+        private int windowStart;
+
+        private boolean endReached;
+
+        ContentWindow(Reader reader)
+        {
+            this.reader = reader;
+        }
+
+        /**
+         * Read the content until the given offset or the end of the document.
+         *
+         * @return the offset after the last character that has been read
+         */
+        int fill(int end) throws IOException
+        {
+            while (!this.endReached && getEnd() < end) {
+                int read = this.reader.read(this.buffer);
+                if (read < 0) {
+                    this.endReached = true;
+                    this.boundaryIndex.finish();
+                } else {
+                    this.content.append(this.buffer, 0, read);
+                    this.boundaryIndex.scan(this.buffer, 0, read);
+                }
             }
-            chunkIndex++;
+            return getEnd();
+        }
+
+        /**
+         * @see ChunkBoundaryIndex#findBoundaryAtEnd(int, int, int)
+         */
+        OptionalInt findBoundaryAtEnd(int start, int end, int minimumLength) throws IOException
+        {
+            // Whether the last lines of the chunk are a heading can depend on the following line.
+            while (!this.endReached && this.boundaryIndex.getKnownEnd() < end) {
+                fill(getEnd() + 1);
+            }
+            return this.boundaryIndex.findBoundaryAtEnd(start, end, minimumLength);
+        }
+
+        /**
+         * @see ChunkBoundaryIndex#findBoundaryAtStart(int, int, int)
+         */
+        OptionalInt findBoundaryAtStart(int start, int end, int maximumLength)
+        {
+            return this.boundaryIndex.findBoundaryAtStart(start, end, maximumLength);
+        }
+
+        int getEnd()
+        {
+            return this.windowStart + this.content.length();
+        }
+
+        String substring(int start, int end)
+        {
+            return this.content.substring(start - this.windowStart, end - this.windowStart);
+        }
+
+        void discardBefore(int start)
+        {
+            this.content.delete(0, start - this.windowStart);
+            this.windowStart = start;
+            this.boundaryIndex.discardBefore(start);
         }
-    
-        return result;
     }
 
     private static void validateChunkSizeAndOffset(int maxChunkSize, int offset) throws IndexException
@@ -170,53 +272,4 @@ public class ChunkingUtils
             throw new IndexException("The overlap offset must be smaller than half of the maximum chunk size");
         }
     }
-
-    private OptionalInt findGoodBoundaryAtEnd(String chunk, int minimumIndex)
-    {
-        // Try finding a nicer chunk boundary. Try the following options in order:
-        // 1. The start of a section in XWiki syntax or Markdown.
-        // 2. A blank line.
-        // 3. A linebreak.
-        // 4. The end of a sentence (". ").
-        // 5. Any space.
-        // Truncate to the first option that still gives a chunk that has at least half of the maximum size length.
-
-        Matcher matcher = HEADING_PATTERN.matcher(chunk);
-        int headingIndex = -1;
-        // Find the last heading.
-        while (matcher.find()) {
-            headingIndex = matcher.start(1);
-        }
-        if (headingIndex > minimumIndex) {
-            return OptionalInt.of(headingIndex);
-        } else {
-            for (String separator : SEPARATORS) {
-                int separatorIndex = chunk.lastIndexOf(separator) + separator.length();
-                if (separatorIndex > minimumIndex) {
-                    return OptionalInt.of(separatorIndex);
-                }
-            }
-        }
-
-        return OptionalInt.empty();
-    }
-
-    private OptionalInt findGoodBoundaryAtStart(String chunk, int maximumIndex)
-    {
-        Matcher matcher = HEADING_PATTERN.matcher(chunk);
-        int headingIndex = matcher.find() ? matcher.start() : Integer.MAX_VALUE;
-        if (headingIndex < maximumIndex) {
-            return OptionalInt.of(headingIndex);
-        } else {
-            for (String separator : SEPARATORS) {
-                int separatorIndex = chunk.indexOf(separator);
-                if (separatorIndex > -1 && separatorIndex < maximumIndex) {
-                    return OptionalInt.of(separatorIndex + separator.length());
-                }
-            }
-        }
-
-        return OptionalInt.empty();
-    }
-
 }
@@ -112,6 +112,25 @@ public interface CollectionManager
         return similaritySearch(textQuery, collections, limitSemanticSimilarity + limitKeywordSearch);
     }
 
+    /**
+     * Perform a hybrid semantic similarity and keyword-based search and fuse the results of both searches.
+     *
+     * @param textQuery the text query
+     * @param collections the collections to search in
+     * @param limitSemanticSimilarity the maximum number of results to return from a semantic similarity search
+     * @param limitKeywordSearch the maximum number of results to return for the keyword search
+     * @param fusion the hint of the {@link SearchResultFusion} that combines the results of both searches
+     * @param semanticWeight the weight of the semantic similarity search results in the fusion
+     * @param keywordWeight the weight of the keyword search results in the fusion
+     * @return the fused results, best result first
+     * @since 0.9.1
+     */
+    default List<Context> hybridSearch(String textQuery, List<String> collections, int limitSemanticSimilarity,
+        int limitKeywordSearch, String fusion, double semanticWeight, double keywordWeight) throws IndexException
+    {
+        return hybridSearch(textQuery, collections, limitSemanticSimilarity, limitKeywordSearch);
+    }
+
     /**
      * @param collections the collections to filter
      * @return a list of collections that the user has access to
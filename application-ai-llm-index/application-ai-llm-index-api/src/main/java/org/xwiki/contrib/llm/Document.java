@@ -19,8 +19,11 @@
  */
 package org.xwiki.contrib.llm;
 
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
 
+import org.apache.commons.lang3.StringUtils;
 import org.xwiki.component.annotation.Role;
 import org.xwiki.model.reference.LocalDocumentReference;
 
@@ -106,6 +109,18 @@ public interface Document
      */
     String getContent();
 
+    /**
+     * Opens a reader on the content of the document. Implementations whose content is large or expensive to compute
+     * should return it incrementally, such that chunking the document doesn't need the whole content in memory.
+     *
+     * @return a reader on the document's content, the caller must close it
+     * @since 0.9.1
+     */
+    default Reader getContentReader()
+    {
+        return new StringReader(StringUtils.defaultString(getContent()));
+    }
+
     /**
      * Sets the id of the document.
      *
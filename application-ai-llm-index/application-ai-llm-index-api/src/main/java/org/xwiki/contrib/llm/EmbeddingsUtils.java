@@ -26,9 +26,14 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.function.FailableFunction;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.contrib.llm.internal.AiLLMSolrCoreInitializer;
+import org.xwiki.contrib.llm.internal.CacheKeyBuilder;
+import org.xwiki.contrib.llm.internal.EmbeddingBatcher;
+import org.xwiki.contrib.llm.internal.PersistentEmbeddingCache;
+import org.xwiki.contrib.llm.internal.QueryEmbeddingCache;
 import org.xwiki.model.reference.WikiReference;
 import org.xwiki.user.UserReference;
 
@@ -54,6 +59,15 @@ public class EmbeddingsUtils implements Initializable
     @Inject 
     private EmbeddingModelManager embeddingModelManager;
 
+    @Inject
+    private EmbeddingBatcher embeddingBatcher;
+
+    @Inject
+    private QueryEmbeddingCache queryEmbeddingCache;
+
+    @Inject
+    private PersistentEmbeddingCache persistentEmbeddingCache;
+
     private RetryRegistry retryRegistry;
 
     /**
@@ -63,30 +77,33 @@ public class EmbeddingsUtils implements Initializable
      * @param modelId the model id
      * @param userReference the user reference
      * @param purpose the purpose of the embeddings
-     * @return the embeddings as double array
+     * @return the embeddings as float array
      */
-    public double[] computeEmbeddings(String text,
-                                     String modelId,
-                                     UserReference userReference,
-                                     EmbeddingModel.EmbeddingPurpose purpose) throws IndexException
+    public float[] computeEmbeddings(String text,
+                                    String modelId,
+                                    UserReference userReference,
+                                    EmbeddingModel.EmbeddingPurpose purpose) throws IndexException
     {
         return computeEmbeddings(List.of(text), modelId, userReference, purpose).get(0);
     }
 
     /**
      * Compute embeddings for given texts.
+     * <p>
+     * Texts that are embedded for indexing are sent together with the texts of concurrent calls for the same wiki and
+     * model to make better use of the capacity of the model. Embeddings of queries are cached.
      *
      * @param texts the texts to compute embeddings for
      * @param modelId the model id
      * @param userReference the user reference
      * @param purpose the purpose of the embeddings
-     * @return the embeddings as list of double arrays
+     * @return the embeddings as list of float arrays
      * @throws IndexException if an error occurs while computing the embeddings
      */
-    public List<double[]> computeEmbeddings(List<String> texts,
-                                         String modelId,
-                                         UserReference userReference,
-                                         EmbeddingModel.EmbeddingPurpose purpose)
+    public List<float[]> computeEmbeddings(List<String> texts,
+                                        String modelId,
+                                        UserReference userReference,
+                                        EmbeddingModel.EmbeddingPurpose purpose)
         throws IndexException
     {
         try {
@@ -97,20 +114,62 @@ public class EmbeddingsUtils implements Initializable
             // Make sure that the same model on different wikis has different retry objects.
             String retryId = wikiReference.getName() + ":" + modelId;
             Retry retry = this.retryRegistry.retry(retryId);
-            List<double[]> embeddingsFull;
-            if (texts.size() == 1) {
-                embeddingsFull = retry.executeCallable(() -> List.of(embeddingModel.embed(texts.get(0), purpose)));
+            FailableFunction<List<String>, List<float[]>, Exception> embedder =
+                batchTexts -> retry.executeCallable(() -> embeddingModel.embedFloat(batchTexts, purpose)).stream()
+                    .map(EmbeddingsUtils::fitDimensions)
+                    .toList();
+            if (purpose == EmbeddingModel.EmbeddingPurpose.INDEX) {
+                return this.persistentEmbeddingCache.get(wikiReference.getName(), modelId,
+                    embeddingModel.getConfigurationKey(), embeddingModel.getPrefix(purpose), texts,
+                    missingTexts -> this.embeddingBatcher.embed(wikiReference.getName(), modelId, purpose,
+                        embeddingModel.getMaximumParallelism(), missingTexts, embedder));
+            } else if (purpose == EmbeddingModel.EmbeddingPurpose.QUERY) {
+                return this.queryEmbeddingCache.get(wikiReference.getName(), modelId,
+                    embeddingModel.getConfigurationKey(), embeddingModel.getPrefix(purpose), texts, embedder);
             } else {
-                embeddingsFull = retry.executeCallable(() -> embeddingModel.embed(texts, purpose));
+                return embedder.apply(texts);
             }
-            return embeddingsFull.stream()
-                .map(embeddings -> Arrays.copyOf(embeddings, AiLLMSolrCoreInitializer.NUMBER_OF_DIMENSIONS))
-                .toList();
         } catch (Exception e) {
             throw new IndexException("Failed to compute embeddings for texts [" + texts + "]", e);
         }
     }
 
+    /**
+     * Get the key of the model and configuration that compute the embeddings of indexed texts. Embeddings that were
+     * computed with a different key mustn't be reused, e.g., after the model of a collection changed.
+     *
+     * @param modelId the model id
+     * @param userReference the user reference for which the model shall be loaded
+     * @return the key of the model and configuration that compute the embeddings of indexed texts
+     * @throws IndexException if an error occurs while loading the model
+     * @since 0.9.1
+     */
+    public String getEmbeddingKey(String modelId, UserReference userReference) throws IndexException
+    {
+        WikiReference wikiReference = this.contextProvider.get().getWikiReference();
+        try {
+            EmbeddingModel embeddingModel = this.embeddingModelManager.getModel(wikiReference, modelId, userReference);
+            return new CacheKeyBuilder()
+                .append(modelId)
+                .append(embeddingModel.getConfigurationKey())
+                .append(embeddingModel.getPrefix(EmbeddingModel.EmbeddingPurpose.INDEX))
+                .build();
+        } catch (GPTAPIException e) {
+            throw new IndexException("Failed to get the model [" + modelId + "]", e);
+        }
+    }
+
+    /**
+     * Solr requires vectors of exactly the configured number of dimensions, only copy when this isn't the case.
+     */
+    private static float[] fitDimensions(float[] embeddings)
+    {
+        if (embeddings.length == AiLLMSolrCoreInitializer.NUMBER_OF_DIMENSIONS) {
+            return embeddings;
+        }
+        return Arrays.copyOf(embeddings, AiLLMSolrCoreInitializer.NUMBER_OF_DIMENSIONS);
+    }
+
     /**
      * Get the maximum number of texts that can be processed in parallel by the model.
      *
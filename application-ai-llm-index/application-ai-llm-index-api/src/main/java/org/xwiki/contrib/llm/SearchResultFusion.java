@@ -0,0 +1,50 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm;
+
+import java.util.List;
+
+import org.xwiki.component.annotation.Role;
+import org.xwiki.contrib.llm.openai.Context;
+import org.xwiki.stability.Unstable;
+
+/**
+ * Fuses the results of the semantic similarity search and of the keyword search of a hybrid search into a single
+ * ranking. Implementations are identified by their hint, the default one concatenates the results.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Role
+@Unstable
+public interface SearchResultFusion
+{
+    /**
+     * Fuse the given results. Results with the same content are only returned once.
+     *
+     * @param semanticResults the results of the semantic similarity search, best result first
+     * @param keywordResults the results of the keyword search, best result first
+     * @param semanticWeight the weight of the semantic similarity search results
+     * @param keywordWeight the weight of the keyword search results
+     * @return the fused results, best result first, with the fused score as similarity score
+     */
+    List<Context> fuse(List<Context> semanticResults, List<Context> keywordResults, double semanticWeight,
+        double keywordWeight);
+}
@@ -21,8 +21,6 @@ package org.xwiki.contrib.llm;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -42,6 +40,9 @@ import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.llm.internal.AiLLMSolrCoreInitializer;
 import org.xwiki.contrib.llm.internal.InternalDocumentStore;
+import org.xwiki.contrib.llm.internal.SolrCommitCoordinator;
+import org.xwiki.contrib.llm.internal.TopResults;
+import org.xwiki.contrib.llm.internal.VectorCodec;
 import org.xwiki.contrib.llm.openai.Context;
 import org.xwiki.search.solr.Solr;
 import org.xwiki.search.solr.SolrException;
@@ -76,6 +77,29 @@ public class SolrConnector
 
     private static final String PARENTHESIS_CLOSE = ")";
 
+    /**
+     * The number of chunks that are loaded per request when loading all chunks of a document, large enough to load
+     * the chunks of most documents in a single request.
+     */
+    private static final int CHUNK_PAGE_SIZE = 1000;
+
+    private static final String[] CHUNK_FIELDS = {
+        FIELD_ID,
+        AiLLMSolrCoreInitializer.FIELD_DOC_ID,
+        AiLLMSolrCoreInitializer.FIELD_COLLECTION,
+        AiLLMSolrCoreInitializer.FIELD_WIKI,
+        AiLLMSolrCoreInitializer.FIELD_DOC_URL,
+        AiLLMSolrCoreInitializer.FIELD_LANGUAGE,
+        AiLLMSolrCoreInitializer.FIELD_INDEX,
+        AiLLMSolrCoreInitializer.FIELD_POS_FIRST_CHAR,
+        AiLLMSolrCoreInitializer.FIELD_POS_LAST_CHAR,
+        AiLLMSolrCoreInitializer.FIELD_CONTENT,
+        AiLLMSolrCoreInitializer.FIELD_ERROR_MESSAGE,
+        AiLLMSolrCoreInitializer.FIELD_STORE_HINT,
+        AiLLMSolrCoreInitializer.FIELD_EMBEDDING_KEY,
+        AiLLMSolrCoreInitializer.FIELD_VECTOR_DATA
+    };
+
     @Inject
     private Logger logger;
 
@@ -94,6 +118,9 @@ public class SolrConnector
     @Inject
     private Provider<Chunk> chunkProvider;
 
+    @Inject
+    private SolrCommitCoordinator commitCoordinator;
+
     /**
      * Connects to the Solr server and stores a chunk.
      * If a chunk with the same id exists, it will be updated.
@@ -115,6 +142,9 @@ public class SolrConnector
 
     /**
      * Connects to the Solr server and stores a list of chunks.
+     * <p>
+     * The chunks become visible to searches with the next soft commit, which happens within a second. Use
+     * {@link #ensureVisible(String, String, String)} to see them immediately.
      *
      * @param chunks the list of chunks to be stored
      */
@@ -125,10 +155,29 @@ public class SolrConnector
             // Don't commit changes explicitly to avoid the performance impact of committing, just ask Solr to commit
             // within 10 seconds.
             client.add(solrDocuments, 10000);
-            // Trigger a soft commit to ensure that the chunks are available for search.
-            client.commit(null, false, true, true);
-
         }
+        // Let the commit coordinator trigger a soft commit to make the chunks available for search.
+        for (Chunk chunk : chunks) {
+            this.commitCoordinator.markWritten(chunk.getWiki(), chunk.getCollection(), chunk.getDocumentID());
+        }
+    }
+
+    /**
+     * Make sure that all changes to the chunks of the given document are visible, committing pending changes if
+     * necessary.
+     *
+     * @param wiki the wiki in which the document is stored
+     * @param collectionId the id of the collection the document is part of
+     * @param documentId the id of the document
+     * @throws SolrServerException if committing the changes failed
+     * @throws IOException if committing the changes failed
+     * @throws SolrException if the Solr core couldn't be accessed
+     * @since 0.9.1
+     */
+    public void ensureVisible(String wiki, String collectionId, String documentId)
+        throws SolrServerException, IOException, SolrException
+    {
+        this.commitCoordinator.ensureVisible(wiki, collectionId, documentId);
     }
 
     private SolrInputDocument getSolrDocument(Chunk chunk)
@@ -147,15 +196,14 @@ public class SolrConnector
         solrDocument.addField(AiLLMSolrCoreInitializer.FIELD_POS_LAST_CHAR, chunk.getPosLastChar());
         solrDocument.addField(AiLLMSolrCoreInitializer.FIELD_ERROR_MESSAGE, chunk.getErrorMessage());
         solrDocument.addField(AiLLMSolrCoreInitializer.FIELD_STORE_HINT, chunk.getStoreHint());
+        solrDocument.addField(AiLLMSolrCoreInitializer.FIELD_EMBEDDING_KEY, chunk.getEmbeddingKey());
         solrDocument.addField(AiLLMSolrCoreInitializer.FIELD_CONTENT, chunk.getContent());
         solrDocument.addField(AiLLMSolrCoreInitializer.FIELD_CONTENT_INDEX, chunk.getContent());
-        double[] embeddings = chunk.getEmbeddings();
+        float[] embeddings = chunk.getEmbeddings();
         // The embeddings could be null if we got an error and want to store the error.
         if (embeddings != null) {
-            List<Float> embeddingsList = Arrays.stream(embeddings)
-                .mapToObj(d -> (float) d)
-                .toList();
-            solrDocument.setField(AiLLMSolrCoreInitializer.FIELD_VECTOR, embeddingsList);
+            solrDocument.setField(AiLLMSolrCoreInitializer.FIELD_VECTOR, VectorCodec.asList(embeddings));
+            solrDocument.setField(AiLLMSolrCoreInitializer.FIELD_VECTOR_DATA, VectorCodec.toBytes(embeddings));
         }
         return solrDocument;
     }
@@ -187,6 +235,7 @@ public class SolrConnector
         String query = buildQuery(wiki, collectionId, documentId);
         try {
             deleteChunksByQuery(query);
+            this.commitCoordinator.markWritten(wiki, collectionId, documentId);
         } catch (Exception e) {
             this.logger.error("Failed to delete chunks of document [{}] in collection [{}] in wiki [{}]",
                 documentId, collectionId, wiki, e);
@@ -206,6 +255,7 @@ public class SolrConnector
         String query = buildQuery(wiki, collectionId, documentId) + AND + buildStoreQuery(storeId);
         try {
             deleteChunksByQuery(query);
+            this.commitCoordinator.markWritten(wiki, collectionId, documentId);
         } catch (Exception e) {
             this.logger.error("Failed to delete chunks of document [{}] and store [{}] in collection [{}] in wiki [{}]",
                 documentId, storeId, collectionId, wiki, e);
@@ -239,7 +289,7 @@ public class SolrConnector
             + AiLLMSolrCoreInitializer.FIELD_DOC_ID + SOLR_SEPARATOR
             + this.solrUtils.toCompleteFilterQueryString(documentId);
         try {
-            deleteChunksByQuery(query);
+            deleteAllChunksByQuery(query);
         } catch (Exception e) {
             this.logger.error("Failed to delete chunks of document [{}] with store hint [{}]",
                 documentId, storeHint, e);
@@ -262,7 +312,7 @@ public class SolrConnector
             PARENTHESIS_OPEN + query + PARENTHESIS_CLOSE
         );
         try {
-            deleteChunksByQuery(fullQuery);
+            deleteAllChunksByQuery(fullQuery);
         } catch (Exception e) {
             this.logger.error("Failed to delete chunks in collection [{}] in wiki [{}] with query [{}]",
                 collectionId, wiki, query, e);
@@ -288,6 +338,8 @@ public class SolrConnector
         query.addFilterQuery(filterQuery);
         query.addFilterQuery(queryString);
         query.setRows(endChunk - startChunk);
+        // Load only the fields of the chunk, including the binary vector.
+        query.setFields(CHUNK_FIELDS);
 
         try (SolrClient client = this.solr.getCore(AiLLMSolrCoreInitializer.DEFAULT_AILLM_SOLR_CORE).getClient()) {
             QueryResponse response = client.query(query);
@@ -302,6 +354,44 @@ public class SolrConnector
         }
     }
 
+    /**
+     * Get all chunks of a document.
+     *
+     * @param wiki the wiki to get the chunks from
+     * @param collectionId the collection to get the chunks from
+     * @param documentId the document to get the chunks from
+     * @return the chunks of the document in no particular order
+     */
+    public List<Chunk> getChunks(String wiki, String collectionId, String documentId)
+    {
+        SolrQuery query = new SolrQuery();
+        query.addFilterQuery(buildQuery(wiki, collectionId, documentId));
+        // Load only the fields of the chunk, including the binary vector.
+        query.setFields(CHUNK_FIELDS);
+        // Sort by id to get a stable order over the pages.
+        query.setSort(FIELD_ID, SolrQuery.ORDER.asc);
+        query.setRows(CHUNK_PAGE_SIZE);
+
+        try (SolrClient client = this.solr.getCore(AiLLMSolrCoreInitializer.DEFAULT_AILLM_SOLR_CORE).getClient()) {
+            List<Chunk> chunks = new ArrayList<>();
+            long numberOfChunks;
+            do {
+                query.setStart(chunks.size());
+                SolrDocumentList documents = client.query(query).getResults();
+                numberOfChunks = documents.getNumFound();
+                if (documents.isEmpty()) {
+                    break;
+                }
+                documents.stream().map(this::toChunk).forEach(chunks::add);
+            } while (chunks.size() < numberOfChunks);
+            return chunks;
+        } catch (Exception e) {
+            this.logger.error("Failed to get the chunks of document [{}] in collection [{}] in wiki [{}]",
+                documentId, collectionId, wiki, e);
+            return List.of();
+        }
+    }
+
     private Chunk toChunk(SolrDocument solrDocument)
     {
         Chunk result = this.chunkProvider.get();
@@ -318,14 +408,10 @@ public class SolrConnector
         result.setChunkIndex((Integer) solrDocument.getFieldValue(AiLLMSolrCoreInitializer.FIELD_INDEX));
         result.setErrorMessage((String) solrDocument.getFieldValue(AiLLMSolrCoreInitializer.FIELD_ERROR_MESSAGE));
         result.setStoreHint((String) solrDocument.getFieldValue(AiLLMSolrCoreInitializer.FIELD_STORE_HINT));
+        result.setEmbeddingKey((String) solrDocument.getFieldValue(AiLLMSolrCoreInitializer.FIELD_EMBEDDING_KEY));
         result.setId((String) solrDocument.getFieldValue(FIELD_ID));
-        List<?> vectorField = (List<?>) solrDocument.getFieldValue(AiLLMSolrCoreInitializer.FIELD_VECTOR);
-        if (vectorField != null) {
-            result.setEmbeddings(vectorField.stream()
-                .map(String.class::cast)
-                .mapToDouble(Double::parseDouble)
-                .toArray());
-        }
+        result.setEmbeddings(
+            VectorCodec.fromFieldValue(solrDocument.getFieldValue(AiLLMSolrCoreInitializer.FIELD_VECTOR_DATA)));
         return result;
     }
 
@@ -344,6 +430,7 @@ public class SolrConnector
         String query = documentQuery + AND + indexQuery;
         try {
             deleteChunksByQuery(query);
+            this.commitCoordinator.markWritten(wiki, collectionId, documentId);
         } catch (Exception e) {
             this.logger.error(
                 "Failed to delete chunks starting with index [{}] of document [{}] in collection [{}] in wiki [{}]",
@@ -368,6 +455,7 @@ public class SolrConnector
         String query = documentQuery + AND + indexQuery;
         try {
             deleteChunksByQuery(query);
+            this.commitCoordinator.markWritten(wiki, collectionId, documentId);
         } catch (Exception e) {
             this.logger.error("Failed to delete chunks [{}] - [{}] of document [{}] in collection [{}] in wiki [{}]",
                 startChunk, endChunk, documentId, collectionId, wiki, e);
@@ -379,12 +467,16 @@ public class SolrConnector
         try (SolrClient client = this.solr.getCore(AiLLMSolrCoreInitializer.DEFAULT_AILLM_SOLR_CORE).getClient()) {
             // Ask for an actual commit within 10 seconds to avoid the cost of a hard commit.
             client.deleteByQuery(query, 10000);
-            // Trigger an explicit soft commit to ensure that the chunks are really gone when we search for them
-            // while checking if we should re-embed a chunk.
-            client.commit(null, false, true, true);
         }
     }
 
+    private void deleteAllChunksByQuery(String query) throws IOException, SolrServerException, SolrException
+    {
+        deleteChunksByQuery(query);
+        // The query isn't limited to a single document, make sure that all readers see the deletion.
+        this.commitCoordinator.markWritten();
+    }
+
     /**
      * Filter the given document ids to only return those for which at least one chunk has been indexed.
      *
@@ -409,6 +501,8 @@ public class SolrConnector
                 .collect(Collectors.joining(OR_DELIMITER, PARENTHESIS_OPEN, PARENTHESIS_CLOSE)));
 
         try (SolrClient client = this.solr.getCore(AiLLMSolrCoreInitializer.DEFAULT_AILLM_SOLR_CORE).getClient()) {
+            // Make sure that chunks deleted with the collection or a query aren't reported as existing.
+            this.commitCoordinator.ensureVisible();
             QueryResponse response = client.query(query);
             SolrDocumentList documents = response.getResults();
             return documents.stream()
@@ -432,7 +526,7 @@ public class SolrConnector
         String query = buildWikiQuery(wiki) + AND + AiLLMSolrCoreInitializer.FIELD_COLLECTION + SOLR_SEPARATOR
             + this.solrUtils.toCompleteFilterQueryString(collectionId);
         try {
-            deleteChunksByQuery(query);
+            deleteAllChunksByQuery(query);
         } catch (Exception e) {
             this.logger.error("Failed to delete chunks of collection [{}] in wiki [{}]", collectionId, wiki, e);
         }
@@ -463,7 +557,7 @@ public class SolrConnector
     public void clearIndexCore() throws SolrServerException
     {
         try {
-            deleteChunksByQuery("*:*");
+            deleteAllChunksByQuery("*:*");
         } catch (Exception e) {
             throw new SolrServerException("Failed to clear index core", e);
         }
@@ -493,9 +587,11 @@ public class SolrConnector
                             AiLLMSolrCoreInitializer.FIELD_POS_FIRST_CHAR,
                             AiLLMSolrCoreInitializer.FIELD_POS_LAST_CHAR,
                             AiLLMSolrCoreInitializer.FIELD_CONTENT,
-                            FIELD_SCORE,
-                            AiLLMSolrCoreInitializer.FIELD_VECTOR
+                            FIELD_SCORE
                             );
+            if (includeVector) {
+                query.addField(AiLLMSolrCoreInitializer.FIELD_VECTOR_DATA);
+            }
             query.setRows(limit);
             QueryResponse response = client.query(query);
             SolrDocumentList documents = response.getResults();
@@ -518,12 +614,12 @@ public class SolrConnector
                                                Map<String, String> collectionEmbeddingModelMap,
                                                int limit) throws SolrServerException
     {
-        List<Context> resultsList = new ArrayList<>();
-
         if (limit <= 0) {
-            return resultsList;
+            return new ArrayList<>();
         }
-        
+
+        // Keep the best results over all embedding models in a bounded heap.
+        TopResults topResults = new TopResults(limit);
         try (SolrClient client = solr.getCore(AiLLMSolrCoreInitializer.DEFAULT_AILLM_SOLR_CORE).getClient()) {
             // split embeddingModelMap into sets of collections with the same embedding model
             Map<String, List<String>> embeddingModelCollectionsMap = collectionEmbeddingModelMap.entrySet().stream()
@@ -535,7 +631,7 @@ public class SolrConnector
             for (Map.Entry<String, List<String>> entry : embeddingModelCollectionsMap.entrySet()) {
                 String embeddingsModelID = entry.getKey();
                 List<String> collectionsWithSameEmbeddingModel = entry.getValue();
-                double[] queryEmbeddings = embeddingsUtils.computeEmbeddings(textQuery,
+                float[] queryEmbeddings = embeddingsUtils.computeEmbeddings(textQuery,
                                                                             embeddingsModelID,
                                                                             CurrentUserReference.INSTANCE,
                                                                             EmbeddingModel.EmbeddingPurpose.QUERY);
@@ -543,21 +639,13 @@ public class SolrConnector
                 SolrQuery query = prepareQuery(embeddingsAsString, collectionsWithSameEmbeddingModel, limit);
                 QueryResponse response = client.query(query);
                 SolrDocumentList documents = response.getResults();
-                resultsList.addAll(collectResults(documents, false));
-
-                //order the resultsList in desc order of FIELD_SCORE
-                resultsList.sort(Comparator.comparingDouble(Context::similarityScore).reversed());
-
-                //limit the resultsList to the specified limit
-                if (resultsList.size() > limit) {
-                    resultsList = resultsList.subList(0, limit);
-                }
+                topResults.addAll(collectResults(documents, false));
             }
 
         } catch (Exception e) {
             logger.error("Similarity search failed: {}", e.getMessage(), e);
         }
-        return resultsList;
+        return new ArrayList<>(topResults.toList());
     }
 
     /**
@@ -594,8 +682,12 @@ public class SolrConnector
     private SolrQuery prepareQuery(String embeddingsAsString, List<String> collections, int limit)
     {
         SolrQuery query = new SolrQuery();
+        // The filter queries on the wiki and the collections are applied as pre-filters of the kNN query such that
+        // the topK nearest neighbors are searched only among the chunks that can be returned.
         query.addFilterQuery(buildWikiQuery(this.contextProvider.get().getWikiId()));
-        query.setQuery(String.format("{!knn f=vector topK=%s}%s", limit, embeddingsAsString));
+        query.setQuery("{!knn f=" + AiLLMSolrCoreInitializer.FIELD_VECTOR + " topK=" + limit + "}"
+            + embeddingsAsString);
+        query.setRows(limit);
 
         addCollectionsQuery(collections, query);
 
@@ -633,7 +725,6 @@ public class SolrConnector
 
     private List<Context> collectResults(SolrDocumentList documents, boolean includeVector)
     {
-        //noinspection unchecked
         return documents.stream()
             .map(document -> new Context(
                 String.valueOf(document.getFieldValue(AiLLMSolrCoreInitializer.FIELD_COLLECTION)),
@@ -643,28 +734,37 @@ public class SolrConnector
                 document.getFieldValue(FIELD_SCORE) instanceof Number numericScore
                     ? numericScore.doubleValue()
                     : Double.parseDouble(String.valueOf(document.getFieldValue(FIELD_SCORE))),
-                includeVector ? (List<Float>) document.getFieldValue(AiLLMSolrCoreInitializer.FIELD_VECTOR) : null
+                includeVector ? getVector(document) : null
             ))
             .toList();
     }
 
+    private static List<Float> getVector(SolrDocument document)
+    {
+        float[] vector =
+            VectorCodec.fromFieldValue(document.getFieldValue(AiLLMSolrCoreInitializer.FIELD_VECTOR_DATA));
+        return vector != null ? VectorCodec.asList(vector) : null;
+    }
+
     /**
-     * Converts a double array to a string representation.
+     * Converts a float array to the compact string representation expected by the kNN query parser, using the
+     * shortest decimal representation of each value and no whitespace.
      *
      * @param array the array to convert
      * @return the string representation of the array
      */
-    private String arrayToString(double[] array)
+    private static String arrayToString(float[] array)
     {
-        StringBuilder sb = new StringBuilder();
+        // Most values need at most 12 characters including the separator.
+        StringBuilder sb = new StringBuilder(array.length * 12 + 2);
         sb.append(RANGE_START);
         for (int i = 0; i < array.length; i++) {
             if (i > 0) {
-                sb.append(", ");
+                sb.append(',');
             }
             sb.append(array[i]);
         }
-        sb.append("]");
+        sb.append(']');
         return sb.toString();
     }
 }
@@ -23,16 +23,63 @@ import org.xwiki.contrib.llm.internal.authorization.ExternalAuthorizationManager
 import org.xwiki.stability.Unstable;
 
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
  * Configuration for {@link ExternalAuthorizationManagerBuilder}.
  *
  * @param url the URL of the external authorization API
+ * @param cacheDuration the number of seconds for which granted access is cached, 0 to disable caching
+ * @param negativeCacheDuration the number of seconds for which denied access is cached, 0 to disable caching
  * @version $Id$
  * @since 0.3
  */
 @Unstable
 @JsonAutoDetect(creatorVisibility = JsonAutoDetect.Visibility.ANY)
-public record ExternalAuthorizationConfiguration(String url)
+public record ExternalAuthorizationConfiguration(String url, int cacheDuration, int negativeCacheDuration)
 {
+    /**
+     * The default number of seconds for which granted access is cached.
+     *
+     * @since 0.9.1
+     */
+    public static final int DEFAULT_CACHE_DURATION = 60;
+
+    /**
+     * The default number of seconds for which denied access is cached.
+     *
+     * @since 0.9.1
+     */
+    public static final int DEFAULT_NEGATIVE_CACHE_DURATION = 30;
+
+    /**
+     * Creates a configuration with the default cache durations.
+     *
+     * @param url the URL of the external authorization API
+     */
+    public ExternalAuthorizationConfiguration(String url)
+    {
+        this(url, DEFAULT_CACHE_DURATION, DEFAULT_NEGATIVE_CACHE_DURATION);
+    }
+
+    /**
+     * Used when deserializing the configuration, such that configurations without cache durations, e.g., those
+     * that were serialized before the cache durations were introduced, use the default cache durations.
+     *
+     * @param url the URL of the external authorization API
+     * @param cacheDuration the number of seconds for which granted access is cached, or {@code null} for the default
+     * @param negativeCacheDuration the number of seconds for which denied access is cached, or {@code null} for the
+     *     default
+     * @return the configuration
+     */
+    @JsonCreator
+    private static ExternalAuthorizationConfiguration fromJSON(@JsonProperty("url") String url,
+        @JsonProperty("cacheDuration") Integer cacheDuration,
+        @JsonProperty("negativeCacheDuration") Integer negativeCacheDuration)
+    {
+        return new ExternalAuthorizationConfiguration(url,
+            cacheDuration != null ? cacheDuration : DEFAULT_CACHE_DURATION,
+            negativeCacheDuration != null ? negativeCacheDuration : DEFAULT_NEGATIVE_CACHE_DURATION);
+    }
 }
@@ -24,6 +24,7 @@ import java.io.IOException;
 import javax.inject.Named;
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.function.FailableFunction;
 import org.apache.solr.client.solrj.SolrQuery;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.apache.solr.client.solrj.response.QueryResponse;
@@ -106,10 +107,18 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
     public static final String FIELD_CONTENT_INDEX = "content_index";
 
     /**
-     * The name of the field that stores the vector embedding of the chunk.
+     * The name of the field that indexes the vector embedding of the chunk for the similarity search. The vector isn't
+     * stored in this field, use {@link #FIELD_VECTOR_DATA} to retrieve it.
      */
     public static final String FIELD_VECTOR = "vector";
 
+    /**
+     * The name of the field that stores the vector embedding of the chunk as binary data for retrieval.
+     *
+     * @since 0.9.1
+     */
+    public static final String FIELD_VECTOR_DATA = "vectorData";
+
     /**
      * The name of the field that stores the error message if there is any.
      */
@@ -120,6 +129,13 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
      */
     public static final String FIELD_STORE_HINT = "storeHint";
 
+    /**
+     * The name of the field that stores the key of the model and configuration that computed the embedding.
+     *
+     * @since 0.9.1
+     */
+    public static final String FIELD_EMBEDDING_KEY = "embeddingKey";
+
     private static final String FIELD_TYPE_KNN_VECTOR = "knn_vector";
 
     // Last version that required a re-index, after that there are currently only field additions
@@ -132,7 +148,19 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
 
     private static final long STORE_HINT_VERSION = 121000005;
 
-    private static final long CURRENT_VERSION = 121000006;
+    private static final long CONTENT_INDEX_VERSION = 121000006;
+
+    private static final long VECTOR_DATA_VERSION = 121000007;
+
+    private static final long EMBEDDING_KEY_VERSION = 121000008;
+
+    private static final long CURRENT_VERSION = 121000009;
+
+    /**
+     * The number of documents per batch when migrating the vectors, smaller than for other migrations as every
+     * document contains a vector.
+     */
+    private static final int VECTOR_MIGRATION_BATCH_ROWS = 500;
 
     private static final String SOLR_DENSE_VECTOR_FIELD = "solr.DenseVectorField";
 
@@ -196,7 +224,7 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
             this.addStringField(FIELD_STORE_HINT, false, false);
         }
 
-        if (cversion < CURRENT_VERSION) {
+        if (cversion < CONTENT_INDEX_VERSION) {
             // Add another version of the text field, but indexed as regular text.
             this.setTextGeneralField(FIELD_CONTENT_INDEX, false, false);
 
@@ -204,6 +232,26 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
                 indexOldContent();
             }
         }
+
+        if (cversion < VECTOR_DATA_VERSION) {
+            // Chunks indexed before this version only have the dense vector field, they are migrated below.
+            this.addBinaryField(FIELD_VECTOR_DATA, false);
+        }
+
+        if (cversion < EMBEDDING_KEY_VERSION) {
+            // The embeddings of chunks indexed before this version aren't reused as their model is unknown.
+            this.addStringField(FIELD_EMBEDDING_KEY, false, false);
+        }
+
+        if (cversion < CURRENT_VERSION) {
+            // Only store the vector in the binary field, the dense vector field is only needed for the kNN search.
+            // Chunks indexed before the binary field was introduced only have the dense vector field, so copy it
+            // before it stops being stored.
+            if (!create) {
+                storeOldVectorData();
+            }
+            this.setField(FIELD_VECTOR, FIELD_TYPE_KNN_VECTOR, false, false, "stored", false);
+        }
     }
 
     /**
@@ -214,7 +262,47 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
     private void indexOldContent() throws SolrException
     {
         // Query all documents and set the FIELD_CONTENT_INDEX from the CONTENT field.
-        int batchSize = getMigrationBatchRows();
+        migrateDocuments(getMigrationBatchRows(), document -> {
+            if (document.get(FIELD_CONTENT_INDEX) == null) {
+                SolrInputDocument targetDocument = new SolrInputDocument();
+                migrate(document, targetDocument);
+                targetDocument.setField(FIELD_CONTENT_INDEX, document.get(FIELD_CONTENT));
+                return targetDocument;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Store the vector of chunks that were indexed before the binary vector field was introduced in it.
+     *
+     * @throws SolrException if the indexing fails
+     */
+    private void storeOldVectorData() throws SolrException
+    {
+        migrateDocuments(VECTOR_MIGRATION_BATCH_ROWS, document -> {
+            Object vector = document.get(FIELD_VECTOR);
+            // Chunks with an error message have no vector at all.
+            if (document.get(FIELD_VECTOR_DATA) == null && vector != null) {
+                SolrInputDocument targetDocument = new SolrInputDocument();
+                migrate(document, targetDocument);
+                targetDocument.setField(FIELD_VECTOR_DATA, VectorCodec.toBytes(VectorCodec.fromFieldValue(vector)));
+                return targetDocument;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Query all documents in batches and update the documents for which the given function returns a new version.
+     *
+     * @param batchSize the number of documents per batch
+     * @param migration returns the updated document, or {@code null} if the document doesn't need to be updated
+     * @throws SolrException if the indexing fails
+     */
+    private void migrateDocuments(int batchSize,
+        FailableFunction<SolrDocument, SolrInputDocument, SolrException> migration) throws SolrException
+    {
         int size;
         int start = 0;
         do {
@@ -235,27 +323,17 @@ public class AiLLMSolrCoreInitializer extends AbstractSolrCoreInitializer
             size = result.size();
             start += size;
 
-            if (size > 0) {
-                migrateData(response.getResults());
-            }
-        } while (size == batchSize);
-    }
-
-    private void migrateData(SolrDocumentList results) throws SolrException
-    {
-        for (SolrDocument document : results) {
-            if (document.get(FIELD_CONTENT_INDEX) == null) {
-                SolrInputDocument targetDocument = new SolrInputDocument();
-                migrate(document, targetDocument);
-                targetDocument.setField(FIELD_CONTENT_INDEX, document.get(FIELD_CONTENT));
-
-                try {
-                    this.core.getClient().add(targetDocument);
-                } catch (SolrServerException | IOException e) {
-                    throw new SolrException("Failed to update the document with the new field.", e);
+            for (SolrDocument document : result) {
+                SolrInputDocument targetDocument = migration.apply(document);
+                if (targetDocument != null) {
+                    try {
+                        this.core.getClient().add(targetDocument);
+                    } catch (SolrServerException | IOException e) {
+                        throw new SolrException("Failed to update the document with the new field.", e);
+                    }
                 }
             }
-        }
+        } while (size == batchSize);
     }
 
     @Override
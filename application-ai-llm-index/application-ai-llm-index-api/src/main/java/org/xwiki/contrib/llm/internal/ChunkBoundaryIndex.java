@@ -0,0 +1,372 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
+
+/**
+ * Index of the semantic boundaries in the content of a document that is used to decide where chunks end and where
+ * the overlap of the next chunk starts.
+ *
+ * <p>The content is scanned only once while it is read, recording the start of headings in XWiki syntax or Markdown,
+ * blank lines, line breaks, sentence ends ({@code ". "}) and spaces by their offset in the document. Finding a
+ * boundary is a binary search in these offsets, so chunking is linear in the length of the document. Offsets before
+ * the current chunk can be discarded to keep memory bounded.</p>
+ *
+ * <p>A heading is a line that starts with {@code #}, with {@code =} followed by a title (optionally after spaces),
+ * or a line that is followed by a line of only {@code =} or only {@code -}. A boundary is only used for a chunk when
+ * the characters that identify it are part of the chunk.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public class ChunkBoundaryIndex
+{
+    private static final int NO_LINE = -1;
+
+    private static final char NEW_LINE = '\n';
+
+    private static final char SPACE = ' ';
+
+    /**
+     * The state of the heading detection for the current line before it is known if it is a heading.
+     */
+    private enum LineState
+    {
+        /** Only spaces have been seen. */
+        START,
+        /** Spaces followed by at least one {@code =} have been seen. */
+        EQUALS,
+        /** It is known if the line is a heading or not. */
+        DONE
+    }
+
+    private final Boundaries headings = new Boundaries(0);
+
+    private final Boundaries paragraphs = new Boundaries(2);
+
+    private final Boundaries lines = new Boundaries(1);
+
+    private final Boundaries sentences = new Boundaries(2);
+
+    private final Boundaries spaces = new Boundaries(1);
+
+    /**
+     * The boundaries in the order of preference.
+     */
+    private final List<Boundaries> boundaries = List.of(this.headings, this.paragraphs, this.lines, this.sentences,
+        this.spaces);
+
+    /**
+     * The offset after the last scanned character.
+     */
+    private int end;
+
+    private char previousCharacter;
+
+    private int lineStart;
+
+    private LineState lineState = LineState.START;
+
+    private boolean lineIsHeading;
+
+    /**
+     * The start of the previous line if it can still become a heading by being followed by a line of only {@code =}
+     * or only {@code -}, or {@link #NO_LINE}.
+     */
+    private int headingCandidateStart = NO_LINE;
+
+    /**
+     * The offset of the line break that ends the heading candidate.
+     */
+    private int headingCandidateEnd;
+
+    /**
+     * The character the current line consists of if it can still underline the heading candidate, or {@code 0} if
+     * the line is still empty.
+     */
+    private char underlineCharacter;
+
+    /**
+     * A sorted list of boundaries of one kind with the offset until which a chunk must extend to use them.
+     */
+    private static final class Boundaries
+    {
+        /**
+         * The offset of the boundary relative to the start of the characters that identify it.
+         */
+        private final int length;
+
+        private int[] starts = new int[16];
+
+        /**
+         * The offset after the characters that identify the boundary, never decreasing.
+         */
+        private int[] ends = new int[16];
+
+        private int first;
+
+        private int size;
+
+        Boundaries(int length)
+        {
+            this.length = length;
+        }
+
+        void add(int start, int end)
+        {
+            if (this.size == this.starts.length) {
+                if (this.first > this.size / 2) {
+                    // Reuse the space of the discarded boundaries.
+                    System.arraycopy(this.starts, this.first, this.starts, 0, this.size - this.first);
+                    System.arraycopy(this.ends, this.first, this.ends, 0, this.size - this.first);
+                    this.size -= this.first;
+                    this.first = 0;
+                } else {
+                    this.starts = Arrays.copyOf(this.starts, this.size * 2);
+                    this.ends = Arrays.copyOf(this.ends, this.size * 2);
+                }
+            }
+            this.starts[this.size] = start;
+            this.ends[this.size] = end;
+            this.size++;
+        }
+
+        void discardBefore(int offset)
+        {
+            while (this.first < this.size && this.starts[this.first] < offset) {
+                this.first++;
+            }
+        }
+
+        /**
+         * @return the last boundary whose identifying characters end at or before the given offset, or {@code -1}
+         */
+        int findLast(int limit)
+        {
+            int next = findFirstIndex(this.ends, limit + 1);
+            return next > this.first ? this.starts[next - 1] + this.length : -1;
+        }
+
+        /**
+         * @return the first boundary whose identifying characters start at or after the given offset if they end at
+         *     or before the given limit, or {@code -1}
+         */
+        int findFirst(int offset, int limit)
+        {
+            int next = findFirstIndex(this.starts, offset);
+            return next < this.size && this.ends[next] <= limit ? this.starts[next] + this.length : -1;
+        }
+
+        /**
+         * @return the index of the first of the sorted values that isn't smaller than the given minimum
+         */
+        private int findFirstIndex(int[] values, int minimum)
+        {
+            int low = this.first;
+            int high = this.size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] < minimum) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Scan the next characters of the content.
+     *
+     * @param characters the buffer that contains the characters
+     * @param offset the offset of the first character in the buffer
+     * @param length the number of characters to scan
+     */
+    public void scan(char[] characters, int offset, int length)
+    {
+        for (int i = offset; i < offset + length; i++) {
+            scan(characters[i]);
+        }
+    }
+
+    private void scan(char character)
+    {
+        int position = this.end++;
+
+        if (character == NEW_LINE) {
+            if (this.previousCharacter == NEW_LINE) {
+                this.paragraphs.add(position - 1, position + 1);
+            }
+            this.lines.add(position, position + 1);
+        } else if (character == SPACE) {
+            if (this.previousCharacter == '.') {
+                this.sentences.add(position - 1, position + 1);
+            }
+            this.spaces.add(position, position + 1);
+        }
+
+        scanUnderline(character);
+        scanHeading(character, position);
+
+        if (character == NEW_LINE) {
+            this.headingCandidateStart = this.lineIsHeading ? NO_LINE : this.lineStart;
+            this.headingCandidateEnd = position;
+            this.underlineCharacter = 0;
+            this.lineStart = position + 1;
+            this.lineState = LineState.START;
+            this.lineIsHeading = false;
+        }
+
+        this.previousCharacter = character;
+    }
+
+    private void scanUnderline(char character)
+    {
+        if (this.headingCandidateStart == NO_LINE) {
+            return;
+        }
+
+        if (character == NEW_LINE) {
+            if (this.underlineCharacter != 0) {
+                addUnderlinedHeading();
+            }
+        } else if (this.underlineCharacter == 0 && (character == '=' || character == '-')) {
+            this.underlineCharacter = character;
+        } else if (character != this.underlineCharacter) {
+            this.headingCandidateStart = NO_LINE;
+        }
+    }
+
+    private void addUnderlinedHeading()
+    {
+        // The underline needs to start in the chunk for the heading to be recognized.
+        this.headings.add(this.headingCandidateStart, this.headingCandidateEnd + 2);
+        this.headingCandidateStart = NO_LINE;
+    }
+
+    private void scanHeading(char character, int position)
+    {
+        switch (this.lineState) {
+            case START:
+                if (character == '#' && position == this.lineStart) {
+                    addHeading(position);
+                } else if (character == '=') {
+                    this.lineState = LineState.EQUALS;
+                } else if (character != SPACE) {
+                    this.lineState = LineState.DONE;
+                }
+                break;
+            case EQUALS:
+                if (character == NEW_LINE) {
+                    this.lineState = LineState.DONE;
+                } else if (character != '=') {
+                    addHeading(position);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addHeading(int position)
+    {
+        this.headings.add(this.lineStart, position + 1);
+        this.lineIsHeading = true;
+        this.lineState = LineState.DONE;
+    }
+
+    /**
+     * Mark the end of the content, such that a last line of only {@code =} or {@code -} is recognized as underline.
+     */
+    public void finish()
+    {
+        if (this.headingCandidateStart != NO_LINE && this.underlineCharacter != 0) {
+            addUnderlinedHeading();
+        }
+        this.headingCandidateStart = NO_LINE;
+    }
+
+    /**
+     * The boundaries of a chunk are only complete when this offset isn't before the end of the chunk. This can be
+     * before the end of the scanned content if the last line could still turn out to underline a heading.
+     *
+     * @return the offset until which all boundaries are known
+     */
+    public int getKnownEnd()
+    {
+        return this.headingCandidateStart != NO_LINE ? this.headingCandidateEnd + 1 : this.end;
+    }
+
+    /**
+     * Find the best boundary to end a chunk. Headings are preferred, then blank lines, line breaks, sentence ends and
+     * finally spaces. The chunk is truncated after the separator characters, or before the heading.
+     *
+     * @param start the start of the chunk
+     * @param end the end of the chunk
+     * @param minimumLength the length that the truncated chunk must exceed
+     * @return the offset at which the chunk should end, if there is a boundary that gives a long enough chunk
+     */
+    public OptionalInt findBoundaryAtEnd(int start, int end, int minimumLength)
+    {
+        for (Boundaries candidates : this.boundaries) {
+            int boundary = candidates.findLast(end);
+            if (boundary - start > minimumLength) {
+                return OptionalInt.of(boundary);
+            }
+        }
+
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Find the best boundary to start the overlap of the next chunk, using the same preferences as
+     * {@link #findBoundaryAtEnd(int, int, int)}.
+     *
+     * @param start the start of the overlap
+     * @param end the end of the overlap, i.e., the end of the previous chunk
+     * @param maximumLength the length that the characters before the boundary must be shorter than
+     * @return the offset at which the next chunk should start, if there is a boundary close enough to the start
+     */
+    public OptionalInt findBoundaryAtStart(int start, int end, int maximumLength)
+    {
+        for (Boundaries candidates : this.boundaries) {
+            int boundary = candidates.findFirst(start, end);
+            if (boundary >= 0 && boundary - candidates.length - start < maximumLength) {
+                return OptionalInt.of(boundary);
+            }
+        }
+
+        return OptionalInt.empty();
+    }
+
+    /**
+     * Discard the boundaries that start before the given offset as they aren't needed anymore.
+     *
+     * @param offset the start of the next chunk
+     */
+    public void discardBefore(int offset)
+    {
+        this.boundaries.forEach(candidates -> candidates.discardBefore(offset));
+    }
+}
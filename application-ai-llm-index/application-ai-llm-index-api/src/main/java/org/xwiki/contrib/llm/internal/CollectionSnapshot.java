@@ -0,0 +1,325 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+import java.util.Set;
+
+import org.xwiki.contrib.llm.Collection;
+import org.xwiki.contrib.llm.DocumentStore;
+import org.xwiki.contrib.llm.IndexException;
+import org.xwiki.contrib.llm.authorization.AuthorizationManager;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.user.UserReference;
+
+/**
+ * An immutable snapshot of the configuration of a collection, shared by all users until the collection changes.
+ *
+ * <p>The values are read once from the collection document. The authorization manager is built once, too, as
+ * authorization managers check the rights of the user of the current context when they are called. Modifying the
+ * snapshot isn't supported, use {@link org.xwiki.contrib.llm.CollectionManager#getCollection(String)} to get a
+ * collection that can be modified.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public final class CollectionSnapshot implements Collection
+{
+    private static final String READ_ONLY_MESSAGE = "Collection snapshots are read-only";
+
+    private final Collection collection;
+
+    private final String id;
+
+    private final String title;
+
+    private final String embeddingModel;
+
+    private final String chunkingMethod;
+
+    private final String chunkingLLMModel;
+
+    private final int chunkingMaxSize;
+
+    private final int chunkingOverlapOffset;
+
+    private final String documentStoreHint;
+
+    private final List<String> documentSpaces;
+
+    private final boolean allowGuests;
+
+    private final String queryGroups;
+
+    private final Set<DocumentReference> allowedGroups;
+
+    private final String rightsCheckMethod;
+
+    private final UserReference author;
+
+    private final DocumentReference documentReference;
+
+    private final long documentId;
+
+    private final AuthorizationManager authorizationManager;
+
+    private final IndexException authorizationManagerException;
+
+    /**
+     * @param collection the collection to take the snapshot of, only used to get document stores afterward
+     * @param allowedGroups the resolved groups of {@link Collection#getQueryGroups()}
+     */
+    public CollectionSnapshot(Collection collection, Set<DocumentReference> allowedGroups)
+    {
+        this.collection = collection;
+        this.id = collection.getID();
+        this.title = collection.getTitle();
+        this.embeddingModel = collection.getEmbeddingModel();
+        this.chunkingMethod = collection.getChunkingMethod();
+        this.chunkingLLMModel = collection.getChunkingLLMModel();
+        this.chunkingMaxSize = collection.getChunkingMaxSize();
+        this.chunkingOverlapOffset = collection.getChunkingOverlapOffset();
+        this.documentStoreHint = collection.getDocumentStoreHint();
+        List<String> spaces = collection.getDocumentSpaces();
+        this.documentSpaces = spaces != null ? List.copyOf(spaces) : List.of();
+        this.allowGuests = collection.getAllowGuests();
+        this.queryGroups = collection.getQueryGroups();
+        this.allowedGroups = Set.copyOf(allowedGroups);
+        this.rightsCheckMethod = collection.getRightsCheckMethod();
+        this.author = collection.getAuthor();
+        this.documentReference = collection.getDocumentReference();
+        this.documentId = collection.getDocumentId();
+
+        AuthorizationManager builtAuthorizationManager = null;
+        IndexException buildException = null;
+        try {
+            builtAuthorizationManager = collection.getAuthorizationManager();
+        } catch (IndexException e) {
+            buildException = e;
+        }
+        this.authorizationManager = builtAuthorizationManager;
+        this.authorizationManagerException = buildException;
+    }
+
+    @Override
+    public String getID()
+    {
+        return this.id;
+    }
+
+    @Override
+    public String getTitle()
+    {
+        return this.title;
+    }
+
+    @Override
+    public String getEmbeddingModel()
+    {
+        return this.embeddingModel;
+    }
+
+    @Override
+    public String getChunkingMethod()
+    {
+        return this.chunkingMethod;
+    }
+
+    @Override
+    public String getChunkingLLMModel()
+    {
+        return this.chunkingLLMModel;
+    }
+
+    @Override
+    public int getChunkingMaxSize()
+    {
+        return this.chunkingMaxSize;
+    }
+
+    @Override
+    public int getChunkingOverlapOffset()
+    {
+        return this.chunkingOverlapOffset;
+    }
+
+    @Override
+    public String getDocumentStoreHint()
+    {
+        return this.documentStoreHint;
+    }
+
+    @Override
+    public DocumentStore getDocumentStore() throws IndexException
+    {
+        // Document stores are stateful, so get a new one every time.
+        return this.collection.getDocumentStore();
+    }
+
+    @Override
+    public List<String> getDocumentSpaces()
+    {
+        return this.documentSpaces;
+    }
+
+    @Override
+    public boolean getAllowGuests()
+    {
+        return this.allowGuests;
+    }
+
+    @Override
+    public String getQueryGroups()
+    {
+        return this.queryGroups;
+    }
+
+    /**
+     * @return the groups whose members can query the collection
+     */
+    public Set<DocumentReference> getAllowedGroups()
+    {
+        return this.allowedGroups;
+    }
+
+    @Override
+    public String getRightsCheckMethod()
+    {
+        return this.rightsCheckMethod;
+    }
+
+    @Override
+    public UserReference getAuthor()
+    {
+        return this.author;
+    }
+
+    @Override
+    public DocumentReference getDocumentReference()
+    {
+        return this.documentReference;
+    }
+
+    @Override
+    public long getDocumentId()
+    {
+        return this.documentId;
+    }
+
+    @Override
+    public AuthorizationManager getAuthorizationManager() throws IndexException
+    {
+        if (this.authorizationManagerException != null) {
+            throw this.authorizationManagerException;
+        }
+
+        return this.authorizationManager;
+    }
+
+    @Override
+    public Object getAuthorizationConfiguration() throws IndexException
+    {
+        return this.collection.getAuthorizationConfiguration();
+    }
+
+    @Override
+    public Class<?> getAuthorizationConfigurationType() throws IndexException
+    {
+        return this.collection.getAuthorizationConfigurationType();
+    }
+
+    @Override
+    public void setID(String id)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setTitle(String title)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setEmbeddingModel(String embeddingModel)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setChunkingMethod(String chunkingMethod)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setChunkingLLMModel(String chunkingLLMModel)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setChunkingMaxSize(int chunkingMaxSize)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setChunkingOverlapOffset(int chunkingOverlapOffset)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setDocumentSpaces(List<String> documentSpaces)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setAllowGuests(boolean allowGuests)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setQueryGroups(String queryGroups)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setRightsCheckMethod(String rightsCheckMethod)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void setAuthorizationConfiguration(Object authorizationConfiguration)
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+
+    @Override
+    public void save()
+    {
+        throw new UnsupportedOperationException(READ_ONLY_MESSAGE);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.Collection;
+import org.xwiki.contrib.llm.CollectionManager;
+import org.xwiki.contrib.llm.IndexException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Cache of {@link CollectionSnapshot}s by wiki and collection id, such that searches and indexing don't need to load
+ * and parse the collection document every time.
+ *
+ * <p>Snapshots are invalidated by {@link CollectionSnapshotInvalidationListener} when the collection document is
+ * created, updated or deleted. As there are few collections per wiki, all snapshots are kept.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = CollectionSnapshotCache.class)
+@Singleton
+public class CollectionSnapshotCache
+{
+    @Inject
+    private Provider<CollectionManager> collectionManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    private final Map<String, CollectionSnapshot> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation to detect invalidations that happen while a collection is loaded.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Get the snapshot of a collection of the current wiki. This doesn't check any rights.
+     *
+     * @param id the id of the collection
+     * @return the read-only snapshot of the collection, or {@code null} if the collection doesn't exist
+     * @throws IndexException if loading the collection failed
+     */
+    public Collection get(String id) throws IndexException
+    {
+        String key = getKey(this.contextProvider.get().getWikiId(), id);
+        CollectionSnapshot snapshot = this.snapshots.get(key);
+        if (snapshot == null) {
+            long invalidationsBefore = this.invalidations.get();
+            Collection collection = this.collectionManagerProvider.get().getCollection(id);
+            if (collection == null) {
+                return null;
+            }
+            snapshot = new CollectionSnapshot(collection, resolveGroups(collection.getQueryGroups()));
+            // Don't keep the snapshot if a collection was modified while loading or caching it as it might be outdated.
+            this.snapshots.put(key, snapshot);
+            if (this.invalidations.get() != invalidationsBefore) {
+                this.snapshots.remove(key, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * @param groups the comma-separated list of group references
+     * @return the resolved group references
+     */
+    public Set<DocumentReference> resolveGroups(String groups)
+    {
+        return Arrays.stream(StringUtils.split(StringUtils.defaultString(groups), ','))
+            .map(String::trim)
+            .filter(StringUtils::isNotEmpty)
+            .map(this.documentReferenceResolver::resolve)
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * Remove the snapshot of a collection.
+     *
+     * @param wiki the wiki of the collection
+     * @param id the id of the collection
+     */
+    public void invalidate(String wiki, String id)
+    {
+        this.invalidations.incrementAndGet();
+        this.snapshots.remove(getKey(wiki, id));
+    }
+
+    /**
+     * Remove the snapshots of all collections of a wiki.
+     *
+     * @param wiki the wiki whose snapshots shall be removed
+     */
+    public void invalidateWiki(String wiki)
+    {
+        this.invalidations.incrementAndGet();
+        String prefix = new CacheKeyBuilder().append(wiki).build();
+        this.snapshots.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    private static String getKey(String wiki, String id)
+    {
+        return new CacheKeyBuilder().append(wiki).append(id).build();
+    }
+}
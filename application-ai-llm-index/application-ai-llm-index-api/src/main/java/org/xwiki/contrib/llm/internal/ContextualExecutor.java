@@ -0,0 +1,139 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.context.concurrent.ContextStoreManager;
+
+/**
+ * A bounded executor that runs tasks with the wiki, user, author and locale of the thread that submitted them.
+ *
+ * <p>Tasks get a fresh execution context in which these values are restored, so they can look up wiki components
+ * like embedding models and check rights like the submitting thread. Tasks must not wait for other tasks of this
+ * executor to avoid exhausting the pool.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = ContextualExecutor.class)
+@Singleton
+public class ContextualExecutor implements Initializable, Disposable
+{
+    /**
+     * The number of threads of the executor. Most tasks wait for remote servers, so use more threads than cores.
+     */
+    static final int POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+    private static final List<String> CONTEXT_ENTRIES = List.of("wiki", "user", "author", "locale");
+
+    @Inject
+    private ContextStoreManager contextStoreManager;
+
+    @Inject
+    private ExecutionContextManager executionContextManager;
+
+    @Inject
+    private Execution execution;
+
+    private ThreadPoolExecutor executor;
+
+    @Override
+    public void initialize()
+    {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
+                .namingPattern("LLM worker %d")
+                .daemon(true)
+                .build());
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = threadPoolExecutor;
+    }
+
+    /**
+     * Check if submitted tasks are waiting for a thread, e.g., because documents are being indexed. Callers that are
+     * waiting for the result of a task, like searches, should rather run the task themselves in this case.
+     *
+     * @return {@code true} if all threads are busy and tasks are waiting in the queue
+     */
+    public boolean hasQueuedTasks()
+    {
+        return !this.executor.getQueue().isEmpty();
+    }
+
+    /**
+     * Run the given task asynchronously with the context of the current thread.
+     *
+     * @param task the task to run
+     * @param <T> the type of the result of the task
+     * @return a future that is completed with the result of the task, or exceptionally with the exception thrown by
+     *     the task
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task)
+    {
+        Map<String, Serializable> contextStore;
+        try {
+            contextStore = this.contextStoreManager.save(CONTEXT_ENTRIES);
+        } catch (ComponentLookupException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                this.executionContextManager.initialize(new ExecutionContext());
+                try {
+                    this.contextStoreManager.restore(contextStore);
+                    return task.call();
+                } finally {
+                    this.execution.removeContext();
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, this.executor);
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+}
@@ -28,6 +28,7 @@ import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.Collection;
 import org.xwiki.contrib.llm.IndexException;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.security.authorization.AuthorizationException;
@@ -100,6 +101,17 @@ public class CurrentUserCollectionManager extends DefaultCollectionManager
         }
     }
 
+    @Override
+    protected Collection getCollectionSnapshot(String name) throws IndexException
+    {
+        try {
+            this.contextualAuthorizationManager.checkAccess(Right.VIEW, getDocumentReference(name));
+            return super.getCollectionSnapshot(name);
+        } catch (AuthorizationException e) {
+            throw new IndexException("You do not have the right to view this collection", e);
+        }
+    }
+
     @Override
     public void deleteCollection(String name, boolean deleteDocuments) throws IndexException
     {
@@ -21,41 +21,44 @@ package org.xwiki.contrib.llm.internal;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.function.FailableIntFunction;
 import org.apache.solr.client.solrj.SolrServerException;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.llm.Collection;
 import org.xwiki.contrib.llm.CollectionManager;
 import org.xwiki.contrib.llm.DocumentStore;
 import org.xwiki.contrib.llm.IndexException;
+import org.xwiki.contrib.llm.SearchResultFusion;
 import org.xwiki.contrib.llm.SolrConnector;
 import org.xwiki.contrib.llm.authorization.AuthorizationManager;
 import org.xwiki.contrib.llm.openai.Context;
 import org.xwiki.model.reference.DocumentReference;
-import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.SpaceReference;
 import org.xwiki.query.Query;
 import org.xwiki.query.QueryException;
 import org.xwiki.query.QueryManager;
 import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.user.group.GroupException;
-import org.xwiki.user.group.GroupManager;
-import org.xwiki.user.group.WikiTarget;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.XWikiException;
@@ -69,6 +72,22 @@ import com.xpn.xwiki.doc.XWikiDocument;
 @Singleton
 public class DefaultCollectionManager implements CollectionManager
 {
+    private static final String DEFAULT_HINT = "default";
+
+    /**
+     * The maximum number of results that are fetched from Solr for a search, as a multiple of the requested number of
+     * results, when results need to be filtered out because the user cannot view them.
+     */
+    private static final int MAX_OVER_FETCH_FACTOR = 5;
+
+    /**
+     * The maximum number of times Solr is queried for a single search to refill filtered out results.
+     */
+    private static final int MAX_FETCH_ROUNDS = 3;
+
+    private static final Comparator<Context> SCORE_DESCENDING =
+        Comparator.comparingDouble(Context::similarityScore).reversed();
+
     @Inject
     protected Provider<XWikiContext> contextProvider;
 
@@ -82,13 +101,26 @@ public class DefaultCollectionManager implements CollectionManager
     private SolrConnector solrConnector;
 
     @Inject
-    private Logger logger;
+    private ContextualExecutor executor;
+
+    @Inject
+    private SearchPassRatioTracker passRatioTracker;
+
+    @Inject
+    private CollectionSnapshotCache snapshotCache;
 
     @Inject
-    private GroupManager groupManager;
+    private SearchResultFusion defaultSearchResultFusion;
 
     @Inject
-    private DocumentReferenceResolver<String> documentReferenceResolver;
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private Logger logger;
+
+    @Inject
+    private UserGroupsCache userGroupsCache;
 
     @Override
     public DefaultCollection createCollection(String id) throws IndexException
@@ -155,6 +187,18 @@ public class DefaultCollectionManager implements CollectionManager
         }
     }
 
+    /**
+     * Get the cached, read-only snapshot of a collection for searching and checking access.
+     *
+     * @param id the id of the collection
+     * @return the snapshot of the collection, or {@code null} if the collection doesn't exist
+     * @throws IndexException if loading the collection failed
+     */
+    protected Collection getCollectionSnapshot(String id) throws IndexException
+    {
+        return this.snapshotCache.get(id);
+    }
+
     @Override
     public void deleteCollection(String id, boolean deleteDocuments) throws IndexException
     {
@@ -215,7 +259,14 @@ public class DefaultCollectionManager implements CollectionManager
     public List<Context> hybridSearch(String textQuery, List<String> collections, int limitSemanticSimilarity,
         int limitKeywordSearch) throws IndexException
     {
-        Map<String, DefaultCollection> collectionMap = getAccessibleCollections(collections);
+        return hybridSearch(textQuery, collections, limitSemanticSimilarity, limitKeywordSearch, DEFAULT_HINT, 1, 1);
+    }
+
+    @Override
+    public List<Context> hybridSearch(String textQuery, List<String> collections, int limitSemanticSimilarity,
+        int limitKeywordSearch, String fusion, double semanticWeight, double keywordWeight) throws IndexException
+    {
+        Map<String, Collection> collectionMap = getAccessibleCollections(collections);
 
         Map<String, AuthorizationManager> authorizationManagerMap = getAuthorizationManagerMap(collectionMap);
 
@@ -228,24 +279,149 @@ public class DefaultCollectionManager implements CollectionManager
             return List.of();
         }
 
-        try {
-            List<Context> semanticResults = this.solrConnector.similaritySearch(textQuery, collectionEmbeddingModelMap,
-                limitSemanticSimilarity);
-            List<Context> keywordResults = this.solrConnector.keywordSearch(textQuery,
-                collectionEmbeddingModelMap.keySet(), limitKeywordSearch);
+        // Run the similarity searches of all but one embedding model in the background while the keyword search and
+        // the remaining similarity search run on the request thread. This keeps the latency close to the one of the
+        // slowest search without making the common case of a single embedding model wait for a thread of the
+        // executor that is shared with indexing. When the executor is busy, e.g., with indexing, the searches run on
+        // the request thread instead of waiting behind the queued tasks. Each search filters out the results the user
+        // cannot view and fetches more results until the requested number of results is reached.
+        String wiki = this.contextProvider.get().getWikiId();
+        Map<String, Map<String, String>> collectionsByEmbeddingModel = collectionEmbeddingModelMap.entrySet().stream()
+            .collect(Collectors.groupingBy(Map.Entry::getValue,
+                Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        List<Map<String, String>> modelCollectionsList = new ArrayList<>(collectionsByEmbeddingModel.values());
+        List<Map<String, String>> requestThreadSearches =
+            new ArrayList<>(List.of(modelCollectionsList.get(modelCollectionsList.size() - 1)));
+        List<CompletableFuture<List<Context>>> semanticSearches = new ArrayList<>();
+        for (Map<String, String> modelCollections : modelCollectionsList.subList(0, modelCollectionsList.size() - 1)) {
+            if (this.executor.hasQueuedTasks()) {
+                requestThreadSearches.add(modelCollections);
+            } else {
+                semanticSearches.add(this.executor.submit(() -> searchSemantic(wiki, textQuery, modelCollections,
+                    limitSemanticSimilarity, authorizationManagerMap)));
+            }
+        }
+        List<Context> keywordResults =
+            searchAuthorized(wiki, collectionEmbeddingModelMap.keySet(), limitKeywordSearch, authorizationManagerMap,
+                fetchSize -> this.solrConnector.keywordSearch(textQuery, collectionEmbeddingModelMap.keySet(),
+                    fetchSize));
+
+        // Keep the best results over all embedding models.
+        TopResults topSemanticResults = new TopResults(limitSemanticSimilarity);
+        for (Map<String, String> modelCollections : requestThreadSearches) {
+            topSemanticResults.addAll(searchSemantic(wiki, textQuery, modelCollections, limitSemanticSimilarity,
+                authorizationManagerMap));
+        }
+        for (CompletableFuture<List<Context>> semanticSearch : semanticSearches) {
+            topSemanticResults.addAll(getSearchResults(semanticSearch));
+        }
+        List<Context> semanticResults = topSemanticResults.toList();
 
-            Set<String> uniqueContent = new HashSet<>();
-            List<Context> results = Stream.concat(semanticResults.stream(), keywordResults.stream())
-                .filter(context -> uniqueContent.add(context.content()))
-                .toList();
+        List<Context> results = new ArrayList<>(
+            getSearchResultFusion(fusion).fuse(semanticResults, keywordResults, semanticWeight, keywordWeight));
+        results.sort(SCORE_DESCENDING);
+        return results;
+    }
 
-            return filterSearchResults(results, authorizationManagerMap);
-        } catch (SolrServerException e) {
-            throw new IndexException("Failed to perform similarity search", e);
+    private List<Context> searchSemantic(String wiki, String textQuery, Map<String, String> modelCollections,
+        int limit, Map<String, AuthorizationManager> authorizationManagers) throws IndexException
+    {
+        return searchAuthorized(wiki, modelCollections.keySet(), limit, authorizationManagers,
+            fetchSize -> this.solrConnector.similaritySearch(textQuery, modelCollections, fetchSize));
+    }
+
+    /**
+     * Runs a search and keeps only the results the user can view. When results are filtered out, the search is
+     * repeated with a larger number of results until the requested number of results is reached, the search has no
+     * further results or the budget of {@link #MAX_OVER_FETCH_FACTOR} times the requested results is exhausted. The
+     * initial number of fetched results is based on the share of results that passed the check in previous searches.
+     *
+     * @param wiki the wiki of the collections
+     * @param collections the searched collections
+     * @param limit the requested number of results
+     * @param authorizationManagers the authorization managers of the collections
+     * @param search the search, taking the number of results to fetch and returning the best results first
+     * @return at most {@code limit} results the user can view, best results first
+     * @throws IndexException if the search failed
+     */
+    private List<Context> searchAuthorized(String wiki, java.util.Collection<String> collections, int limit,
+        Map<String, AuthorizationManager> authorizationManagers,
+        FailableIntFunction<List<Context>, SolrServerException> search) throws IndexException
+    {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        int budget = limit * MAX_OVER_FETCH_FACTOR;
+        int fetchSize = getFetchSize(limit, this.passRatioTracker.getPassRatio(wiki, collections), budget);
+        Set<Context> checkedResults = new HashSet<>();
+        TopResults authorizedResults = new TopResults(limit);
+        int authorizedCount = 0;
+        for (int round = 1;; ++round) {
+            List<Context> results;
+            try {
+                results = search.apply(fetchSize);
+            } catch (SolrServerException e) {
+                throw new IndexException("Failed to search the collections", e);
+            }
+            // Larger searches return the results of the previous searches again, check only the new ones.
+            List<Context> newResults = results.stream().filter(checkedResults::add).toList();
+            List<Context> passedResults = filterSearchResults(newResults, authorizationManagers);
+            recordPassRatios(wiki, newResults, passedResults);
+            authorizedResults.addAll(passedResults);
+            authorizedCount += passedResults.size();
+
+            int missing = limit - authorizedCount;
+            if (missing <= 0 || results.size() < fetchSize || fetchSize >= budget || round >= MAX_FETCH_ROUNDS) {
+                break;
+            }
+
+            double passRatio = (double) authorizedCount / checkedResults.size();
+            fetchSize = fetchSize + getFetchSize(missing, passRatio, budget - fetchSize);
+        }
+
+        return authorizedResults.toList();
+    }
+
+    private static int getFetchSize(int missing, double passRatio, int maxFetchSize)
+    {
+        double ratio = Math.max(SearchPassRatioTracker.MIN_PASS_RATIO, passRatio);
+        return (int) Math.min(maxFetchSize, Math.ceil(missing / ratio));
+    }
+
+    private void recordPassRatios(String wiki, List<Context> checkedResults, List<Context> passedResults)
+    {
+        Map<String, Long> checkedCounts = checkedResults.stream()
+            .collect(Collectors.groupingBy(Context::collectionId, Collectors.counting()));
+        Map<String, Long> passedCounts = passedResults.stream()
+            .collect(Collectors.groupingBy(Context::collectionId, Collectors.counting()));
+        checkedCounts.forEach((collection, checked) -> this.passRatioTracker.record(wiki, collection,
+            checked.intValue(), passedCounts.getOrDefault(collection, 0L).intValue()));
+    }
+
+    private SearchResultFusion getSearchResultFusion(String hint)
+    {
+        if (StringUtils.isNotBlank(hint) && !DEFAULT_HINT.equals(hint)) {
+            try {
+                return this.componentManagerProvider.get().getInstance(SearchResultFusion.class, hint);
+            } catch (ComponentLookupException e) {
+                this.logger.warn("Failed to get the search result fusion [{}], concatenating the results instead: [{}]",
+                    hint, ExceptionUtils.getRootCauseMessage(e));
+            }
         }
+        return this.defaultSearchResultFusion;
     }
 
-    private Map<String, AuthorizationManager> getAuthorizationManagerMap(Map<String, DefaultCollection> collectionMap)
+    private static List<Context> getSearchResults(CompletableFuture<List<Context>> search) throws IndexException
+    {
+        try {
+            return search.join();
+        } catch (CompletionException e) {
+            throw new IndexException("Failed to perform similarity search", e.getCause());
+        }
+    }
+
+    private Map<String, AuthorizationManager> getAuthorizationManagerMap(Map<String, Collection> collectionMap)
     {
         return collectionMap.entrySet().stream()
             .flatMap(entry -> {
@@ -261,13 +437,13 @@ public class DefaultCollectionManager implements CollectionManager
             .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
     }
 
-    private Map<String, DefaultCollection> getAccessibleCollections(List<String> collections)
+    private Map<String, Collection> getAccessibleCollections(List<String> collections)
     {
         return collections.stream()
             .flatMap(name -> {
                 try {
                     // Return both name and collection object
-                    return Stream.of(new AbstractMap.SimpleEntry<>(name, getCollection(name)));
+                    return Stream.of(new AbstractMap.SimpleEntry<>(name, getCollectionSnapshot(name)));
                 } catch (IndexException e) {
                     this.logger.warn("Failed to get collection [{}], excluding it from the similarity search: [{}]",
                         name, ExceptionUtils.getRootCauseMessage(e));
@@ -304,7 +480,7 @@ public class DefaultCollectionManager implements CollectionManager
                     .filter(context -> accessibleDocumentMap.getOrDefault(context.documentId(), false));
             })
             // Sort the results by similarity score in descending order again as the sorting was lost during grouping.
-            .sorted(Comparator.comparingDouble(Context::similarityScore).reversed())
+            .sorted(SCORE_DESCENDING)
             .toList();
     }
 
@@ -314,36 +490,28 @@ public class DefaultCollectionManager implements CollectionManager
         if (collection.getAllowGuests()) {
             return true;
         }
-        java.util.Collection<DocumentReference> userGroups = fetchCrtUserGroups();
+        Set<DocumentReference> userGroups = fetchCrtUserGroups();
         if (userGroups.isEmpty()) {
             return false;
         }
-    
-        java.util.Collection<DocumentReference> allowedGroupReferences = 
-                convertAllowedGroupsToReferences(collection.getQueryGroups());
-    
+
+        // Snapshots have their allowed groups already resolved.
+        Set<DocumentReference> allowedGroupReferences = collection instanceof CollectionSnapshot snapshot
+            ? snapshot.getAllowedGroups() : this.snapshotCache.resolveGroups(collection.getQueryGroups());
+
         return allowedGroupReferences.stream().anyMatch(userGroups::contains);
     }
-    
 
-    private java.util.Collection<DocumentReference> fetchCrtUserGroups()
+    private Set<DocumentReference> fetchCrtUserGroups()
     {
-        DocumentReference documentUserReference = contextProvider.get().getUserReference();
-        java.util.Collection<DocumentReference> userGroups = new ArrayList<>();
+        XWikiContext context = this.contextProvider.get();
+        DocumentReference documentUserReference = context.getUserReference();
         try {
-            userGroups = groupManager.getGroups(documentUserReference, WikiTarget.ENTITY_AND_CURRENT, true);
+            return this.userGroupsCache.getGroups(documentUserReference, context.getWikiId());
         } catch (GroupException e) {
             logger.warn("Failed to get groups for user [{}]", documentUserReference, e);
+            return Set.of();
         }
-        return userGroups;
-    }
-    
-    private java.util.Collection<DocumentReference> convertAllowedGroupsToReferences(String stringGroups)
-    {
-        return Arrays.stream(StringUtils.split(stringGroups, ','))
-            .map(String::trim)
-            .map(this.documentReferenceResolver::resolve)
-            .collect(Collectors.toList());
     }
 
     @Override
@@ -352,7 +520,7 @@ public class DefaultCollectionManager implements CollectionManager
         List<String> collectionsUserHasAccessTo = new ArrayList<>();
         for (String collection : collections) {
             try {
-                if (this.hasAccess(this.getCollection(collection))) {
+                if (this.hasAccess(getCollectionSnapshot(collection))) {
                     collectionsUserHasAccessTo.add(collection);
                 }
             } catch (IndexException e) {
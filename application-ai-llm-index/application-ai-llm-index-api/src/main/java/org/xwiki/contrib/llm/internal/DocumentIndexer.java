@@ -19,12 +19,22 @@
  */
 package org.xwiki.contrib.llm.internal;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -32,17 +42,18 @@ import javax.inject.Singleton;
 
 import org.apache.commons.collections4.CollectionUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.solr.client.solrj.SolrServerException;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.llm.Chunk;
 import org.xwiki.contrib.llm.ChunkingUtils;
 import org.xwiki.contrib.llm.Collection;
-import org.xwiki.contrib.llm.CollectionManager;
 import org.xwiki.contrib.llm.Document;
 import org.xwiki.contrib.llm.EmbeddingModel;
 import org.xwiki.contrib.llm.EmbeddingsUtils;
 import org.xwiki.contrib.llm.IndexException;
 import org.xwiki.contrib.llm.SolrConnector;
+import org.xwiki.search.solr.SolrException;
 import org.xwiki.security.authorization.AccessDeniedException;
 import org.xwiki.user.UserReference;
 
@@ -58,8 +69,20 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class DocumentIndexer
 {
+    /**
+     * The maximum number of groups of chunks of a document that are processed at the same time.
+     */
+    private static final int MAX_PENDING_GROUPS = 4;
+
+    /**
+     * The maximum number of concurrent embedding requests per embedding model, over all documents that are indexed.
+     */
+    private static final int MAX_CONCURRENT_EMBEDDING_REQUESTS = 4;
+
+    private final Map<String, Semaphore> embeddingPermits = new ConcurrentHashMap<>();
+
     @Inject
-    private CollectionManager collectionManager;
+    private CollectionSnapshotCache collectionSnapshotCache;
 
     @Inject
     private SolrConnector solrConnector;
@@ -76,6 +99,9 @@ public class DocumentIndexer
     @Inject
     private ChunkingUtils chunkingUtils;
 
+    @Inject
+    private ContextualExecutor executor;
+
     /**
      * Index a document by chunking it and storing the chunks in Solr.
      *
@@ -91,7 +117,7 @@ public class DocumentIndexer
         String previousWiki = context.getWikiId();
 
         try {
-            Collection collectionObj = this.collectionManager.getCollection(collection);
+            Collection collectionObj = this.collectionSnapshotCache.get(collection);
             Document documentObj = collectionObj.getDocumentStore().getDocument(document);
 
             if (documentObj == null) {
@@ -99,65 +125,282 @@ public class DocumentIndexer
                     .formatted(document, collection, wiki));
             }
 
-            List<Chunk> chunks = this.chunkingUtils.chunkDocument(collectionObj, documentObj);
+            // The existing chunks are compared to the new chunks, so make sure that previous changes are visible.
+            this.solrConnector.ensureVisible(wiki, collection, document);
             String embeddingModel = collectionObj.getEmbeddingModel();
             UserReference author = collectionObj.getAuthor();
+            // Load all existing chunks at once to reuse embeddings of chunks whose content didn't change even if they
+            // moved, e.g., because a paragraph was inserted above them.
+            ExistingChunks existingChunks = ExistingChunks.of(this.solrConnector.getChunks(wiki, collection, document),
+                this.embeddingsUtils.getEmbeddingKey(embeddingModel, author));
             int maximumParallelism = this.embeddingsUtils.getMaximumNumberOfTexts(embeddingModel, author);
+            Semaphore modelPermits = this.embeddingPermits.computeIfAbsent(wiki + ':' + embeddingModel,
+                key -> new Semaphore(MAX_CONCURRENT_EMBEDDING_REQUESTS));
 
-            // Group chunks into groups of size maximumParallelism.
-            for (int i = 0; i < chunks.size(); i += maximumParallelism) {
-                int end = Math.min(i + maximumParallelism, chunks.size());
-                List<Chunk> chunkGroup = chunks.subList(i, end);
-                embedAndStoreChunks(document, chunkGroup, embeddingModel, author, i, end);
+            // Chunks are passed to the pipeline while the document is read, such that only the pending groups of
+            // chunks and not the whole content of the document are kept in memory.
+            ChunkPipeline pipeline = new ChunkPipeline(document, embeddingModel, author, existingChunks,
+                maximumParallelism, modelPermits);
+            IndexException exception = null;
+            try {
+                this.chunkingUtils.chunkDocument(collectionObj, documentObj, pipeline::add);
+                pipeline.submitGroup();
+            } catch (IndexException e) {
+                exception = e;
+            }
+
+            // Wait for all groups even if one failed to not leave tasks running for this document. The failure of a
+            // group is the reason why chunking was stopped, so prefer it.
+            IndexException groupException = pipeline.waitForAll();
+            if (groupException != null) {
+                throw groupException;
+            } else if (exception != null) {
+                throw exception;
             }
 
             // Delete all remaining chunks.
-            this.solrConnector.deleteChunksByIndex(wiki, collection, document, chunks.size());
+            this.solrConnector.deleteChunksByIndex(wiki, collection, document, pipeline.getNumberOfChunks());
         } catch (AccessDeniedException e) {
             throw new IndexException("Access denied while getting document for chunking", e);
+        } catch (SolrServerException | IOException | SolrException e) {
+            throw new IndexException("Failed to make previous changes of the document visible", e);
         } finally {
             context.setWikiId(previousWiki);
         }
     }
 
-    private void embedAndStoreChunks(String document, List<Chunk> chunkGroup, String embeddingModel,
-        UserReference author, int firstChunkIndex, int lastChunkIndex) throws IndexException
+    /**
+     * Groups chunks into groups of size maximumParallelism and processes successive groups in a pipeline: while the
+     * embeddings of one group are computed, the next group is chunked and the chunks of the previous group are stored.
+     */
+    private final class ChunkPipeline
+    {
+        private final String document;
+
+        private final String embeddingModel;
+
+        private final UserReference author;
+
+        private final ExistingChunks existingChunks;
+
+        private final int maximumParallelism;
+
+        private final Semaphore modelPermits;
+
+        private final Deque<CompletableFuture<Void>> pendingGroups = new ArrayDeque<>();
+
+        private final AtomicBoolean storingFailed = new AtomicBoolean();
+
+        private List<Chunk> currentGroup = new ArrayList<>();
+
+        private int numberOfChunks;
+
+        private IndexException exception;
+
+        ChunkPipeline(String document, String embeddingModel, UserReference author, ExistingChunks existingChunks,
+            int maximumParallelism, Semaphore modelPermits)
+        {
+            this.document = document;
+            this.embeddingModel = embeddingModel;
+            this.author = author;
+            this.existingChunks = existingChunks;
+            this.maximumParallelism = maximumParallelism;
+            this.modelPermits = modelPermits;
+        }
+
+        void add(Chunk chunk) throws IndexException
+        {
+            if (this.storingFailed.get()) {
+                // Storing in Solr shouldn't fail, if this fails it doesn't make sense to continue chunking.
+                throw new IndexException("Stopped chunking document [%s] as storing chunks failed"
+                    .formatted(this.document));
+            }
+
+            this.currentGroup.add(chunk);
+            this.numberOfChunks++;
+            if (this.currentGroup.size() >= this.maximumParallelism) {
+                submitGroup();
+            }
+        }
+
+        void submitGroup() throws IndexException
+        {
+            if (this.currentGroup.isEmpty()) {
+                return;
+            }
+
+            if (this.pendingGroups.size() >= MAX_PENDING_GROUPS) {
+                IndexException groupException = waitFor(this.pendingGroups.removeFirst());
+                if (groupException != null) {
+                    this.exception = groupException;
+                    throw groupException;
+                }
+            }
+            int firstChunkIndex = this.numberOfChunks - this.currentGroup.size();
+            this.pendingGroups.addLast(embedAndStoreChunks(this.document, this.currentGroup, this.embeddingModel,
+                this.author, this.existingChunks, firstChunkIndex, this.numberOfChunks, this.modelPermits,
+                this.storingFailed));
+            this.currentGroup = new ArrayList<>(this.maximumParallelism);
+        }
+
+        /**
+         * @return the first exception of a group, or {@code null} if all groups succeeded
+         */
+        IndexException waitForAll()
+        {
+            IndexException result = this.exception;
+            for (CompletableFuture<Void> pendingGroup : this.pendingGroups) {
+                IndexException groupException = waitFor(pendingGroup);
+                if (result == null) {
+                    result = groupException;
+                }
+            }
+            this.pendingGroups.clear();
+            return result;
+        }
+
+        int getNumberOfChunks()
+        {
+            return this.numberOfChunks;
+        }
+    }
+
+    /**
+     * @return the exception that made the given future fail, or {@code null} if it succeeded
+     */
+    private static IndexException waitFor(CompletableFuture<Void> future)
+    {
+        try {
+            future.join();
+            return null;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IndexException indexException) {
+                return indexException;
+            }
+            return new IndexException("Error while indexing chunks", e.getCause());
+        }
+    }
+
+    private CompletableFuture<Void> embedAndStoreChunks(String document, List<Chunk> chunkGroup,
+        String embeddingModel, UserReference author, ExistingChunks existingChunks, int firstChunkIndex,
+        int lastChunkIndex, Semaphore modelPermits, AtomicBoolean storingFailed) throws IndexException
     {
         if (chunkGroup.isEmpty()) {
-            return;
+            return CompletableFuture.completedFuture(null);
         }
 
         String wiki = chunkGroup.get(0).getWiki();
         String collection = chunkGroup.get(0).getCollection();
-        List<Chunk> existingChunks =
-            this.solrConnector.getChunks(wiki, collection, document, firstChunkIndex, lastChunkIndex);
 
         copyExistingEmbeddings(chunkGroup, existingChunks);
+        // Acquire the permit in the indexing thread, tasks of the executor must not wait for other tasks.
+        Runnable releasePermit = acquirePermit(chunkGroup, modelPermits);
 
-        embedChunks(document, chunkGroup, embeddingModel, author);
+        // Embed and store the chunks in a single task, such that both run with the context of the indexing thread.
+        CompletableFuture<Void> future = this.executor.submit(() -> {
+            // Storing in Solr shouldn't fail, if this fails it doesn't make sense to continue embedding chunks.
+            if (!storingFailed.get()) {
+                try {
+                    embedChunks(document, chunkGroup, embeddingModel, author);
+                } finally {
+                    releasePermit.run();
+                }
+                try {
+                    updateChunksIfModified(wiki, collection, document, firstChunkIndex, lastChunkIndex,
+                        existingChunks.getRange(firstChunkIndex, lastChunkIndex), chunkGroup);
+                } catch (IndexException e) {
+                    storingFailed.set(true);
+                    throw e;
+                }
+            }
+            return null;
+        });
+        // Also release the permit if the task didn't run, releasing it a second time has no effect.
+        return future.whenComplete((result, throwable) -> releasePermit.run());
+    }
 
-        updateChunksIfModified(wiki, collection, document, firstChunkIndex, lastChunkIndex, existingChunks, chunkGroup);
+    /**
+     * Wait for a permit to send embedding requests to the model if any of the chunks has no embedding yet.
+     *
+     * @return a function that releases the permit once, even if it is called several times
+     */
+    private static Runnable acquirePermit(List<Chunk> chunkGroup, Semaphore modelPermits) throws IndexException
+    {
+        if (chunkGroup.stream().allMatch(chunk -> chunk.getEmbeddings() != null)) {
+            return () -> { };
+        }
+
+        try {
+            modelPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexException("Interrupted while waiting to embed chunks", e);
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) {
+                modelPermits.release();
+            }
+        };
     }
 
-    private static void copyExistingEmbeddings(List<Chunk> chunkGroup, List<Chunk> existingChunks)
+    private static void copyExistingEmbeddings(List<Chunk> chunkGroup, ExistingChunks existingChunks)
     {
-        // Take the embedding from the existing chunks if the content matches. For this, index chunks by content.
-        Map<String, Chunk> chunkByContent = existingChunks.stream()
-            .collect(Collectors.toMap(Chunk::getContent, Function.identity(),
-                // For duplicates, take the first one that has a valid embedding.
-                (existing, replacement) -> hasValidEmbedding(existing) ? existing : replacement));
+        // Take the embedding from any existing chunk of the document if the content matches.
         for (Chunk chunk : chunkGroup) {
-            Chunk existingChunk = chunkByContent.get(chunk.getContent());
-            // Check that we have an existing embedding that actually contains a non-zero embedding.
-            if (existingChunk != null && hasValidEmbedding(existingChunk)) {
-                chunk.setEmbeddings(existingChunk.getEmbeddings());
+            chunk.setEmbeddingKey(existingChunks.embeddingKey());
+            float[] embeddings = existingChunks.embeddingsByContent().get(chunk.getContent());
+            if (embeddings != null) {
+                chunk.setEmbeddings(embeddings);
+            }
+        }
+    }
+
+    /**
+     * The chunks of a document that are currently stored in Solr.
+     *
+     * @param byIndex the existing chunks by chunk index
+     * @param embeddingsByContent the valid embeddings of the existing chunks by content
+     * @param embeddingKey the key of the model and configuration that compute the embeddings of the new chunks
+     */
+    private record ExistingChunks(Map<Integer, Chunk> byIndex, Map<String, float[]> embeddingsByContent,
+        String embeddingKey)
+    {
+        static ExistingChunks of(List<Chunk> chunks, String embeddingKey)
+        {
+            Map<Integer, Chunk> byIndex = new HashMap<>();
+            Map<String, float[]> embeddingsByContent = new HashMap<>();
+            for (Chunk chunk : chunks) {
+                byIndex.put(chunk.getChunkIndex(), chunk);
+                // Check that the existing embedding actually contains a non-zero embedding and was computed by the
+                // same model with the same configuration.
+                if (hasValidEmbedding(chunk) && embeddingKey.equals(chunk.getEmbeddingKey())) {
+                    embeddingsByContent.putIfAbsent(chunk.getContent(), chunk.getEmbeddings());
+                }
             }
+            return new ExistingChunks(byIndex, embeddingsByContent, embeddingKey);
+        }
+
+        List<Chunk> getRange(int firstChunkIndex, int lastChunkIndex)
+        {
+            return IntStream.range(firstChunkIndex, lastChunkIndex)
+                .mapToObj(this.byIndex::get)
+                .filter(Objects::nonNull)
+                .toList();
         }
     }
 
     private static boolean hasValidEmbedding(Chunk chunk)
     {
-        return chunk.getEmbeddings() != null && Arrays.stream(chunk.getEmbeddings()).anyMatch(v -> v != 0.0);
+        float[] embeddings = chunk.getEmbeddings();
+        if (embeddings != null) {
+            for (float value : embeddings) {
+                if (value != 0.0f) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     private void embedChunks(String document, List<Chunk> chunkGroup, String embeddingModel, UserReference author)
@@ -168,7 +411,7 @@ public class DocumentIndexer
         if (!chunksToEmbed.isEmpty()) {
             try {
                 List<String> texts = chunksToEmbed.stream().map(Chunk::getContent).toList();
-                List<double[]> embeddings = this.embeddingsUtils.computeEmbeddings(texts,
+                List<float[]> embeddings = this.embeddingsUtils.computeEmbeddings(texts,
                                                                                 embeddingModel,
                                                                                 author,
                                                                                 EmbeddingModel.EmbeddingPurpose.INDEX);
@@ -0,0 +1,220 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.function.FailableFunction;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.EmbeddingModel;
+
+/**
+ * Coalesces the texts of concurrent embedding requests for the same wiki, model and purpose into a single request.
+ *
+ * <p>Small documents produce embedding requests with only a few texts even though models accept many more texts per
+ * request. A caller that is alone sends its texts immediately. When other callers for the same wiki, model and
+ * purpose are active, e.g., waiting for their own request, the first caller of a batch waits up to
+ * {@link #MAX_WAIT} for them to add their texts, then sends the request for all of them on its own thread and hands
+ * each caller its part of the result. A batch is sent as soon as it reaches the capacity of the model or all active
+ * callers have added their texts. When the request of a batch fails, every caller retries its own texts such that
+ * texts that can't be embedded only fail the caller that requested them.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = EmbeddingBatcher.class)
+@Singleton
+public class EmbeddingBatcher
+{
+    /**
+     * The maximum time the first caller of a batch waits for other texts.
+     */
+    static final long MAX_WAIT = TimeUnit.MILLISECONDS.toNanos(20);
+
+    /**
+     * The maximum time the first caller of a batch waits for other texts, in nanoseconds, configurable for tests.
+     */
+    long maxWait = MAX_WAIT;
+
+    private final Map<BatchKey, Batch> openBatches = new HashMap<>();
+
+    private final Map<BatchKey, Integer> activeCallers = new HashMap<>();
+
+    private record BatchKey(String wiki, String modelId, EmbeddingModel.EmbeddingPurpose purpose)
+    {
+    }
+
+    private static final class Batch
+    {
+        private final int capacity;
+
+        private final List<String> texts = new ArrayList<>();
+
+        private final CompletableFuture<List<float[]>> result = new CompletableFuture<>();
+
+        private int callers;
+
+        private boolean closed;
+
+        Batch(int capacity)
+        {
+            this.capacity = capacity;
+        }
+
+        private synchronized void close()
+        {
+            this.closed = true;
+            notifyAll();
+        }
+
+        private synchronized void awaitClosed(long deadline) throws InterruptedException
+        {
+            long remaining;
+            while (!this.closed && (remaining = deadline - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+    }
+
+    /**
+     * Compute the embeddings of the given texts, together with the texts of concurrent calls with the same wiki,
+     * model and purpose.
+     *
+     * @param wiki the wiki of the model
+     * @param modelId the id of the model
+     * @param purpose the purpose of the embeddings
+     * @param capacity the maximum number of texts the model accepts in a single request
+     * @param texts the texts to embed
+     * @param embedder the function that computes the embeddings of a batch of texts, called on the thread of one of
+     *     the callers
+     * @return the embeddings of the given texts
+     * @throws Exception if computing the embeddings of the given texts failed
+     */
+    public List<float[]> embed(String wiki, String modelId, EmbeddingModel.EmbeddingPurpose purpose, int capacity,
+        List<String> texts, FailableFunction<List<String>, List<float[]>, Exception> embedder) throws Exception
+    {
+        if (texts.size() >= capacity) {
+            return embedder.apply(texts);
+        }
+
+        BatchKey key = new BatchKey(wiki, modelId, purpose);
+        Batch batch;
+        int offset;
+        boolean leader = false;
+        synchronized (this.openBatches) {
+            this.activeCallers.merge(key, 1, Integer::sum);
+            batch = this.openBatches.get(key);
+            if (batch != null && batch.texts.size() + texts.size() > batch.capacity) {
+                close(key, batch);
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(capacity);
+                this.openBatches.put(key, batch);
+                leader = true;
+            }
+            offset = batch.texts.size();
+            batch.texts.addAll(texts);
+            batch.callers++;
+            closeIfComplete(key, batch);
+        }
+
+        try {
+            if (leader) {
+                sendBatch(key, batch, embedder);
+            }
+
+            return getResult(batch, offset, texts, embedder);
+        } finally {
+            synchronized (this.openBatches) {
+                this.activeCallers.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+                // The batch that is being filled might now contain the texts of all active callers.
+                Batch openBatch = this.openBatches.get(key);
+                if (openBatch != null) {
+                    closeIfComplete(key, openBatch);
+                }
+            }
+        }
+    }
+
+    private void closeIfComplete(BatchKey key, Batch batch)
+    {
+        // No texts will be added when the batch is full or when there are no other active callers.
+        if (batch.texts.size() >= batch.capacity || batch.callers >= this.activeCallers.getOrDefault(key, 0)) {
+            close(key, batch);
+        }
+    }
+
+    private void sendBatch(BatchKey key, Batch batch,
+        FailableFunction<List<String>, List<float[]>, Exception> embedder)
+    {
+        try {
+            batch.awaitClosed(System.nanoTime() + this.maxWait);
+        } catch (InterruptedException e) {
+            // Still send the batch as other callers are waiting for it.
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (this.openBatches) {
+            // No texts can be added anymore once the batch has been closed.
+            close(key, batch);
+        }
+
+        try {
+            batch.result.complete(embedder.apply(batch.texts));
+        } catch (Exception e) {
+            batch.result.completeExceptionally(e);
+        }
+    }
+
+    private void close(BatchKey key, Batch batch)
+    {
+        this.openBatches.remove(key, batch);
+        batch.close();
+    }
+
+    private static List<float[]> getResult(Batch batch, int offset, List<String> texts,
+        FailableFunction<List<String>, List<float[]>, Exception> embedder) throws Exception
+    {
+        try {
+            return batch.result.get().subList(offset, offset + texts.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            // Don't fail the texts of all callers because of the texts of one caller, retry the own texts.
+            if (batch.callers > 1) {
+                return embedder.apply(texts);
+            }
+            if (e.getCause() instanceof Exception exception) {
+                throw exception;
+            }
+            throw e;
+        }
+    }
+}
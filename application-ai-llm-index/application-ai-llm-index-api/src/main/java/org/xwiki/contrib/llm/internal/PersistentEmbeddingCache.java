@@ -0,0 +1,199 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.function.FailableFunction;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.environment.Environment;
+
+/**
+ * Cache for the embeddings of indexed texts in the permanent directory, such that re-indexing a collection, e.g.,
+ * after a configuration change, and indexing the same content in several collections doesn't need requests to the
+ * embedding model.
+ *
+ * <p>Embeddings are stored in one file per text, named after the SHA-256 hash of the wiki, the embedding model, the
+ * configuration key of the model, the index prefix of the model and the text, such that changing the upstream model,
+ * server or dimensions of a model doesn't reuse embeddings of the previous configuration. Embeddings that are all
+ * zero, which models return when they fail to embed a text, aren't cached. When the cached embeddings exceed
+ * {@link #MAX_SIZE} bytes, the least recently used embeddings are removed.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = PersistentEmbeddingCache.class)
+@Singleton
+public class PersistentEmbeddingCache implements Initializable
+{
+    /**
+     * The maximum number of bytes of cached embeddings.
+     */
+    static final long MAX_SIZE = 512L * 1024 * 1024;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
+    private PersistentFileCache fileCache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        Path directory = this.environment.getPermanentDirectory().toPath().resolve("cache/aillm/embeddings");
+        try {
+            this.fileCache = new PersistentFileCache(directory, MAX_SIZE, this.logger);
+        } catch (IOException e) {
+            throw new InitializationException("Failed to initialize the persistent embedding cache", e);
+        }
+    }
+
+    /**
+     * Get the embeddings of the given texts, computing only those that aren't cached.
+     *
+     * @param wiki the wiki of the embedding model
+     * @param modelId the id of the embedding model
+     * @param configurationKey the key of the configuration of the embedding model
+     * @param prefix the prefix that the model adds to indexed texts
+     * @param texts the texts to get the embeddings for
+     * @param embedder the function that computes the embeddings of the texts that aren't cached
+     * @return the embeddings of the texts
+     * @throws Exception if computing the missing embeddings failed
+     */
+    public List<float[]> get(String wiki, String modelId, String configurationKey, String prefix, List<String> texts,
+        FailableFunction<List<String>, List<float[]>, Exception> embedder) throws Exception
+    {
+        List<float[]> result = new ArrayList<>(texts.size());
+        List<String> missingHashes = new ArrayList<>();
+        List<String> missingTexts = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (String text : texts) {
+            String hash = DigestUtils.sha256Hex(getKey(wiki, modelId, configurationKey, prefix, text));
+            float[] embedding = read(hash);
+            if (embedding == null) {
+                missingHashes.add(hash);
+                missingTexts.add(text);
+                missingIndexes.add(result.size());
+            }
+            result.add(embedding);
+        }
+
+        if (!missingTexts.isEmpty()) {
+            List<float[]> embeddings = embedder.apply(missingTexts);
+            for (int i = 0; i < embeddings.size(); i++) {
+                if (!VectorCodec.isZero(embeddings.get(i))) {
+                    byte[] bytes = VectorCodec.toBytes(embeddings.get(i));
+                    this.fileCache.put(missingHashes.get(i), path -> Files.write(path, bytes));
+                }
+                result.set(missingIndexes.get(i), embeddings.get(i));
+            }
+        }
+
+        this.logger.debug("Persistent embedding cache hits: [{}], misses: [{}], evictions: [{}], size: [{}]",
+            getHitCount(), getMissCount(), getEvictionCount(), getSize());
+
+        return result;
+    }
+
+    private float[] read(String hash)
+    {
+        Path path = this.fileCache.get(hash);
+        if (path == null) {
+            return null;
+        }
+
+        try {
+            return VectorCodec.fromFieldValue(Files.readAllBytes(path));
+        } catch (IOException e) {
+            this.logger.warn("Failed to read the cached embedding [{}]: [{}]", hash,
+                ExceptionUtils.getRootCauseMessage(e));
+            this.fileCache.remove(hash);
+            return null;
+        }
+    }
+
+    /**
+     * Remove all cached embeddings, e.g., when embeddings of the configured models shall be computed again.
+     */
+    public void clear()
+    {
+        this.fileCache.clear();
+    }
+
+    /**
+     * @return the number of texts whose embedding was found in the cache
+     */
+    public long getHitCount()
+    {
+        return this.fileCache.getHitCount();
+    }
+
+    /**
+     * @return the number of texts whose embedding had to be computed
+     */
+    public long getMissCount()
+    {
+        return this.fileCache.getMissCount();
+    }
+
+    /**
+     * @return the number of embeddings that were removed because the cache exceeded its maximum size
+     */
+    public long getEvictionCount()
+    {
+        return this.fileCache.getEvictionCount();
+    }
+
+    /**
+     * @return the number of cached embeddings
+     */
+    public int getEntryCount()
+    {
+        return this.fileCache.getEntryCount();
+    }
+
+    /**
+     * @return the total size of the cached embeddings in bytes
+     */
+    public long getSize()
+    {
+        return this.fileCache.getSize();
+    }
+
+    private static String getKey(String wiki, String modelId, String configurationKey, String prefix, String text)
+    {
+        return new CacheKeyBuilder().append(wiki).append(modelId).append(configurationKey).append(prefix).append(text)
+            .build();
+    }
+}
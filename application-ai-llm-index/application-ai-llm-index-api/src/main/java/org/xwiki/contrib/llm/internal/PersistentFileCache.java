@@ -0,0 +1,314 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.function.FailableConsumer;
+import org.slf4j.Logger;
+
+/**
+ * A size-bounded cache of files in a directory, used to keep computed data like embeddings across restarts.
+ *
+ * <p>Every entry is stored in one file named after its key, which must be a hash in hexadecimal form. When the
+ * cached files exceed the maximum size, the least recently used files are deleted. After a restart, the files are
+ * ordered by the time they were written.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public class PersistentFileCache
+{
+    private static final String FILE_EXTENSION = ".bin";
+
+    private static final String TEMPORARY_FILE_EXTENSION = ".tmp";
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    private final Logger logger;
+
+    /**
+     * The size of the cached files by key, in access order to remove the least recently used files.
+     */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The total size of the cached files, guarded by {@link #entries}.
+     */
+    private long size;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private record CachedFile(String key, long size, long lastModified)
+    {
+    }
+
+    /**
+     * Create the cache and load the files that are already in the directory.
+     *
+     * @param directory the directory that contains the cached files
+     * @param maxSize the maximum total size of the cached files in bytes
+     * @param logger the logger to report failures to read, write or delete files
+     * @throws IOException if the directory can't be created or read
+     */
+    public PersistentFileCache(Path directory, long maxSize, Logger logger) throws IOException
+    {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.logger = logger;
+
+        Files.createDirectories(directory);
+        loadEntries();
+    }
+
+    private void loadEntries() throws IOException
+    {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(this.directory, 2)) {
+            files = paths.filter(Files::isRegularFile).toList();
+        }
+
+        List<CachedFile> cachedFiles = new ArrayList<>();
+        for (Path file : files) {
+            String fileName = file.getFileName().toString();
+            if (fileName.endsWith(FILE_EXTENSION)) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                cachedFiles.add(new CachedFile(StringUtils.removeEnd(fileName, FILE_EXTENSION), attributes.size(),
+                    attributes.lastModifiedTime().toMillis()));
+            } else if (fileName.endsWith(TEMPORARY_FILE_EXTENSION)) {
+                // Left over by an interrupted write.
+                Files.deleteIfExists(file);
+            }
+        }
+
+        cachedFiles.sort(Comparator.comparingLong(CachedFile::lastModified));
+        synchronized (this.entries) {
+            for (CachedFile cachedFile : cachedFiles) {
+                this.entries.put(cachedFile.key(), cachedFile.size());
+                this.size += cachedFile.size();
+            }
+            evict();
+        }
+    }
+
+    /**
+     * Get the file of a cached entry and mark it as recently used. The file can be deleted at any time when the cache
+     * exceeds its maximum size, callers must {@link #remove(String) remove} the entry when reading the file fails.
+     *
+     * @param key the key of the entry
+     * @return the file of the entry, or {@code null} if the entry isn't cached
+     */
+    public Path get(String key)
+    {
+        boolean cached;
+        synchronized (this.entries) {
+            cached = this.entries.get(key) != null;
+        }
+
+        if (cached) {
+            this.hitCount.incrementAndGet();
+            return getPath(key);
+        } else {
+            this.missCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Add or replace an entry. The content is first written to a temporary file such that concurrent reads never see
+     * a partially written file. The temporary file is moved in place while holding the lock of the entries such that
+     * a concurrent eviction or removal of the same key can't delete the new file.
+     *
+     * @param key the key of the entry
+     * @param writer writes the content of the entry to the given file
+     * @return the file of the entry, or {@code null} if writing the file failed
+     */
+    public Path put(String key, FailableConsumer<Path, IOException> writer)
+    {
+        Path path = getPath(key);
+        Path temporaryFile = null;
+        long fileSize;
+        try {
+            Files.createDirectories(path.getParent());
+            temporaryFile = Files.createTempFile(path.getParent(), key, TEMPORARY_FILE_EXTENSION);
+            writer.accept(temporaryFile);
+            fileSize = Files.size(temporaryFile);
+        } catch (IOException e) {
+            handleWriteFailure(path, temporaryFile, e);
+            return null;
+        }
+
+        synchronized (this.entries) {
+            try {
+                Files.move(temporaryFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                handleWriteFailure(path, temporaryFile, e);
+                return null;
+            }
+
+            Long previousSize = this.entries.put(key, fileSize);
+            this.size += fileSize - (previousSize != null ? previousSize : 0);
+            return evict().contains(key) ? null : path;
+        }
+    }
+
+    private void handleWriteFailure(Path path, Path temporaryFile, IOException e)
+    {
+        this.logger.warn("Failed to write the cached file [{}]: [{}]", path, ExceptionUtils.getRootCauseMessage(e));
+        if (temporaryFile != null) {
+            deleteFile(temporaryFile);
+        }
+    }
+
+    /**
+     * Remove an entry, e.g., because its file couldn't be read.
+     *
+     * @param key the key of the entry
+     */
+    public void remove(String key)
+    {
+        synchronized (this.entries) {
+            Long removedSize = this.entries.remove(key);
+            if (removedSize != null) {
+                this.size -= removedSize;
+            }
+            delete(key);
+        }
+    }
+
+    /**
+     * Remove all entries and delete their files.
+     */
+    public void clear()
+    {
+        synchronized (this.entries) {
+            this.entries.keySet().forEach(this::delete);
+            this.entries.clear();
+            this.size = 0;
+        }
+    }
+
+    /**
+     * Remove the least recently used entries and delete their files until the cache doesn't exceed its maximum size.
+     * Must be called while holding the lock of {@link #entries} such that a concurrent put of an evicted key can't
+     * have its new file deleted.
+     *
+     * @return the keys of the removed entries
+     */
+    private List<String> evict()
+    {
+        List<String> evictedKeys = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = this.entries.entrySet().iterator();
+        while (this.size > this.maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            this.size -= eldest.getValue();
+            evictedKeys.add(eldest.getKey());
+            iterator.remove();
+            delete(eldest.getKey());
+        }
+        this.evictionCount.addAndGet(evictedKeys.size());
+        return evictedKeys;
+    }
+
+    private void delete(String key)
+    {
+        deleteFile(getPath(key));
+    }
+
+    private void deleteFile(Path path)
+    {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            this.logger.warn("Failed to delete the cached file [{}]: [{}]", path,
+                ExceptionUtils.getRootCauseMessage(e));
+        }
+    }
+
+    private Path getPath(String key)
+    {
+        // Use the first two characters of the key as sub-directory to avoid too many files in a single directory.
+        return this.directory.resolve(key.substring(0, 2)).resolve(key + FILE_EXTENSION);
+    }
+
+    /**
+     * @return the number of requested entries that were found in the cache
+     */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of requested entries that weren't found in the cache
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return the number of entries that were removed because the cache exceeded its maximum size
+     */
+    public long getEvictionCount()
+    {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * @return the number of cached entries
+     */
+    public int getEntryCount()
+    {
+        synchronized (this.entries) {
+            return this.entries.size();
+        }
+    }
+
+    /**
+     * @return the total size of the cached files in bytes
+     */
+    public long getSize()
+    {
+        synchronized (this.entries) {
+            return this.size;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.function.FailableFunction;
+import org.slf4j.Logger;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+
+/**
+ * Cache for the embeddings of search queries, such that repeated questions don't need a request to the embedding
+ * model.
+ *
+ * <p>Embeddings are cached by wiki, embedding model, configuration key and query prefix of the model and query text
+ * with normalized whitespace for {@link #LIFESPAN} seconds. The configuration key and the prefix are part of the key
+ * such that changing the configuration of the model doesn't return embeddings that were computed with the previous
+ * configuration. Whitespace is only normalized in the key, the model embeds the query as it was asked. Embeddings
+ * that are all zero, which models return when they fail to embed a text, aren't cached.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = QueryEmbeddingCache.class)
+@Singleton
+public class QueryEmbeddingCache implements Initializable, Disposable
+{
+    /**
+     * The maximum number of cached query embeddings.
+     */
+    static final int MAX_ENTRIES = 1000;
+
+    /**
+     * The number of seconds after which a cached query embedding expires.
+     */
+    static final int LIFESPAN = 3600;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    @Inject
+    private Logger logger;
+
+    private Cache<float[]> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        LRUCacheConfiguration configuration = new LRUCacheConfiguration("aillm.queryEmbeddings", MAX_ENTRIES);
+        configuration.getLRUEvictionConfiguration().setLifespan(LIFESPAN);
+        try {
+            this.cache = this.cacheManager.createNewCache(configuration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the query embedding cache", e);
+        }
+    }
+
+    /**
+     * Get the embeddings of the given queries, computing only those that aren't cached.
+     *
+     * @param wiki the wiki of the embedding model
+     * @param modelId the id of the embedding model
+     * @param configurationKey the key of the configuration of the embedding model
+     * @param prefix the prefix that the model adds to queries
+     * @param queries the queries to get the embeddings for
+     * @param embedder the function that computes the embeddings of the queries that aren't cached
+     * @return the embeddings of the queries, the returned arrays are shared and must not be modified
+     * @throws Exception if computing the missing embeddings failed
+     */
+    public List<float[]> get(String wiki, String modelId, String configurationKey, String prefix, List<String> queries,
+        FailableFunction<List<String>, List<float[]>, Exception> embedder) throws Exception
+    {
+        List<float[]> result = new ArrayList<>(queries.size());
+        List<String> missingKeys = new ArrayList<>();
+        List<String> missingQueries = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+        for (String query : queries) {
+            String key = getKey(wiki, modelId, configurationKey, prefix, StringUtils.normalizeSpace(query));
+            float[] embedding = this.cache.get(key);
+            if (embedding == null) {
+                missingKeys.add(key);
+                missingQueries.add(query);
+                missingIndexes.add(result.size());
+            }
+            result.add(embedding);
+        }
+
+        this.hitCount.addAndGet((long) queries.size() - missingQueries.size());
+        this.missCount.addAndGet(missingQueries.size());
+
+        if (!missingQueries.isEmpty()) {
+            List<float[]> embeddings = embedder.apply(missingQueries);
+            for (int i = 0; i < embeddings.size(); i++) {
+                // Don't cache the zero embeddings of failed requests, such that the query is embedded again.
+                if (!VectorCodec.isZero(embeddings.get(i))) {
+                    this.cache.set(missingKeys.get(i), embeddings.get(i));
+                }
+                result.set(missingIndexes.get(i), embeddings.get(i));
+            }
+        }
+
+        this.logger.debug("Query embedding cache hits: [{}], misses: [{}]", this.hitCount, this.missCount);
+
+        return result;
+    }
+
+    /**
+     * @return the number of queries whose embedding was found in the cache
+     */
+    public long getHitCount()
+    {
+        return this.hitCount.get();
+    }
+
+    /**
+     * @return the number of queries whose embedding had to be computed
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    private static String getKey(String wiki, String modelId, String configurationKey, String prefix,
+        String query)
+    {
+        return new CacheKeyBuilder().append(wiki).append(modelId).append(configurationKey).append(prefix).append(query)
+            .build();
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+}
@@ -87,38 +87,79 @@ public class RAGChatRequestFilter extends AbstractChatRequestFilter
     private final Provider<XWikiContext> contextProvider;
     private final int maxSemanticResults;
     private final int maxKeywordResults;
+    private final String fusion;
+    private final double semanticWeight;
+    private final double keywordWeight;
+    private final int maxFusedResults;
     private final String contextPrompt;
     private final String chunkTemplate;
     private final WikiReference wikiReference;
 
+    /**
+     * The configuration of the searches and of how their results are combined.
+     *
+     * @param maxSemanticResults the maximum number of semantic search results, or {@code null} if not configured
+     * @param maxKeywordResults the maximum number of keyword search results, or {@code null} if not configured
+     * @param fusion the hint of the search result fusion, or {@code null} to concatenate the results
+     * @param semanticWeight the weight of the semantic search results, {@code null} if not configured for the default
+     * weight 1 and 0 to disable the semantic search
+     * @param keywordWeight the weight of the keyword search results, {@code null} if not configured for the default
+     * weight 1 and 0 to disable the keyword search
+     * @param maxFusedResults the maximum number of combined results, {@code null} or 0 to keep all results
+     * @since 0.9.1
+     */
+    public record SearchConfiguration(Integer maxSemanticResults, Integer maxKeywordResults, String fusion,
+        Double semanticWeight, Double keywordWeight, Integer maxFusedResults)
+    {
+        /**
+         * Validates the weights.
+         */
+        public SearchConfiguration
+        {
+            if (isNegative(semanticWeight) || isNegative(keywordWeight)) {
+                throw new IllegalArgumentException(String.format(
+                    "The weights of the searches must not be negative but were [%s] and [%s]", semanticWeight,
+                    keywordWeight));
+            }
+        }
+
+        private static boolean isNegative(Double weight)
+        {
+            return weight != null && weight < 0;
+        }
+    }
+
     /**
      * Constructor.
      *
      * @param collections the collections to use
-     * @param maxSemanticResults the maximum number of results to return
-     * @param maxKeywordResults the maximum number of keyword results to return
+     * @param search the configuration of the searches
      * @param contextPrompt the context prompt
      * @param chunkTemplate the template of a chunk in the context prompt
      * @param wiki the wiki where the filter is defined
      * @param componentManager the component manager to get components from
      */
     public RAGChatRequestFilter(List<String> collections,
-        Integer maxSemanticResults,
-        Integer maxKeywordResults,
+        SearchConfiguration search,
         String contextPrompt,
         String chunkTemplate,
         WikiReference wiki,
         ComponentManager componentManager) throws ComponentLookupException
     {
         this.collections = collections;
-        int initialMaxSemanticResults = maxSemanticResults != null ? maxSemanticResults : 0;
-        int initialMaxKeywordResults = maxKeywordResults != null ? maxKeywordResults : 0;
+        int initialMaxSemanticResults = search.maxSemanticResults() != null ? search.maxSemanticResults() : 0;
+        int initialMaxKeywordResults = search.maxKeywordResults() != null ? search.maxKeywordResults() : 0;
         if (initialMaxKeywordResults + initialMaxSemanticResults <= 0) {
             initialMaxKeywordResults = 7;
             initialMaxSemanticResults = 3;
         }
-        this.maxSemanticResults = initialMaxSemanticResults;
-        this.maxKeywordResults = initialMaxKeywordResults;
+        this.semanticWeight = search.semanticWeight() != null ? search.semanticWeight() : 1;
+        this.keywordWeight = search.keywordWeight() != null ? search.keywordWeight() : 1;
+        // A weight of 0 disables the search as its results wouldn't count.
+        this.maxSemanticResults = this.semanticWeight > 0 ? initialMaxSemanticResults : 0;
+        this.maxKeywordResults = this.keywordWeight > 0 ? initialMaxKeywordResults : 0;
+        this.fusion = search.fusion();
+        this.maxFusedResults = search.maxFusedResults() != null ? search.maxFusedResults() : 0;
         this.contextPrompt = contextPrompt;
         this.chunkTemplate = StringUtils.isBlank(chunkTemplate) ? DEFAULT_CHUNK_TEMPLATE : chunkTemplate;
         this.wikiReference = wiki;
@@ -250,8 +291,13 @@ public class RAGChatRequestFilter extends AbstractChatRequestFilter
         String currentWiki = context.getWikiId();
         try {
             context.setWikiId(this.wikiReference.getName());
-            return this.collectionManager.hybridSearch(message, this.collections, this.maxSemanticResults,
-                this.maxKeywordResults);
+            List<Context> results = this.collectionManager.hybridSearch(message, this.collections,
+                this.maxSemanticResults, this.maxKeywordResults, this.fusion, this.semanticWeight, this.keywordWeight);
+            // The results are sorted by their combined score, keep the best ones.
+            if (this.maxFusedResults > 0 && results.size() > this.maxFusedResults) {
+                return results.subList(0, this.maxFusedResults);
+            }
+            return results;
         } catch (Exception e) {
             LOGGER.error(ERROR_LOG_FORMAT, SIMILARITY_SEARCH_ERROR_MSG, ExceptionUtils.getRootCauseMessage(e));
             return Collections.emptyList();
@@ -38,6 +38,7 @@ import org.xwiki.model.reference.EntityReference;
 import org.xwiki.model.reference.LocalDocumentReference;
 
 import com.xpn.xwiki.objects.BaseObject;
+import com.xpn.xwiki.objects.BaseProperty;
 
 /**
  * Builds a {@link ChatRequestFilter} from an object that contains its configuration.
@@ -84,19 +85,33 @@ public class RAGChatRequestFilterBuilder implements ChatRequestFilterBuilder
         String contextPrompt = object.getLargeStringValue("contextPrompt");
         String chunkTemplate = object.getLargeStringValue("chunkTemplate");
 
-
         // Only return a filter if there are collections to filter on.
         try {
-            return collections.isEmpty() ? List.of()
-                : List.of(new RAGChatRequestFilter(collections, maxResults, maxKeywordResults, contextPrompt,
-                chunkTemplate, object.getDocumentReference().getWikiReference(), this.componentManagerProvider.get()));
-        } catch (ComponentLookupException e) {
+            if (collections.isEmpty()) {
+                return List.of();
+            }
+            RAGChatRequestFilter.SearchConfiguration search = new RAGChatRequestFilter.SearchConfiguration(
+                maxResults, maxKeywordResults, object.getStringValue("fusion"), getWeight(object, "semanticWeight"),
+                getWeight(object, "keywordWeight"), object.getIntValue("maxFusedResults"));
+            return List.of(new RAGChatRequestFilter(collections, search, contextPrompt, chunkTemplate,
+                object.getDocumentReference().getWikiReference(), this.componentManagerProvider.get()));
+        } catch (ComponentLookupException | IllegalArgumentException e) {
             this.logger.error("Error building RAG chat request filter for [{}]", object.getReference(), e);
         }
 
         return List.of();
     }
 
+    /**
+     * @return the configured weight, or {@code null} if the weight isn't configured such that configuring only one
+     * weight doesn't exclude the other search from the result fusion
+     */
+    private static Double getWeight(BaseObject object, String field)
+    {
+        Object value = object.getField(field) instanceof BaseProperty<?> property ? property.getValue() : null;
+        return value instanceof Number weight ? weight.doubleValue() : null;
+    }
+
     @Override
     public EntityReference getClassReference()
     {
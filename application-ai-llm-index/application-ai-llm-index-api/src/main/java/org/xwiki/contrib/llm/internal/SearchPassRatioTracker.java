@@ -0,0 +1,90 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+
+/**
+ * Learns, per collection, the share of search results that pass the authorization check, such that searches can
+ * fetch enough results from Solr to fill the requested number of results after filtering.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = SearchPassRatioTracker.class)
+@Singleton
+public class SearchPassRatioTracker
+{
+    /**
+     * The lowest pass ratio that is assumed, to bound the number of results that are fetched.
+     */
+    static final double MIN_PASS_RATIO = 0.1;
+
+    /**
+     * The weight of the latest observation in the moving average of the pass ratio.
+     */
+    private static final double SMOOTHING = 0.2;
+
+    private final Map<String, Double> passRatios = new ConcurrentHashMap<>();
+
+    /**
+     * @param wiki the wiki of the collections
+     * @param collections the collections that are searched
+     * @return the lowest pass ratio of the given collections, 1 for collections without observations
+     */
+    public double getPassRatio(String wiki, Collection<String> collections)
+    {
+        double result = 1;
+        for (String collection : collections) {
+            result = Math.min(result, this.passRatios.getOrDefault(getKey(wiki, collection), 1.0));
+        }
+        return Math.max(MIN_PASS_RATIO, result);
+    }
+
+    /**
+     * Records the outcome of the authorization check of search results of a collection.
+     *
+     * @param wiki the wiki of the collection
+     * @param collection the collection of the results
+     * @param checked the number of checked results
+     * @param passed the number of results that passed the check
+     */
+    public void record(String wiki, String collection, int checked, int passed)
+    {
+        if (checked <= 0) {
+            return;
+        }
+
+        double observed = (double) passed / checked;
+        this.passRatios.merge(getKey(wiki, collection), observed,
+            (previous, latest) -> previous + SMOOTHING * (latest - previous));
+    }
+
+    private static String getKey(String wiki, String collection)
+    {
+        return wiki + ':' + collection;
+    }
+}
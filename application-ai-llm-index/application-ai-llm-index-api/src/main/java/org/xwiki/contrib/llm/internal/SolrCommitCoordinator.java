@@ -0,0 +1,210 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.solr.client.solrj.SolrClient;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.search.solr.Solr;
+import org.xwiki.search.solr.SolrException;
+
+/**
+ * Coordinates the soft commits that make the writes to the AI LLM Solr core visible to searches.
+ *
+ * <p>Instead of committing after every write, writes are recorded and a single soft commit is scheduled for all
+ * writes in the following {@link #COMMIT_DELAY} milliseconds. Readers that need to see their own writes, like the
+ * indexer comparing the existing chunks of a document, can request an immediate commit that is only executed if
+ * there are pending writes for what they read.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = SolrCommitCoordinator.class)
+@Singleton
+public class SolrCommitCoordinator implements Initializable, Disposable
+{
+    /**
+     * The maximum delay in milliseconds between a write and the soft commit that makes it visible.
+     */
+    static final long COMMIT_DELAY = 1000;
+
+    @Inject
+    private Solr solr;
+
+    @Inject
+    private Logger logger;
+
+    /**
+     * The sequence number of the last write.
+     */
+    private final AtomicLong lastWrite = new AtomicLong();
+
+    /**
+     * The sequence number of the last write that wasn't limited to a single document.
+     */
+    private final AtomicLong lastGlobalWrite = new AtomicLong();
+
+    /**
+     * The sequence number of the last write for each document with writes that haven't been committed yet.
+     */
+    private final Map<DocumentKey, Long> pendingDocuments = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
+
+    private final Object commitLock = new Object();
+
+    /**
+     * The sequence number of the last write that is visible, only modified while holding {@link #commitLock}.
+     */
+    private volatile long lastCommit;
+
+    private ScheduledExecutorService scheduler;
+
+    private record DocumentKey(String wiki, String collection, String document)
+    {
+    }
+
+    @Override
+    public void initialize()
+    {
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("LLM Solr commit %d")
+            .daemon(true)
+            .build());
+    }
+
+    /**
+     * Record a write that modified chunks of a single document.
+     *
+     * @param wiki the wiki of the document
+     * @param collection the collection of the document
+     * @param document the id of the document
+     */
+    public void markWritten(String wiki, String collection, String document)
+    {
+        long write = this.lastWrite.incrementAndGet();
+        this.pendingDocuments.merge(new DocumentKey(wiki, collection, document), write, Math::max);
+        scheduleCommit();
+    }
+
+    /**
+     * Record a write that may have modified chunks of any document.
+     */
+    public void markWritten()
+    {
+        long write = this.lastWrite.incrementAndGet();
+        this.lastGlobalWrite.accumulateAndGet(write, Math::max);
+        scheduleCommit();
+    }
+
+    /**
+     * Make sure that all writes that modified the chunks of the given document are visible.
+     *
+     * @param wiki the wiki of the document
+     * @param collection the collection of the document
+     * @param document the id of the document
+     * @throws SolrServerException if committing failed
+     * @throws IOException if committing failed
+     * @throws SolrException if the Solr core couldn't be accessed
+     */
+    public void ensureVisible(String wiki, String collection, String document)
+        throws SolrServerException, IOException, SolrException
+    {
+        long documentWrite = this.pendingDocuments.getOrDefault(new DocumentKey(wiki, collection, document), 0L);
+        commit(Math.max(documentWrite, this.lastGlobalWrite.get()));
+    }
+
+    /**
+     * Make sure that all writes that weren't limited to a single document are visible.
+     *
+     * @throws SolrServerException if committing failed
+     * @throws IOException if committing failed
+     * @throws SolrException if the Solr core couldn't be accessed
+     */
+    public void ensureVisible() throws SolrServerException, IOException, SolrException
+    {
+        commit(this.lastGlobalWrite.get());
+    }
+
+    private void scheduleCommit()
+    {
+        if (this.scheduler != null && this.commitScheduled.compareAndSet(false, true)) {
+            this.scheduler.schedule(this::scheduledCommit, COMMIT_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void scheduledCommit()
+    {
+        // Reset the flag before committing such that writes that happen during the commit schedule a new one.
+        this.commitScheduled.set(false);
+        try {
+            commit(this.lastWrite.get());
+        } catch (Exception e) {
+            this.logger.warn("Failed to commit the changes to the AI LLM Solr core: [{}]", e.getMessage());
+            this.logger.debug("Full exception trace: ", e);
+        }
+    }
+
+    private void commit(long requiredWrite) throws SolrServerException, IOException, SolrException
+    {
+        if (this.lastCommit >= requiredWrite) {
+            return;
+        }
+
+        synchronized (this.commitLock) {
+            // Another thread might have committed the required writes while we were waiting for the lock.
+            if (this.lastCommit >= requiredWrite) {
+                return;
+            }
+
+            // All writes up to this one are complete, so the commit will make them visible.
+            long write = this.lastWrite.get();
+            try (SolrClient client = this.solr.getCore(AiLLMSolrCoreInitializer.DEFAULT_AILLM_SOLR_CORE).getClient()) {
+                client.commit(null, false, true, true);
+            }
+            this.lastCommit = write;
+            this.pendingDocuments.values().removeIf(documentWrite -> documentWrite <= write);
+        }
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.scheduler != null) {
+            this.scheduler.shutdownNow();
+        }
+    }
+}
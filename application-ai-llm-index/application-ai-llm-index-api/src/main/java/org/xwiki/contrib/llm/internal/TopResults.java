@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.xwiki.contrib.llm.openai.Context;
+
+/**
+ * Collects the search results with the highest similarity score using a bounded heap, such that merging the
+ * results of several searches doesn't require sorting all of them.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public class TopResults
+{
+    private static final Comparator<Context> SCORE_COMPARATOR =
+        Comparator.comparingDouble(context -> context.similarityScore() != null ? context.similarityScore() : 0);
+
+    private final int limit;
+
+    /**
+     * Min-heap of the best results, the worst of them at the head.
+     */
+    private final PriorityQueue<Context> heap;
+
+    /**
+     * @param limit the maximum number of results to keep
+     */
+    public TopResults(int limit)
+    {
+        this.limit = Math.max(0, limit);
+        this.heap = new PriorityQueue<>(this.limit + 1, SCORE_COMPARATOR);
+    }
+
+    /**
+     * @param results the results to add, only the best ones are kept
+     */
+    public void addAll(Collection<Context> results)
+    {
+        for (Context result : results) {
+            if (this.heap.size() < this.limit) {
+                this.heap.add(result);
+            } else if (this.limit > 0 && SCORE_COMPARATOR.compare(result, this.heap.peek()) > 0) {
+                this.heap.poll();
+                this.heap.add(result);
+            }
+        }
+    }
+
+    /**
+     * @return the kept results, best result first
+     */
+    public List<Context> toList()
+    {
+        List<Context> result = new ArrayList<>(this.heap);
+        result.sort(SCORE_COMPARATOR.reversed());
+        return result;
+    }
+}
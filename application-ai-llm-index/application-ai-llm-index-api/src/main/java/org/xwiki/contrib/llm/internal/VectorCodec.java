@@ -0,0 +1,131 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Converts embedding vectors between {@code float[]} and the representations used by Solr.
+ *
+ * <p>Vectors are stored as little-endian binary data in addition to the dense vector field that is used for the
+ * nearest neighbor search, such that they can be loaded without parsing the textual values of the dense vector
+ * field.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public final class VectorCodec
+{
+    private VectorCodec()
+    {
+    }
+
+    /**
+     * @param vector the vector to encode
+     * @return the binary representation of the vector
+     */
+    public static byte[] toBytes(float[] vector)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    /**
+     * Decode a vector from a stored field value.
+     *
+     * @param value the binary representation of a vector as byte array or byte buffer, or the values of the dense
+     *     vector field as numbers or strings
+     * @return the decoded vector, or {@code null} if the value is {@code null} or of an unsupported type
+     */
+    public static float[] fromFieldValue(Object value)
+    {
+        float[] result = null;
+        if (value instanceof byte[] bytes) {
+            result = fromByteBuffer(ByteBuffer.wrap(bytes));
+        } else if (value instanceof ByteBuffer byteBuffer) {
+            result = fromByteBuffer(byteBuffer.duplicate());
+        } else if (value instanceof List<?> values) {
+            result = new float[values.size()];
+            int i = 0;
+            for (Object element : values) {
+                result[i++] = element instanceof Number number ? number.floatValue()
+                    : Float.parseFloat(String.valueOf(element));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param vector the vector to check
+     * @return {@code true} if all values of the vector are zero, as returned by models that failed to embed a text
+     */
+    public static boolean isZero(float[] vector)
+    {
+        for (float value : vector) {
+            if (value != 0.0f) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param vector the vector to wrap
+     * @return a list view of the vector, as expected by the dense vector field when adding documents
+     */
+    public static List<Float> asList(float[] vector)
+    {
+        return new FloatList(vector);
+    }
+
+    private static float[] fromByteBuffer(ByteBuffer buffer)
+    {
+        float[] result = new float[buffer.remaining() / Float.BYTES];
+        buffer.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(result);
+        return result;
+    }
+
+    private static final class FloatList extends AbstractList<Float> implements RandomAccess
+    {
+        private final float[] values;
+
+        FloatList(float[] values)
+        {
+            this.values = values;
+        }
+
+        @Override
+        public Float get(int index)
+        {
+            return this.values[index];
+        }
+
+        @Override
+        public int size()
+        {
+            return this.values.length;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.authorization;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.llm.authorization.AuthorizationManager;
+import org.xwiki.contrib.llm.internal.CacheKeyBuilder;
+
+/**
+ * Cache for the view decisions of authorization managers that are expensive to call, like external authorization
+ * services.
+ *
+ * <p>Decisions are cached per scope (e.g., the URL of the authorization service), user and document. Granted and
+ * denied access can be cached for different durations, documents for which no decision was returned (e.g., because
+ * the service failed) aren't cached. Concurrent checks of the same document for the same user wait for the check
+ * that is already running instead of calling the authorization manager again, and all documents that aren't cached
+ * are checked in a single call.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = AuthorizationDecisionCache.class)
+@Singleton
+public class AuthorizationDecisionCache implements Initializable, Disposable
+{
+    /**
+     * The maximum number of cached decisions.
+     */
+    static final int MAX_ENTRIES = 10000;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<Decision> cache;
+
+    private final Map<String, CompletableFuture<Boolean>> runningChecks = new ConcurrentHashMap<>();
+
+    private record Decision(boolean allowed, long expiration)
+    {
+    }
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        try {
+            this.cache = this.cacheManager.createNewCache(
+                new LRUCacheConfiguration("aillm.authorizationDecisions", MAX_ENTRIES));
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the authorization decision cache", e);
+        }
+    }
+
+    /**
+     * Check if the given user can view the given documents, calling the authorization manager only for the documents
+     * whose decision is neither cached nor currently being checked.
+     *
+     * @param scope the scope of the decisions, decisions of different scopes are independent
+     * @param user the user whose access is checked
+     * @param documentIds the documents to check
+     * @param lifespan how long granted access is cached
+     * @param negativeLifespan how long denied access is cached
+     * @param authorizationManager the authorization manager to call for the documents that aren't cached
+     * @return a map of document ids to whether the user can view them
+     */
+    public Map<String, Boolean> canView(String scope, String user, Set<String> documentIds, Duration lifespan,
+        Duration negativeLifespan, AuthorizationManager authorizationManager)
+    {
+        Map<String, Boolean> result = new HashMap<>();
+        Map<String, CompletableFuture<Boolean>> otherChecks = new HashMap<>();
+        Map<String, CompletableFuture<Boolean>> ownChecks = new HashMap<>();
+        long now = System.currentTimeMillis();
+
+        for (String documentId : documentIds) {
+            String key = getKey(scope, user, documentId);
+            Decision decision = this.cache.get(key);
+            if (decision != null && decision.expiration() > now) {
+                result.put(documentId, decision.allowed());
+            } else {
+                CompletableFuture<Boolean> check = new CompletableFuture<>();
+                CompletableFuture<Boolean> runningCheck = this.runningChecks.putIfAbsent(key, check);
+                if (runningCheck != null) {
+                    otherChecks.put(documentId, runningCheck);
+                } else {
+                    ownChecks.put(documentId, check);
+                }
+            }
+        }
+
+        if (!ownChecks.isEmpty()) {
+            check(scope, user, ownChecks, lifespan, negativeLifespan, authorizationManager);
+        }
+
+        Map<String, CompletableFuture<Boolean>> checks = new HashMap<>(ownChecks);
+        checks.putAll(otherChecks);
+        checks.forEach((documentId, check) -> {
+            Boolean allowed = check.join();
+            if (allowed != null) {
+                result.put(documentId, allowed);
+            }
+        });
+
+        return result;
+    }
+
+    private void check(String scope, String user, Map<String, CompletableFuture<Boolean>> checks, Duration lifespan,
+        Duration negativeLifespan, AuthorizationManager authorizationManager)
+    {
+        Map<String, Boolean> decisions = Map.of();
+        try {
+            decisions = authorizationManager.canView(new HashSet<>(checks.keySet()));
+            long now = System.currentTimeMillis();
+            for (Map.Entry<String, Boolean> decision : decisions.entrySet()) {
+                if (decision.getValue() != null && checks.containsKey(decision.getKey())) {
+                    Duration duration = decision.getValue() ? lifespan : negativeLifespan;
+                    if (duration.isPositive()) {
+                        this.cache.set(getKey(scope, user, decision.getKey()),
+                            new Decision(decision.getValue(), now + duration.toMillis()));
+                    }
+                }
+            }
+        } finally {
+            // Always complete the checks, documents without decision are denied without caching the decision.
+            for (Map.Entry<String, CompletableFuture<Boolean>> check : checks.entrySet()) {
+                String key = getKey(scope, user, check.getKey());
+                this.runningChecks.remove(key, check.getValue());
+                check.getValue().complete(decisions.get(check.getKey()));
+            }
+        }
+    }
+
+    private static String getKey(String scope, String user, String documentId)
+    {
+        return new CacheKeyBuilder().append(scope).append(user).append(documentId).build();
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+}
@@ -22,13 +22,16 @@ package org.xwiki.contrib.llm.internal.authorization;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 
 import javax.inject.Inject;
 import javax.inject.Named;
+import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -39,11 +42,14 @@ import org.xwiki.contrib.llm.authorization.AuthorizationManager;
 import org.xwiki.contrib.llm.authorization.AuthorizationManagerBuilder;
 import org.xwiki.contrib.llm.authorization.ExternalAuthorizationConfiguration;
 import org.xwiki.contrib.llm.internal.HttpClientFactory;
+import org.xwiki.contrib.llm.internal.JSONCodec;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.EntityReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
 import org.xwiki.model.reference.LocalDocumentReference;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.objects.BaseObject;
 
 /**
@@ -59,6 +65,10 @@ public class ExternalAuthorizationManagerBuilder implements AuthorizationManager
 {
     private static final String URL_FIELD = "url";
 
+    private static final String CACHE_DURATION_FIELD = "cacheDuration";
+
+    private static final String NEGATIVE_CACHE_DURATION_FIELD = "negativeCacheDuration";
+
     private static final String APPLICATION_JSON = "application/json";
 
     private static final List<String> SPACE_NAMES = List.of("AI", "Collections", "Code");
@@ -69,19 +79,52 @@ public class ExternalAuthorizationManagerBuilder implements AuthorizationManager
     private static final LocalDocumentReference CONFIGURATION_SHEET_REFERENCE =
         new LocalDocumentReference(SPACE_NAMES, "ExternalAuthorizationConfigurationSheet");
 
+    private static final TypeReference<Map<String, Boolean>> RESPONSE_TYPE = new TypeReference<>()
+    {
+    };
+
     @Inject
     private HttpClientFactory httpClientFactory;
 
+    @Inject
+    private JSONCodec jsonCodec;
+
     @Inject
     private Logger logger;
 
     @Inject
     private ExternalAuthorizationRequestBuilder externalAuthorizationRequestBuilder;
 
+    @Inject
+    private AuthorizationDecisionCache decisionCache;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
     @Override
     public AuthorizationManager build(BaseObject configurationObject) throws IndexException
     {
-        return buildInternal(getExternalAuthorizationConfiguration(configurationObject));
+        ExternalAuthorizationConfiguration configuration = getExternalAuthorizationConfiguration(configurationObject);
+        AuthorizationManager authorizationManager = buildInternal(configuration);
+
+        if (configuration.cacheDuration() <= 0 && configuration.negativeCacheDuration() <= 0) {
+            return authorizationManager;
+        }
+
+        // Cache the decisions of the external API per user and document to avoid calling it for every search.
+        Duration lifespan = Duration.ofSeconds(Math.max(0, configuration.cacheDuration()));
+        Duration negativeLifespan = Duration.ofSeconds(Math.max(0, configuration.negativeCacheDuration()));
+        return documentIds -> this.decisionCache.canView(configuration.url(), getCurrentUser(), documentIds,
+            lifespan, negativeLifespan, authorizationManager);
+    }
+
+    private String getCurrentUser()
+    {
+        DocumentReference userReference = this.contextProvider.get().getUserReference();
+        return userReference != null ? this.entityReferenceSerializer.serialize(userReference) : "";
     }
 
     private AuthorizationManager buildInternal(ExternalAuthorizationConfiguration configuration)
@@ -94,22 +137,20 @@ public class ExternalAuthorizationManagerBuilder implements AuthorizationManager
                     .header("Content-Type", APPLICATION_JSON)
                     .header("User-Agent", "XWiki AI LLM Application");
 
-                ObjectMapper objectMapper = new ObjectMapper();
-                objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-
                 ExternalAuthorizationRequest request = this.externalAuthorizationRequestBuilder.build(documentIds);
 
-                builder.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(request)));
+                builder.POST(HttpRequest.BodyPublishers.ofByteArray(
+                    this.jsonCodec.getWriter(ExternalAuthorizationRequest.class).writeValueAsBytes(request)));
 
-                HttpResponse<InputStream> httpResponse = this.httpClientFactory.createHttpClient()
+                HttpResponse<InputStream> httpResponse = this.httpClientFactory
+                    .getHttpClient(configuration.url(), HttpClient.Version.HTTP_1_1)
                     .send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
 
                 if (httpResponse.statusCode() != 200) {
                     throw new IOException("HTTP request failed with status code " + httpResponse.statusCode());
                 }
 
-                return objectMapper.readValue(httpResponse.body(),
-                    new ObjectMapper().getTypeFactory().constructMapType(Map.class, String.class, Boolean.class));
+                return this.jsonCodec.getReader(RESPONSE_TYPE).readValue(httpResponse.body());
             } catch (InterruptedException e) {
                 this.logger.warn("Failed to check access to documents at url [{}], thread was interrupted: {}",
                     configuration.url(), ExceptionUtils.getRootCauseMessage(e));
@@ -149,7 +190,10 @@ public class ExternalAuthorizationManagerBuilder implements AuthorizationManager
 
     private static ExternalAuthorizationConfiguration getExternalAuthorizationConfiguration(BaseObject object)
     {
-        return new ExternalAuthorizationConfiguration(object.getStringValue(URL_FIELD));
+        return new ExternalAuthorizationConfiguration(object.getStringValue(URL_FIELD),
+            object.getIntValue(CACHE_DURATION_FIELD, ExternalAuthorizationConfiguration.DEFAULT_CACHE_DURATION),
+            object.getIntValue(NEGATIVE_CACHE_DURATION_FIELD,
+                ExternalAuthorizationConfiguration.DEFAULT_NEGATIVE_CACHE_DURATION));
     }
 
     @Override
@@ -157,6 +201,9 @@ public class ExternalAuthorizationManagerBuilder implements AuthorizationManager
     {
         if (configuration instanceof ExternalAuthorizationConfiguration externalAuthorizationConfiguration) {
             object.setStringValue(URL_FIELD, externalAuthorizationConfiguration.url());
+            object.setIntValue(CACHE_DURATION_FIELD, externalAuthorizationConfiguration.cacheDuration());
+            object.setIntValue(NEGATIVE_CACHE_DURATION_FIELD,
+                externalAuthorizationConfiguration.negativeCacheDuration());
         }
     }
 }
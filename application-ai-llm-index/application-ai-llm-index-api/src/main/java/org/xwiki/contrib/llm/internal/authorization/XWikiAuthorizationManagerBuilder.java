@@ -19,8 +19,12 @@
  */
 package org.xwiki.contrib.llm.internal.authorization;
 
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -34,6 +38,7 @@ import org.xwiki.contrib.llm.authorization.AuthorizationManager;
 import org.xwiki.contrib.llm.authorization.AuthorizationManagerBuilder;
 import org.xwiki.contrib.llm.internal.DefaultCollection;
 import org.xwiki.contrib.llm.internal.xwikistore.XWikiDocumentStore;
+import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.security.authorization.Right;
@@ -69,15 +74,37 @@ public class XWikiAuthorizationManagerBuilder implements AuthorizationManagerBui
             throw new IndexException("The xwiki rights checking method only works with the xwiki document store.");
         }
 
-        return documentIds -> {
-            XWikiContext context = this.contextProvider.get();
-            return documentIds.stream()
-                .collect(Collectors.toMap(Function.identity(), id ->
-                    this.authorizationManager.hasAccess(Right.VIEW, context.getUserReference(),
-                        this.documentReferenceResolver.resolve(id))
-                    )
-                );
-        };
+        return this::canView;
+    }
+
+    /**
+     * Evaluates the view right on all candidate documents in one pass. Every document is checked only once, even if
+     * several of its translations are candidates, as rights don't depend on the locale.
+     *
+     * @param documentIds the ids of the documents to check
+     * @return a map of document ids to whether the current user can view them
+     */
+    private Map<String, Boolean> canView(Set<String> documentIds)
+    {
+        DocumentReference userReference = this.contextProvider.get().getUserReference();
+
+        Map<DocumentReference, List<String>> documentIdsByReference = new HashMap<>();
+        for (String documentId : documentIds) {
+            DocumentReference documentReference = this.documentReferenceResolver.resolve(documentId);
+            if (documentReference.getLocale() != null) {
+                documentReference = new DocumentReference(documentReference, (Locale) null);
+            }
+            documentIdsByReference.computeIfAbsent(documentReference, document -> new ArrayList<>()).add(documentId);
+        }
+
+        Map<String, Boolean> result = new HashMap<>(documentIds.size());
+        for (Map.Entry<DocumentReference, List<String>> document : documentIdsByReference.entrySet()) {
+            boolean canView = this.authorizationManager.hasAccess(Right.VIEW, userReference, document.getKey());
+            for (String documentId : document.getValue()) {
+                result.put(documentId, canView);
+            }
+        }
+        return result;
     }
 
     @Override
@@ -0,0 +1,86 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.fusion;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.contrib.llm.SearchResultFusion;
+import org.xwiki.contrib.llm.openai.Context;
+
+/**
+ * Base class for fusions that compute a score for each result of each search and sum the weighted scores of results
+ * with the same content.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public abstract class AbstractScoringSearchResultFusion implements SearchResultFusion
+{
+    private static final class FusedResult
+    {
+        private final Context context;
+
+        private double score;
+
+        FusedResult(Context context)
+        {
+            this.context = context;
+        }
+
+        private Context toContext()
+        {
+            return new Context(this.context.collectionId(), this.context.documentId(), this.context.url(),
+                this.context.content(), this.score, this.context.vector());
+        }
+    }
+
+    @Override
+    public List<Context> fuse(List<Context> semanticResults, List<Context> keywordResults, double semanticWeight,
+        double keywordWeight)
+    {
+        Map<String, FusedResult> fusedResults = new LinkedHashMap<>();
+        addResults(fusedResults, semanticResults, semanticWeight);
+        addResults(fusedResults, keywordResults, keywordWeight);
+        // The sort is stable, so on equal scores semantic results stay first.
+        return fusedResults.values().stream()
+            .sorted(Comparator.comparingDouble((FusedResult result) -> result.score).reversed())
+            .map(FusedResult::toContext)
+            .toList();
+    }
+
+    private void addResults(Map<String, FusedResult> fusedResults, List<Context> results, double weight)
+    {
+        double[] scores = getScores(results);
+        for (int i = 0; i < results.size(); i++) {
+            Context context = results.get(i);
+            fusedResults.computeIfAbsent(context.content(), key -> new FusedResult(context)).score +=
+                weight * scores[i];
+        }
+    }
+
+    /**
+     * @param results the results of a single search, best result first
+     * @return the score of each result on a scale that is comparable between searches
+     */
+    protected abstract double[] getScores(List<Context> results);
+}
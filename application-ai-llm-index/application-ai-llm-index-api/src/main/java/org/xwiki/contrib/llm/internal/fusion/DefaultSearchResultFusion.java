@@ -0,0 +1,52 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.fusion;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.SearchResultFusion;
+import org.xwiki.contrib.llm.openai.Context;
+
+/**
+ * Concatenates the semantic and keyword search results and keeps their original scores. The weights are ignored.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component
+@Singleton
+public class DefaultSearchResultFusion implements SearchResultFusion
+{
+    @Override
+    public List<Context> fuse(List<Context> semanticResults, List<Context> keywordResults, double semanticWeight,
+        double keywordWeight)
+    {
+        Set<String> uniqueContent = new HashSet<>();
+        return Stream.concat(semanticResults.stream(), keywordResults.stream())
+            .filter(context -> uniqueContent.add(context.content()))
+            .toList();
+    }
+}
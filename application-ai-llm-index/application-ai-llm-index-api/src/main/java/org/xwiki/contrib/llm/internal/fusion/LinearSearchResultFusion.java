@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.fusion;
+
+import java.util.List;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.openai.Context;
+
+/**
+ * Linear blend of the scores of both searches after normalizing them to [0, 1] with min-max normalization.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component
+@Singleton
+@Named("linear")
+public class LinearSearchResultFusion extends AbstractScoringSearchResultFusion
+{
+    @Override
+    protected double[] getScores(List<Context> results)
+    {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (Context result : results) {
+            if (result.similarityScore() != null) {
+                min = Math.min(min, result.similarityScore());
+                max = Math.max(max, result.similarityScore());
+            }
+        }
+
+        double[] scores = new double[results.size()];
+        for (int i = 0; i < scores.length; i++) {
+            Double score = results.get(i).similarityScore();
+            if (score == null) {
+                scores[i] = 0;
+            } else if (max > min) {
+                scores[i] = (score - min) / (max - min);
+            } else {
+                // All results have the same score.
+                scores[i] = 1;
+            }
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.fusion;
+
+import java.util.List;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.openai.Context;
+
+/**
+ * Reciprocal rank fusion: the score of a result is {@code 1 / (k + rank)}. It only depends on the rank of the result
+ * in each search and therefore doesn't require comparable scores.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component
+@Singleton
+@Named("rrf")
+public class ReciprocalRankSearchResultFusion extends AbstractScoringSearchResultFusion
+{
+    /**
+     * The constant that reduces the influence of the first ranks, 60 is the value of the original paper.
+     */
+    static final int K = 60;
+
+    @Override
+    protected double[] getScores(List<Context> results)
+    {
+        double[] scores = new double[results.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = 1.0 / (K + i + 1);
+        }
+        return scores;
+    }
+}
@@ -31,6 +31,7 @@ import org.xwiki.contrib.llm.Collection;
 import org.xwiki.contrib.llm.IndexException;
 import org.xwiki.contrib.llm.SolrConnector;
 import org.xwiki.contrib.llm.internal.CollectionIndexingTaskConsumer;
+import org.xwiki.contrib.llm.internal.JSONCodec;
 import org.xwiki.contrib.llm.rest.CollectionResource;
 import org.xwiki.contrib.llm.rest.JSONCollection;
 import org.xwiki.contrib.llm.rest.ReindexOptions;
@@ -62,12 +63,16 @@ public class DefaultCollectionResource extends AbstractCollectionResource implem
     @Inject
     private SolrConnector solrConnector;
 
+    @Inject
+    private JSONCodec jsonCodec;
+
     @Override
     public JSONCollection getCollection(String wikiName, String collectionName)
         throws XWikiRestException
     {
         try {
-            return new JSONCollection(getInternalCollection(wikiName, collectionName), new ObjectMapper());
+            return new JSONCollection(getInternalCollection(wikiName, collectionName),
+                this.jsonCodec.getObjectMapper());
         } catch (IndexException e) {
             throw convertException(collectionName, e, "retrieving");
         }
@@ -90,7 +95,7 @@ public class DefaultCollectionResource extends AbstractCollectionResource implem
             }
 
             // Assign the new collection to the existing one
-            ObjectMapper objectMapper = new ObjectMapper();
+            ObjectMapper objectMapper = this.jsonCodec.getObjectMapper();
             collection.applyTo(existingCollection, objectMapper);
 
             return new JSONCollection(existingCollection, objectMapper);
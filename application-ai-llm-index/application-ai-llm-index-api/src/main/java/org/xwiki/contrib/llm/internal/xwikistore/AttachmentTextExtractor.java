@@ -0,0 +1,315 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.xwikistore;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.tika.Tika;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.slf4j.Logger;
+import org.xml.sax.SAXException;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.contrib.llm.internal.CacheKeyBuilder;
+import org.xwiki.contrib.llm.internal.PersistentFileCache;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiAttachment;
+
+/**
+ * Extracts the text of attachments with Tika and caches it in the permanent directory, such that re-indexing a
+ * document doesn't parse its unchanged attachments again.
+ *
+ * <p>The text is cached by attachment reference, version and date. Parsing runs in a small dedicated pool of
+ * threads such that large or malformed files can't occupy all indexing threads. Attachments larger than
+ * {@link #MAX_ATTACHMENT_SIZE} bytes are skipped. Both waiting for a free parser thread and parsing are abandoned
+ * after {@link #PARSE_TIMEOUT_SECONDS} seconds each. As parsers don't necessarily react to interruptions, the pool
+ * gets an additional thread for every abandoned parse that is still running, up to {@link #MAX_ABANDONED_PARSES}
+ * threads, such that stuck parsers don't block the extraction of other attachments. Attachments whose content the
+ * parser rejected are cached without text to avoid parsing them on every indexing. Timeouts, interruptions and
+ * failures to read the attachment aren't cached, such that the attachment is parsed again at the next
+ * indexing.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = AttachmentTextExtractor.class)
+@Singleton
+public class AttachmentTextExtractor implements Initializable, Disposable
+{
+    /**
+     * The maximum size in bytes of attachments whose text is extracted.
+     */
+    static final long MAX_ATTACHMENT_SIZE = 100L * 1024 * 1024;
+
+    /**
+     * The maximum number of seconds to wait for the text of a single attachment.
+     */
+    static final long PARSE_TIMEOUT_SECONDS = 120;
+
+    /**
+     * The maximum number of abandoned parses that are still running for which an additional thread is added to the
+     * pool.
+     */
+    static final int MAX_ABANDONED_PARSES = 8;
+
+    /**
+     * The maximum number of bytes of cached attachment texts.
+     */
+    static final long MAX_CACHE_SIZE = 1024L * 1024 * 1024;
+
+    /**
+     * The number of threads that parse attachments. Parsing is CPU and memory intensive, so use few threads.
+     */
+    private static final int POOL_SIZE = 2;
+
+    private static final int RUNNING = 0;
+
+    private static final int DONE = 1;
+
+    private static final int ABANDONED = 2;
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @Inject
+    private Logger logger;
+
+    private final Tika tika = new Tika();
+
+    private PersistentFileCache fileCache;
+
+    private ThreadPoolExecutor executor;
+
+    private int abandonedParses;
+
+    /**
+     * The timeout of waiting for a parser thread and of parsing, in milliseconds, configurable for tests.
+     */
+    long parseTimeout = TimeUnit.SECONDS.toMillis(PARSE_TIMEOUT_SECONDS);
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        Path directory = this.environment.getPermanentDirectory().toPath().resolve("cache/aillm/attachmentTexts");
+        try {
+            this.fileCache = new PersistentFileCache(directory, MAX_CACHE_SIZE, this.logger);
+        } catch (IOException e) {
+            throw new InitializationException("Failed to initialize the attachment text cache", e);
+        }
+
+        this.executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
+                .namingPattern("LLM attachment parser %d")
+                .daemon(true)
+                .build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the text of the given attachment, parsing the attachment only if its text isn't cached yet.
+     *
+     * @param attachment the attachment to get the text of
+     * @param context the XWiki context to load the attachment content
+     * @return a reader on the text of the attachment, or {@code null} if the attachment is too large
+     * @throws IOException if the cached text can't be read
+     * @throws XWikiException if the attachment content can't be loaded
+     */
+    public Reader getText(XWikiAttachment attachment, XWikiContext context) throws IOException, XWikiException
+    {
+        if (attachment.getLongSize() > MAX_ATTACHMENT_SIZE) {
+            this.logger.debug("Skipping the attachment [{}] as its size [{}] exceeds the limit of [{}] bytes.",
+                attachment.getReference(), attachment.getLongSize(), MAX_ATTACHMENT_SIZE);
+            return null;
+        }
+
+        String key = DigestUtils.sha256Hex(getKey(attachment));
+        Path cachedText = this.fileCache.get(key);
+        if (cachedText != null) {
+            try {
+                return Files.newBufferedReader(cachedText, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                // The file might have been evicted concurrently, parse the attachment again.
+                this.fileCache.remove(key);
+            }
+        }
+
+        ParseResult result = parse(attachment, context);
+        if (result.cacheable()) {
+            this.fileCache.put(key, path -> Files.writeString(path, result.text(), StandardCharsets.UTF_8));
+        }
+        return new StringReader(result.text());
+    }
+
+    /**
+     * The extracted text of an attachment.
+     *
+     * @param text the text, empty if parsing failed
+     * @param cacheable {@code false} if parsing failed for a reason that might not occur again
+     */
+    private record ParseResult(String text, boolean cacheable)
+    {
+    }
+
+    private ParseResult parse(XWikiAttachment attachment, XWikiContext context) throws IOException, XWikiException
+    {
+        // Load the content in the current thread as loading it requires the XWiki context.
+        InputStream inputStream = attachment.getContentInputStream(context);
+        String filename = attachment.getFilename();
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger state = new AtomicInteger(RUNNING);
+        Future<String> future = this.executor.submit(() -> {
+            started.countDown();
+            try {
+                return parseContent(inputStream, filename);
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    removeParserThread();
+                }
+            }
+        });
+        try {
+            // Waiting for a free parser thread and parsing have separate timeouts, such that parsing an attachment
+            // doesn't time out because of the attachments before it.
+            if (!started.await(this.parseTimeout, TimeUnit.MILLISECONDS)) {
+                throw new TimeoutException();
+            }
+            return new ParseResult(future.get(this.parseTimeout, TimeUnit.MILLISECONDS), true);
+        } catch (InterruptedException e) {
+            abandon(future, started, state);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(
+                "Interrupted while parsing the attachment " + attachment.getReference());
+        } catch (TimeoutException e) {
+            abandon(future, started, state);
+            this.logger.warn("Parsing the attachment [{}] took more than [{}] milliseconds, its content is ignored.",
+                attachment.getReference(), this.parseTimeout);
+        } catch (ExecutionException e) {
+            this.logger.warn("Failed to parse the attachment [{}], its content is ignored: [{}]",
+                attachment.getReference(), ExceptionUtils.getRootCauseMessage(e));
+            // Only the rejection of the content by the parser will occur again for the same attachment version.
+            Throwable cause = e.getCause();
+            return new ParseResult("", cause instanceof TikaException || cause instanceof SAXException);
+        } finally {
+            // Also close the stream when the task was cancelled before it started.
+            IOUtils.closeQuietly(inputStream);
+        }
+
+        return new ParseResult("", false);
+    }
+
+    private void abandon(Future<String> future, CountDownLatch started, AtomicInteger state)
+    {
+        future.cancel(true);
+        // When the parser doesn't stop on the interruption, replace its thread until it stops.
+        synchronized (this.executor) {
+            boolean canAddThread = started.getCount() == 0 && this.abandonedParses < MAX_ABANDONED_PARSES;
+            if (canAddThread && state.compareAndSet(RUNNING, ABANDONED)) {
+                this.abandonedParses++;
+                this.executor.setMaximumPoolSize(POOL_SIZE + this.abandonedParses);
+                this.executor.setCorePoolSize(POOL_SIZE + this.abandonedParses);
+            }
+        }
+    }
+
+    private void removeParserThread()
+    {
+        synchronized (this.executor) {
+            this.abandonedParses--;
+            this.executor.setCorePoolSize(POOL_SIZE + this.abandonedParses);
+            this.executor.setMaximumPoolSize(POOL_SIZE + this.abandonedParses);
+        }
+    }
+
+    private String parseContent(InputStream inputStream, String filename) throws Exception
+    {
+        // Limit the text of each attachment like Tika#parseToString does.
+        BodyContentHandler handler = new BodyContentHandler(this.tika.getMaxStringLength());
+        Metadata metadata = new Metadata();
+        metadata.set(TikaCoreProperties.RESOURCE_NAME_KEY, filename);
+        Parser parser = this.tika.getParser();
+        ParseContext parseContext = new ParseContext();
+        parseContext.set(Parser.class, parser);
+        try (InputStream stream = inputStream) {
+            parser.parse(stream, handler, metadata, parseContext);
+        } catch (Exception e) {
+            // Keep the text that was extracted until the limit was reached.
+            if (!WriteLimitReachedException.isWriteLimitReached(e)) {
+                throw e;
+            }
+        }
+        return handler.toString();
+    }
+
+    private String getKey(XWikiAttachment attachment)
+    {
+        Date date = attachment.getDate();
+        return new CacheKeyBuilder()
+            .append(this.entityReferenceSerializer.serialize(attachment.getReference()))
+            .append(attachment.getVersion())
+            .append(date != null ? date.getTime() : 0)
+            .build();
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+}
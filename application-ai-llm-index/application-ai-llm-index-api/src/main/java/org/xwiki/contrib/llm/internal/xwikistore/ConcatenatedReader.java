@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.xwikistore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+
+/**
+ * A reader that reads the readers of an iterator one after the other. The next reader is only requested from the
+ * iterator when the previous one has been read completely, and readers that haven't been requested when this reader is
+ * closed are never requested.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public class ConcatenatedReader extends Reader
+{
+    private final Iterator<? extends Reader> readers;
+
+    private Reader currentReader;
+
+    /**
+     * @param readers the readers to read, each reader is closed once it has been read completely
+     */
+    public ConcatenatedReader(Iterator<? extends Reader> readers)
+    {
+        this.readers = readers;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException
+    {
+        if (length == 0) {
+            return 0;
+        }
+
+        while (true) {
+            if (this.currentReader == null) {
+                if (!this.readers.hasNext()) {
+                    return -1;
+                }
+                this.currentReader = this.readers.next();
+            }
+
+            int result = this.currentReader.read(buffer, offset, length);
+            if (result != -1) {
+                return result;
+            }
+
+            this.currentReader.close();
+            this.currentReader = null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        if (this.currentReader != null) {
+            this.currentReader.close();
+            this.currentReader = null;
+        }
+    }
+}
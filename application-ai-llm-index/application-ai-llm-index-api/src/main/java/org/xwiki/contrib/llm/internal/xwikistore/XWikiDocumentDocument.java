@@ -19,6 +19,11 @@
  */
 package org.xwiki.contrib.llm.internal.xwikistore;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
@@ -31,9 +36,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.inject.Provider;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.tika.Tika;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
@@ -47,6 +52,7 @@ import org.xwiki.rendering.syntax.Syntax;
 import org.xwiki.rendering.syntax.SyntaxType;
 
 import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
 import com.xpn.xwiki.doc.XWikiDocument;
 import com.xpn.xwiki.objects.classes.BaseClass;
 import com.xpn.xwiki.objects.classes.PropertyClass;
@@ -86,7 +92,8 @@ public class XWikiDocumentDocument implements Document
     @Inject
     private ContextualLocalizationManager localizationManager;
 
-    private final Tika tika = new Tika();
+    @Inject
+    private AttachmentTextExtractor attachmentTextExtractor;
 
     /**
      * Initialize this document.
@@ -150,33 +157,110 @@ public class XWikiDocumentDocument implements Document
     @Override
     public String getContent()
     {
-        // FIXME: refactor this to return an input stream that iteratively returns all of these values instead of a
-        //  string.
-        XWikiContext context = this.xWikiContextProvider.get();
-        return Stream.of(
-            formatHeading(1, this.xWikiDocument.getRenderedTitle(this.xWikiDocument.getSyntax(), context))
-                + this.xWikiDocument.getContent(),
-                getFormattedXObjects(),
-                getFormattedAttachments()
-            )
-            .filter(StringUtils::isNotBlank)
-            .collect(Collectors.joining(DELIMITER));
+        try (Reader reader = getContentReader()) {
+            return IOUtils.toString(reader);
+        } catch (IOException e) {
+            // Attachments that can't be read are skipped, so this shouldn't happen.
+            throw new UncheckedIOException("Failed to read the content of the document", e);
+        }
     }
 
-    private String getFormattedAttachments()
+    @Override
+    public Reader getContentReader()
     {
         XWikiContext context = this.xWikiContextProvider.get();
-        return this.xWikiDocument.getAttachmentList().stream().flatMap(attachment -> {
-            try {
-                String content = this.tika.parseToString(attachment.getContentInputStream(context));
-                if (StringUtils.isNotBlank(content)) {
-                    return Stream.of(formatHeading(2, attachment.getFilename()) + content);
+        String content = formatHeading(1, this.xWikiDocument.getRenderedTitle(this.xWikiDocument.getSyntax(), context))
+            + this.xWikiDocument.getContent();
+        String xObjects = getFormattedXObjects();
+        Stream<Reader> xObjectsReader =
+            StringUtils.isNotBlank(xObjects) ? Stream.of(new StringReader(DELIMITER + xObjects)) : Stream.empty();
+        // The stream is lazy, so the attachments are only parsed one after the other while the content is read.
+        Stream<Reader> attachmentReaders = this.xWikiDocument.getAttachmentList().stream()
+            .map(attachment -> openAttachment(attachment, context))
+            .filter(Objects::nonNull);
+        return new ConcatenatedReader(
+            Stream.concat(Stream.concat(Stream.of(new StringReader(content)), xObjectsReader), attachmentReaders)
+                .iterator());
+    }
+
+    /**
+     * @return a reader on the formatted content of the attachment, or {@code null} if the attachment has no text
+     */
+    private Reader openAttachment(XWikiAttachment attachment, XWikiContext context)
+    {
+        Reader contentReader = null;
+        try {
+            contentReader = this.attachmentTextExtractor.getText(attachment, context);
+            if (contentReader == null) {
+                return null;
+            }
+
+            // Skip attachments without text, this requires reading until the first non-whitespace character.
+            StringBuilder start = new StringBuilder();
+            int character;
+            do {
+                character = contentReader.read();
+                if (character != -1) {
+                    start.append((char) character);
                 }
-            } catch (Exception e) {
-                this.logger.warn("Failed to parse attachment content: {}", ExceptionUtils.getRootCauseMessage(e));
+            } while (character != -1 && Character.isWhitespace(character));
+
+            if (character == -1) {
+                contentReader.close();
+                return null;
             }
-            return Stream.empty();
-        }).collect(Collectors.joining(DELIMITER));
+
+            return new ConcatenatedReader(List.of(
+                new StringReader(DELIMITER + formatHeading(2, attachment.getFilename()) + start),
+                new AttachmentContentReader(contentReader, attachment.getFilename())
+            ).iterator());
+        } catch (Exception e) {
+            this.logger.warn("Failed to parse attachment content: {}", ExceptionUtils.getRootCauseMessage(e));
+            IOUtils.closeQuietly(contentReader);
+            return null;
+        }
+    }
+
+    /**
+     * Ends the content of an attachment when parsing it fails, such that the rest of the document can still be read.
+     */
+    private final class AttachmentContentReader extends FilterReader
+    {
+        private final String filename;
+
+        AttachmentContentReader(Reader reader, String filename)
+        {
+            super(reader);
+            this.filename = filename;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            try {
+                return super.read();
+            } catch (IOException e) {
+                logParsingFailure(e);
+                return -1;
+            }
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException
+        {
+            try {
+                return super.read(buffer, offset, length);
+            } catch (IOException e) {
+                logParsingFailure(e);
+                return -1;
+            }
+        }
+
+        private void logParsingFailure(IOException e)
+        {
+            XWikiDocumentDocument.this.logger.warn("Failed to parse the content of attachment [{}]: {}",
+                this.filename, ExceptionUtils.getRootCauseMessage(e));
+        }
     }
 
     private String getFormattedXObjects()
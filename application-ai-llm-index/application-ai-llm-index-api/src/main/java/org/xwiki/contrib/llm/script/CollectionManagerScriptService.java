@@ -37,6 +37,7 @@ import org.xwiki.contrib.llm.DocumentStore;
 import org.xwiki.contrib.llm.IndexException;
 import org.xwiki.contrib.llm.IndexTaskConsumer;
 import org.xwiki.contrib.llm.authorization.AuthorizationManagerBuilder;
+import org.xwiki.contrib.llm.internal.PersistentEmbeddingCache;
 import org.xwiki.contrib.llm.internal.xwikistore.XWikiDocumentDocumentIndexingTaskConsumer;
 import org.xwiki.contrib.llm.openai.Context;
 import org.xwiki.index.TaskManager;
@@ -44,6 +45,9 @@ import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.model.reference.DocumentReferenceResolver;
 import org.xwiki.model.reference.EntityReference;
 import org.xwiki.script.service.ScriptService;
+import org.xwiki.security.authorization.AccessDeniedException;
+import org.xwiki.security.authorization.ContextualAuthorizationManager;
+import org.xwiki.security.authorization.Right;
 import org.xwiki.stability.Unstable;
 
 import static java.util.Map.Entry;
@@ -74,6 +78,12 @@ public class CollectionManagerScriptService implements ScriptService
     @Inject
     private TaskManager taskManager;
 
+    @Inject
+    private ContextualAuthorizationManager contextualAuthorizationManager;
+
+    @Inject
+    private PersistentEmbeddingCache persistentEmbeddingCache;
+
     /**
      * Creates a new collection.
      *
@@ -134,6 +144,24 @@ public class CollectionManagerScriptService implements ScriptService
         this.collectionManager.clearIndexCore();
     }
 
+    /**
+     * Removes all cached embeddings of indexed texts, such that they are computed again by the embedding models. This
+     * affects all wikis and therefore requires programming right.
+     *
+     * @throws IndexException if the current user doesn't have programming right
+     * @since 0.9.1
+     */
+    @Unstable
+    public void clearEmbeddingCache() throws IndexException
+    {
+        try {
+            this.contextualAuthorizationManager.checkAccess(Right.PROGRAM);
+        } catch (AccessDeniedException e) {
+            throw new IndexException("You do not have the right to clear the embedding cache", e);
+        }
+        this.persistentEmbeddingCache.clear();
+    }
+
     /**
      * @param solrQuery the solr query to use for the search
      * @param limit the maximum number of results to return
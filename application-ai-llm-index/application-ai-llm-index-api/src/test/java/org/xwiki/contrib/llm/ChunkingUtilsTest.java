@@ -19,6 +19,10 @@
  */
 package org.xwiki.contrib.llm;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
@@ -27,6 +31,7 @@ import javax.inject.Provider;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.xwiki.contrib.llm.internal.CollectionSnapshotCache;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
@@ -34,6 +39,7 @@ import org.xwiki.test.junit5.mockito.MockComponent;
 import com.xpn.xwiki.XWikiContext;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 /**
@@ -73,7 +79,7 @@ class ChunkingUtilsTest
     private ChunkingUtils chunkingUtils;
 
     @MockComponent
-    private CollectionManager collectionManager;
+    private CollectionSnapshotCache collectionSnapshotCache;
 
     @Mock
     private Collection mockCollection;
@@ -96,9 +102,9 @@ class ChunkingUtilsTest
         String collectionName = "collectionName";
         // Setup the mock objects
         when(this.mockDocument.getCollection()).thenReturn(collectionName);
-        when(this.mockDocument.getContent()).thenReturn(TEST_CONTENT);
+        when(this.mockDocument.getContentReader()).thenAnswer(invocation -> new StringReader(TEST_CONTENT));
         when(this.mockDocument.getID()).thenReturn(DOCUMENT_ID);
-        when(this.collectionManager.getCollection(collectionName)).thenReturn(this.mockCollection);
+        when(this.collectionSnapshotCache.get(collectionName)).thenReturn(this.mockCollection);
         when(this.chunkProvider.get()).thenAnswer(invocation -> new Chunk());
 
         when(this.contextProvider.get()).thenReturn(this.xWikiContext);
@@ -195,4 +201,53 @@ class ChunkingUtilsTest
             assertEquals(expectedChunks.get(entry.getKey()), entry.getValue().getContent());
         }
     }
+
+    @Test
+    void chunkDocumentReadsIncrementally() throws Exception
+    {
+        when(this.mockCollection.getChunkingMaxSize()).thenReturn(80);
+        when(this.mockCollection.getChunkingOverlapOffset()).thenReturn(30);
+        List<Chunk> expectedChunks = this.chunkingUtils.chunkDocument(this.mockCollection, this.mockDocument);
+
+        // A reader that returns a single character per call must produce the same chunks.
+        when(this.mockDocument.getContentReader()).thenAnswer(invocation -> new FilterReader(
+            new StringReader(TEST_CONTENT))
+        {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException
+            {
+                return super.read(buffer, offset, Math.min(length, 1));
+            }
+        });
+        List<Chunk> actualChunks = new ArrayList<>();
+        this.chunkingUtils.chunkDocument(this.mockCollection, this.mockDocument, actualChunks::add);
+
+        assertEquals(expectedChunks.stream().map(Chunk::getContent).toList(),
+            actualChunks.stream().map(Chunk::getContent).toList());
+        assertEquals(TEST_CONTENT.length(), actualChunks.get(actualChunks.size() - 1).getPosLastChar());
+    }
+
+    @Test
+    void chunkLargeDocument() throws Exception
+    {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append("== Section ").append(i).append(" ==\n\n");
+            content.append("A sentence of the section. ".repeat(10)).append("\n\n");
+        }
+        when(this.mockDocument.getContentReader()).thenAnswer(invocation -> new StringReader(content.toString()));
+        when(this.mockCollection.getChunkingMaxSize()).thenReturn(1000);
+        when(this.mockCollection.getChunkingOverlapOffset()).thenReturn(0);
+
+        List<Chunk> chunks = this.chunkingUtils.chunkDocument(this.mockCollection, this.mockDocument);
+
+        // Every chunk ends before a heading and the chunks cover the whole content.
+        StringBuilder chunkedContent = new StringBuilder();
+        for (Chunk chunk : chunks) {
+            assertTrue(chunk.getContent().startsWith("== Section "), chunk.getContent());
+            assertTrue(chunk.getContent().length() <= 1000);
+            chunkedContent.append(chunk.getContent());
+        }
+        assertEquals(content.toString(), chunkedContent.toString());
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.OptionalInt;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Unit tests for {@link ChunkBoundaryIndex}.
+ *
+ * @version $Id$
+ */
+class ChunkBoundaryIndexTest
+{
+    private static final String CONTENT = """
+        Introduction. With two sentences
+        and a second line.
+
+        = XWiki heading =
+
+        Paragraph.
+
+        ## Markdown heading
+
+        Underlined heading
+        ==================
+
+        Last paragraph.""";
+
+    private static ChunkBoundaryIndex index(String content)
+    {
+        ChunkBoundaryIndex index = new ChunkBoundaryIndex();
+        index.scan(content.toCharArray(), 0, content.length());
+        index.finish();
+        return index;
+    }
+
+    @Test
+    void findBoundaryAtEndPrefersHeadings()
+    {
+        ChunkBoundaryIndex index = index(CONTENT);
+
+        assertEquals(OptionalInt.of(CONTENT.indexOf("Underlined")),
+            index.findBoundaryAtEnd(0, CONTENT.length(), 0));
+        // The underline must start in the chunk.
+        assertEquals(OptionalInt.of(CONTENT.indexOf("##")),
+            index.findBoundaryAtEnd(0, CONTENT.indexOf("====="), 0));
+        assertEquals(OptionalInt.of(CONTENT.indexOf("= XWiki")),
+            index.findBoundaryAtEnd(0, CONTENT.indexOf("##"), 0));
+    }
+
+    @Test
+    void findBoundaryAtEndFallsBackToSeparators()
+    {
+        ChunkBoundaryIndex index = index(CONTENT);
+        int end = CONTENT.indexOf("= XWiki") - 1;
+
+        // Blank line, line break, sentence end and space in this order if the chunk is still long enough.
+        assertEquals(OptionalInt.of(CONTENT.indexOf("= XWiki") - 1), index.findBoundaryAtEnd(0, end, 0));
+        assertEquals(OptionalInt.of(CONTENT.indexOf("and")), index.findBoundaryAtEnd(0, end - 1, 0));
+        assertEquals(OptionalInt.of(CONTENT.indexOf("With")),
+            index.findBoundaryAtEnd(0, CONTENT.indexOf("sentences"), 0));
+        assertEquals(OptionalInt.of(CONTENT.indexOf("sentences")),
+            index.findBoundaryAtEnd(0, CONTENT.indexOf("sentences") + 1, 15));
+        assertEquals(OptionalInt.empty(), index.findBoundaryAtEnd(0, CONTENT.indexOf("sentences") - 1, 25));
+    }
+
+    @Test
+    void findBoundaryAtStart()
+    {
+        ChunkBoundaryIndex index = index(CONTENT);
+        int headingStart = CONTENT.indexOf("## Markdown");
+
+        assertEquals(OptionalInt.of(headingStart), index.findBoundaryAtStart(headingStart - 5, CONTENT.length(), 10));
+        // The blank line before the heading if the heading is too far from the start.
+        assertEquals(OptionalInt.of(headingStart), index.findBoundaryAtStart(headingStart - 6, CONTENT.length(), 5));
+        assertEquals(OptionalInt.of(CONTENT.indexOf("Markdown heading") + "Markdown".length() + 1),
+            index.findBoundaryAtStart(headingStart + 3, CONTENT.length(), 10));
+        assertEquals(OptionalInt.empty(), index.findBoundaryAtStart(headingStart + 3, CONTENT.length(), 8));
+    }
+
+    @Test
+    void underlinedHeadingDependsOnNextLine()
+    {
+        ChunkBoundaryIndex index = new ChunkBoundaryIndex();
+        String content = "Some text\nTitle\n===";
+        index.scan(content.toCharArray(), 0, content.length());
+
+        // It is only known that "Title" is a heading when the underline ends.
+        assertEquals(content.indexOf("==="), index.getKnownEnd());
+        index.scan("=\nText".toCharArray(), 0, 6);
+        assertEquals(content.length() + 6, index.getKnownEnd());
+        assertEquals(OptionalInt.of(content.indexOf("Title")), index.findBoundaryAtEnd(0, content.length(), 0));
+
+        index.scan("\nNo title\n--x".toCharArray(), 0, 13);
+        assertEquals(OptionalInt.of(content.indexOf("Title")), index.findBoundaryAtEnd(0, content.length() + 19, 0));
+    }
+
+    @Test
+    void discardBefore()
+    {
+        ChunkBoundaryIndex index = index(CONTENT);
+
+        index.discardBefore(CONTENT.indexOf("Paragraph"));
+
+        assertEquals(OptionalInt.empty(), index.findBoundaryAtEnd(0, CONTENT.indexOf("Paragraph"), 0));
+    }
+}
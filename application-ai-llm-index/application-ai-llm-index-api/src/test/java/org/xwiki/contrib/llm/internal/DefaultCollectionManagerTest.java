@@ -19,13 +19,17 @@
  */
 package org.xwiki.contrib.llm.internal;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import javax.inject.Named;
 
-import org.apache.solr.client.solrj.SolrServerException;
 import org.junit.jupiter.api.Test;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.contrib.llm.Collection;
@@ -33,6 +37,7 @@ import org.xwiki.contrib.llm.IndexException;
 import org.xwiki.contrib.llm.SolrConnector;
 import org.xwiki.contrib.llm.authorization.AuthorizationManager;
 import org.xwiki.contrib.llm.authorization.AuthorizationManagerBuilder;
+import org.xwiki.contrib.llm.internal.fusion.DefaultSearchResultFusion;
 import org.xwiki.contrib.llm.openai.Context;
 import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.query.Query;
@@ -40,7 +45,6 @@ import org.xwiki.query.QueryException;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
-import org.xwiki.user.group.GroupManager;
 
 import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.doc.XWikiDocument;
@@ -59,6 +63,8 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -68,7 +74,8 @@ import static org.mockito.Mockito.when;
  * @version $Id$
  */
 @OldcoreTest
-@ComponentList({ DefaultCollection.class })
+@ComponentList({ DefaultCollection.class, DefaultSearchResultFusion.class, SearchPassRatioTracker.class,
+    CollectionSnapshotCache.class })
 @ReferenceComponentList
 class DefaultCollectionManagerTest
 {
@@ -86,7 +93,7 @@ class DefaultCollectionManagerTest
     private DefaultCollectionManager collectionManager;
 
     @MockComponent
-    private GroupManager groupManager;
+    private UserGroupsCache userGroupsCache;
 
     @MockComponent
     @Named("customRights")
@@ -95,6 +102,9 @@ class DefaultCollectionManagerTest
     @MockComponent
     private SolrConnector solrConnector;
 
+    @MockComponent
+    private ContextualExecutor executor;
+
     @Test
     void createCollection() throws Exception
     {
@@ -175,32 +185,12 @@ class DefaultCollectionManagerTest
     }
 
     @Test
-    void hybridSearch() throws QueryException, ComponentLookupException, IndexException, SolrServerException
+    void hybridSearch() throws Exception
     {
-        XWikiContext context = this.oldcore.getXWikiContext();
-        context.setWikiId(WIKI_NAME);
-
-        mockCollectionsQuery(List.of());
         String collectionId2 = "testcollection2";
         Map<String, String> embeddingModelMap =
             Map.of(COLLECTION_ID, "testEmbeddingModel1", collectionId2, "testEmbeddingModel2");
-        embeddingModelMap.forEach(this::createAndSaveCollection);
-
-        when(this.customRightsAuthorizationManagerBuilder.getConfigurationClassReference())
-            .thenReturn(Collection.XCLASS_REFERENCE);
-        AuthorizationManager authorization1 = mock();
-        AuthorizationManager authorization2 = mock();
-        Map<String, Object> authorizationManagers =
-            Map.of(COLLECTION_ID, authorization1, collectionId2, authorization2);
-        when(this.customRightsAuthorizationManagerBuilder.build(any())).thenAnswer(invocation -> {
-            BaseObject configurationObject = invocation.getArgument(0);
-            return authorizationManagers.get(configurationObject.getStringValue("id"));
-        });
-
-        assertEquals(authorizationManagers.get(COLLECTION_ID),
-            this.collectionManager.getCollection(COLLECTION_ID).getAuthorizationManager());
-        assertEquals(authorizationManagers.get(collectionId2),
-            this.collectionManager.getCollection(collectionId2).getAuthorizationManager());
+        setUpCollections(embeddingModelMap);
 
         List<Context> contextList = List.of(
             new Context(collectionId2, "allowed4", "url4", "content4", 0.8, List.of(0.7f, 0.8f)),
@@ -209,12 +199,10 @@ class DefaultCollectionManagerTest
             new Context(COLLECTION_ID, "allowed1", "url1", "content1", 0.5, List.of(0.1f, 0.2f))
         );
 
-        when(authorization1.canView(Set.of("allowed1", "allowed3")))
-            .thenReturn(Map.of("allowed1", true, "allowed3", true));
-        when(authorization2.canView(Set.of("forbidden2", "allowed4")))
-            .thenReturn(Map.of("forbidden2", false, "allowed4", true));
-
-        when(this.solrConnector.similaritySearch(any(), any(), anyInt())).thenReturn(contextList.subList(0, 3));
+        when(this.solrConnector.similaritySearch("query", Map.of(COLLECTION_ID, "testEmbeddingModel1"), 4))
+            .thenReturn(List.of(contextList.get(1)));
+        when(this.solrConnector.similaritySearch("query", Map.of(collectionId2, "testEmbeddingModel2"), 4))
+            .thenReturn(List.of(contextList.get(0), contextList.get(2)));
         when(this.solrConnector.keywordSearch(any(), any(), anyInt())).thenReturn(contextList.subList(1, 4));
 
         List<Context> result =
@@ -223,8 +211,109 @@ class DefaultCollectionManagerTest
         List<Context> expected = List.of(contextList.get(0), contextList.get(1), contextList.get(3));
         assertEquals(expected, result);
 
-        verify(this.solrConnector).similaritySearch("query", embeddingModelMap, 4);
-        verify(this.solrConnector).keywordSearch("query", embeddingModelMap.keySet(), 3);
+        verify(this.solrConnector).similaritySearch("query", Map.of(COLLECTION_ID, "testEmbeddingModel1"), 4);
+        verify(this.solrConnector).similaritySearch("query", Map.of(collectionId2, "testEmbeddingModel2"), 4);
+        // Half of the results of the second collection have been filtered out by the similarity search, so the
+        // keyword search fetches twice as many results.
+        verify(this.solrConnector).keywordSearch("query", embeddingModelMap.keySet(), 6);
+    }
+
+    @Test
+    void hybridSearchDoesNotWaitForBusyExecutor() throws Exception
+    {
+        String collectionId2 = "testcollection2";
+        Map<String, String> embeddingModelMap =
+            Map.of(COLLECTION_ID, "testEmbeddingModel1", collectionId2, "testEmbeddingModel2");
+        setUpCollections(embeddingModelMap);
+        when(this.executor.hasQueuedTasks()).thenReturn(true);
+
+        Context context1 = new Context(COLLECTION_ID, "allowed1", "url1", "content1", 0.5, List.of(0.1f, 0.2f));
+        Context context2 = new Context(collectionId2, "allowed2", "url2", "content2", 0.6, List.of(0.3f, 0.4f));
+        when(this.solrConnector.similaritySearch("query", Map.of(COLLECTION_ID, "testEmbeddingModel1"), 2))
+            .thenReturn(List.of(context1));
+        when(this.solrConnector.similaritySearch("query", Map.of(collectionId2, "testEmbeddingModel2"), 2))
+            .thenReturn(List.of(context2));
+
+        assertEquals(List.of(context2, context1),
+            this.collectionManager.hybridSearch("query", List.of(COLLECTION_ID, collectionId2), 2, 0));
+
+        verify(this.executor, never()).submit(any());
+    }
+
+    @Test
+    void hybridSearchRefillsFilteredResults() throws Exception
+    {
+        Map<String, String> embeddingModelMap = Map.of(COLLECTION_ID, "testEmbeddingModel");
+        setUpCollections(embeddingModelMap);
+
+        Context forbidden1 = new Context(COLLECTION_ID, "forbidden1", "url1", "content1", 0.9, null);
+        Context allowed2 = new Context(COLLECTION_ID, "allowed2", "url2", "content2", 0.8, null);
+        Context forbidden3 = new Context(COLLECTION_ID, "forbidden3", "url3", "content3", 0.7, null);
+        Context allowed4 = new Context(COLLECTION_ID, "allowed4", "url4", "content4", 0.6, null);
+        when(this.solrConnector.similaritySearch("query", embeddingModelMap, 2))
+            .thenReturn(List.of(forbidden1, allowed2));
+        when(this.solrConnector.similaritySearch("query", embeddingModelMap, 4))
+            .thenReturn(List.of(forbidden1, allowed2, forbidden3, allowed4));
+
+        assertEquals(List.of(allowed2, allowed4),
+            this.collectionManager.hybridSearch("query", List.of(COLLECTION_ID), 2, 0));
+
+        // Half of the results have been filtered out, so the next search fetches twice as many results right away.
+        assertEquals(List.of(allowed2),
+            this.collectionManager.hybridSearch("query", List.of(COLLECTION_ID), 1, 0));
+        verify(this.solrConnector, times(2)).similaritySearch("query", embeddingModelMap, 2);
+        verify(this.solrConnector, never()).similaritySearch("query", embeddingModelMap, 1);
+    }
+
+    @Test
+    void hybridSearchReusesCollectionSnapshots() throws Exception
+    {
+        Map<String, String> embeddingModelMap = Map.of(COLLECTION_ID, "testEmbeddingModel");
+        setUpCollections(embeddingModelMap);
+        // Setting up the collections builds the authorization managers once.
+        verify(this.customRightsAuthorizationManagerBuilder).build(any());
+
+        this.collectionManager.hybridSearch("query", List.of(COLLECTION_ID), 2, 0);
+        this.collectionManager.hybridSearch("query", List.of(COLLECTION_ID), 2, 0);
+        verify(this.customRightsAuthorizationManagerBuilder, times(2)).build(any());
+
+        this.oldcore.getMocker().<CollectionSnapshotCache>getInstance(CollectionSnapshotCache.class)
+            .invalidate(WIKI_NAME, COLLECTION_ID);
+        this.collectionManager.hybridSearch("query", List.of(COLLECTION_ID), 2, 0);
+        verify(this.customRightsAuthorizationManagerBuilder, times(3)).build(any());
+    }
+
+    private void setUpCollections(Map<String, String> embeddingModelMap) throws Exception
+    {
+        XWikiContext context = this.oldcore.getXWikiContext();
+        context.setWikiId(WIKI_NAME);
+
+        mockCollectionsQuery(List.of());
+        embeddingModelMap.forEach(this::createAndSaveCollection);
+
+        // Documents starting with "allowed" can be viewed.
+        when(this.customRightsAuthorizationManagerBuilder.getConfigurationClassReference())
+            .thenReturn(Collection.XCLASS_REFERENCE);
+        Map<String, AuthorizationManager> authorizationManagers = new HashMap<>();
+        for (String collectionId : embeddingModelMap.keySet()) {
+            AuthorizationManager authorizationManager = mock();
+            when(authorizationManager.canView(any())).thenAnswer(invocation ->
+                invocation.<Set<String>>getArgument(0).stream()
+                    .collect(Collectors.toMap(Function.identity(), id -> id.startsWith("allowed"))));
+            authorizationManagers.put(collectionId, authorizationManager);
+        }
+        when(this.customRightsAuthorizationManagerBuilder.build(any())).thenAnswer(invocation -> {
+            BaseObject configurationObject = invocation.getArgument(0);
+            return authorizationManagers.get(configurationObject.getStringValue("id"));
+        });
+
+        for (String collectionId : embeddingModelMap.keySet()) {
+            assertEquals(authorizationManagers.get(collectionId),
+                this.collectionManager.getCollection(collectionId).getAuthorizationManager());
+        }
+
+        when(this.executor.submit(any())).thenAnswer(invocation ->
+            CompletableFuture.completedFuture(invocation.<Callable<?>>getArgument(0).call()));
     }
 
     private void createAndSaveCollection(String collectionId, String embeddingModel)
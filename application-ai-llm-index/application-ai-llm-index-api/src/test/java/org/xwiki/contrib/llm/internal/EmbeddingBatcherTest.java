@@ -0,0 +1,211 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.function.FailableFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.llm.EmbeddingModel;
+import org.xwiki.contrib.llm.IndexException;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Component test for {@link EmbeddingBatcher}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class EmbeddingBatcherTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final String MODEL = "model";
+
+    private static final int NUMBER_OF_CALLERS = 8;
+
+    @InjectMockComponents
+    private EmbeddingBatcher embeddingBatcher;
+
+    // The callers block, so they need their own threads.
+    private final ExecutorService callerExecutor = Executors.newCachedThreadPool();
+
+    private final List<List<String>> requests = Collections.synchronizedList(new ArrayList<>());
+
+    private final FailableFunction<List<String>, List<float[]>, Exception> embedder = texts -> {
+        this.requests.add(texts);
+        return texts.stream().map(text -> new float[] { Float.parseFloat(text) }).toList();
+    };
+
+    private CompletableFuture<List<float[]>> embedAsync(List<String> texts, int capacity,
+        FailableFunction<List<String>, List<float[]>, Exception> embedder)
+    {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.embeddingBatcher.embed(WIKI, MODEL, EmbeddingModel.EmbeddingPurpose.INDEX, capacity,
+                    texts, embedder);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, this.callerExecutor);
+    }
+
+    @AfterEach
+    void afterEach()
+    {
+        this.callerExecutor.shutdownNow();
+    }
+
+    /**
+     * Start a caller whose request blocks until the returned latch is released, such that other callers wait for
+     * each other.
+     */
+    private CountDownLatch startBlockingCaller() throws InterruptedException
+    {
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        embedAsync(List.of("0"), 5, texts -> {
+            inFlight.countDown();
+            release.await();
+            return this.embedder.apply(texts);
+        });
+        inFlight.await();
+        return release;
+    }
+
+    @Test
+    void embedConcurrentCalls() throws Exception
+    {
+        // Don't send batches early because of a slow test machine.
+        this.embeddingBatcher.maxWait = TimeUnit.MINUTES.toNanos(1);
+        CountDownLatch release = startBlockingCaller();
+
+        List<CompletableFuture<List<float[]>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < NUMBER_OF_CALLERS; ++i) {
+                results.add(
+                    embedAsync(List.of(String.valueOf(2 * i + 1), String.valueOf(2 * i + 2)), 4, this.embedder));
+            }
+
+            // Each batch is sent once two callers filled it, as the blocking caller keeps the callers waiting.
+            for (int i = 0; i < NUMBER_OF_CALLERS; ++i) {
+                List<float[]> embeddings = results.get(i).join();
+                assertEquals(2, embeddings.size());
+                assertArrayEquals(new float[] { 2 * i + 1 }, embeddings.get(0));
+                assertArrayEquals(new float[] { 2 * i + 2 }, embeddings.get(1));
+            }
+        } finally {
+            release.countDown();
+        }
+
+        // Every text has been embedded exactly once, in fewer requests than callers that don't exceed the capacity.
+        assertEquals(NUMBER_OF_CALLERS / 2, this.requests.size());
+        assertEquals(2 * NUMBER_OF_CALLERS, this.requests.stream().mapToInt(List::size).sum());
+        assertTrue(this.requests.stream().allMatch(request -> request.size() <= 4));
+    }
+
+    @Test
+    void embedAloneDoesNotWait()
+    {
+        this.embeddingBatcher.maxWait = TimeUnit.MINUTES.toNanos(1);
+
+        List<float[]> embeddings = assertTimeoutPreemptively(Duration.ofSeconds(10),
+            () -> this.embeddingBatcher.embed(WIKI, MODEL, EmbeddingModel.EmbeddingPurpose.INDEX, 5, List.of("1"),
+                this.embedder));
+
+        assertArrayEquals(new float[] { 1 }, embeddings.get(0));
+    }
+
+    @Test
+    void embedFailureOnlyFailsTheCallerOfTheFailingTexts() throws Exception
+    {
+        this.embeddingBatcher.maxWait = TimeUnit.MINUTES.toNanos(1);
+        CountDownLatch release = startBlockingCaller();
+        List<List<String>> failingRequests = Collections.synchronizedList(new ArrayList<>());
+        FailableFunction<List<String>, List<float[]>, Exception> failingEmbedder = texts -> {
+            failingRequests.add(texts);
+            if (texts.contains("bad")) {
+                throw new IndexException("Failed");
+            }
+            return texts.stream().map(text -> new float[] { Float.parseFloat(text) }).toList();
+        };
+
+        try {
+            // Both callers fill a batch of capacity 2 that fails as a whole.
+            CompletableFuture<List<float[]>> good = embedAsync(List.of("1"), 2, failingEmbedder);
+            CompletableFuture<List<float[]>> bad = embedAsync(List.of("bad"), 2, failingEmbedder);
+
+            assertArrayEquals(new float[] { 1 }, good.join().get(0));
+            CompletionException error = assertThrows(CompletionException.class, bad::join);
+            assertInstanceOf(IndexException.class, error.getCause());
+        } finally {
+            release.countDown();
+        }
+
+        // The batch and then the texts of each caller separately.
+        assertEquals(3, failingRequests.size());
+        assertEquals(2, failingRequests.get(0).size());
+    }
+
+    @Test
+    void embedFullRequestDirectly() throws Exception
+    {
+        List<String> texts = List.of("1", "2");
+
+        List<float[]> embeddings =
+            this.embeddingBatcher.embed(WIKI, MODEL, EmbeddingModel.EmbeddingPurpose.INDEX, 2, texts, this.embedder);
+
+        assertEquals(2, embeddings.size());
+        assertEquals(List.of(texts), this.requests);
+    }
+
+    @Test
+    void embedFailure()
+    {
+        IndexException error = new IndexException("Failed");
+
+        IndexException actual = assertThrows(IndexException.class,
+            () -> this.embeddingBatcher.embed(WIKI, MODEL, EmbeddingModel.EmbeddingPurpose.INDEX, 4, List.of("1"),
+                texts -> {
+                    throw error;
+                }));
+
+        assertSame(error, actual);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.function.FailableFunction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.environment.Environment;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Component test for {@link PersistentEmbeddingCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class PersistentEmbeddingCacheTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final String MODEL = "model";
+
+    private static final String CONFIGURATION = "server:model:1024";
+
+    private static final String PREFIX = "passage: ";
+
+    private static final String TEXT = "XWiki is a wiki";
+
+    @MockComponent
+    private Environment environment;
+
+    @InjectMockComponents
+    private PersistentEmbeddingCache persistentEmbeddingCache;
+
+    private File permanentDirectory;
+
+    private final List<List<String>> requests = new ArrayList<>();
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        this.permanentDirectory = Files.createTempDirectory("aillm").toFile();
+        when(this.environment.getPermanentDirectory()).thenReturn(this.permanentDirectory);
+    }
+
+    @AfterEach
+    void afterEach() throws Exception
+    {
+        FileUtils.deleteDirectory(this.permanentDirectory);
+    }
+
+    private List<float[]> embed(List<String> texts)
+    {
+        this.requests.add(texts);
+        return texts.stream().map(text -> new float[] { text.length(), 1 }).toList();
+    }
+
+    @Test
+    void get() throws Exception
+    {
+        List<float[]> first =
+            this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+        List<float[]> second = this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX,
+            List.of(TEXT, "Other text"), this::embed);
+
+        assertArrayEquals(new float[] { 15, 1 }, first.get(0));
+        assertArrayEquals(new float[] { 15, 1 }, second.get(0));
+        assertArrayEquals(new float[] { 10, 1 }, second.get(1));
+        // Only the missing text is embedded.
+        assertEquals(List.of(List.of(TEXT), List.of("Other text")), this.requests);
+        assertEquals(1, this.persistentEmbeddingCache.getHitCount());
+        assertEquals(2, this.persistentEmbeddingCache.getMissCount());
+        assertEquals(2, this.persistentEmbeddingCache.getEntryCount());
+        assertEquals(2L * 2 * Float.BYTES, this.persistentEmbeddingCache.getSize());
+        try (Stream<Path> files = Files.walk(this.permanentDirectory.toPath())) {
+            assertEquals(2, files.filter(file -> file.toString().endsWith(".bin")).count());
+        }
+    }
+
+    @Test
+    void getWithDifferentPrefix() throws Exception
+    {
+        this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+        this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, "", List.of(TEXT), this::embed);
+        this.persistentEmbeddingCache.get(WIKI, "otherModel", CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+        this.persistentEmbeddingCache.get(WIKI, MODEL, "server:otherModel:1024", PREFIX, List.of(TEXT), this::embed);
+
+        assertEquals(4, this.requests.size());
+        assertEquals(0, this.persistentEmbeddingCache.getHitCount());
+    }
+
+    @Test
+    void getWithDeletedFile() throws Exception
+    {
+        this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+        FileUtils.cleanDirectory(this.permanentDirectory);
+
+        List<float[]> embeddings =
+            this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+
+        assertArrayEquals(new float[] { 15, 1 }, embeddings.get(0));
+        assertEquals(2, this.requests.size());
+        assertEquals(1, this.persistentEmbeddingCache.getEntryCount());
+    }
+
+    @Test
+    void getDoesNotCacheZeroEmbeddings() throws Exception
+    {
+        FailableFunction<List<String>, List<float[]>, Exception> failingEmbedder = texts -> {
+            this.requests.add(texts);
+            return texts.stream().map(text -> new float[2]).toList();
+        };
+
+        this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), failingEmbedder);
+        List<float[]> embeddings =
+            this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+
+        assertArrayEquals(new float[] { 15, 1 }, embeddings.get(0));
+        assertEquals(2, this.requests.size());
+        assertEquals(1, this.persistentEmbeddingCache.getEntryCount());
+    }
+
+    @Test
+    void clear() throws Exception
+    {
+        this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+
+        this.persistentEmbeddingCache.clear();
+        this.persistentEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of(TEXT), this::embed);
+
+        assertEquals(2, this.requests.size());
+        assertEquals(1, this.persistentEmbeddingCache.getEntryCount());
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Component test for {@link QueryEmbeddingCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class QueryEmbeddingCacheTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final String MODEL = "model";
+
+    private static final String CONFIGURATION = "server:model:1024";
+
+    private static final String PREFIX = "query: ";
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @InjectMockComponents
+    private QueryEmbeddingCache queryEmbeddingCache;
+
+    private final Map<String, float[]> cacheContent = new HashMap<>();
+
+    private final List<List<String>> requests = new ArrayList<>();
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        @SuppressWarnings("unchecked")
+        Cache<float[]> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        when(this.cacheManager.<float[]>createNewCache(any(CacheConfiguration.class))).thenReturn(cache);
+    }
+
+    private List<float[]> embed(List<String> queries)
+    {
+        this.requests.add(queries);
+        return queries.stream().map(query -> new float[] { query.length() }).toList();
+    }
+
+    @Test
+    void get() throws Exception
+    {
+        List<float[]> first =
+            this.queryEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of("What is  XWiki?"), this::embed);
+        List<float[]> second = this.queryEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX,
+            List.of(" What is XWiki? ", "Other question"), this::embed);
+
+        assertArrayEquals(new float[] { 15 }, first.get(0));
+        assertSame(first.get(0), second.get(0));
+        assertArrayEquals(new float[] { 14 }, second.get(1));
+        // Only the missing query is embedded, whitespace is only normalized in the cache key.
+        assertEquals(List.of(List.of("What is  XWiki?"), List.of("Other question")), this.requests);
+        assertEquals(1, this.queryEmbeddingCache.getHitCount());
+        assertEquals(2, this.queryEmbeddingCache.getMissCount());
+    }
+
+    @Test
+    void getDoesNotCacheZeroEmbeddings() throws Exception
+    {
+        List<float[]> first = this.queryEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of("Question"),
+            queries -> {
+                this.requests.add(queries);
+                return List.of(new float[2]);
+            });
+        List<float[]> second =
+            this.queryEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of("Question"), this::embed);
+
+        assertArrayEquals(new float[2], first.get(0));
+        assertArrayEquals(new float[] { 8 }, second.get(0));
+        assertEquals(List.of(List.of("Question"), List.of("Question")), this.requests);
+        assertEquals(0, this.queryEmbeddingCache.getHitCount());
+    }
+
+    @Test
+    void getWithDifferentPrefixOrConfiguration() throws Exception
+    {
+        this.queryEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, PREFIX, List.of("Question"), this::embed);
+        this.queryEmbeddingCache.get(WIKI, MODEL, CONFIGURATION, "", List.of("Question"), this::embed);
+        this.queryEmbeddingCache.get("otherWiki", MODEL, CONFIGURATION, PREFIX, List.of("Question"), this::embed);
+        this.queryEmbeddingCache.get(WIKI, MODEL, "server:otherModel:1024", PREFIX, List.of("Question"), this::embed);
+
+        assertEquals(4, this.requests.size());
+        assertEquals(0, this.queryEmbeddingCache.getHitCount());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.llm.openai.Context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link TopResults}.
+ *
+ * @version $Id$
+ */
+class TopResultsTest
+{
+    private static Context context(String content, Double score)
+    {
+        return new Context("collection", content, null, content, score, null);
+    }
+
+    @Test
+    void keepsBestResultsOverSeveralGroups()
+    {
+        TopResults topResults = new TopResults(3);
+        topResults.addAll(List.of(context("a", 0.5), context("b", 0.9), context("c", 0.1)));
+        topResults.addAll(List.of(context("d", 0.7), context("e", null), context("f", 0.6)));
+
+        assertEquals(List.of("b", "d", "f"), topResults.toList().stream().map(Context::content).toList());
+    }
+
+    @Test
+    void zeroLimit()
+    {
+        TopResults topResults = new TopResults(0);
+        topResults.addAll(List.of(context("a", 0.5)));
+
+        assertTrue(topResults.toList().isEmpty());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Unit tests for {@link VectorCodec}.
+ *
+ * @version $Id$
+ */
+class VectorCodecTest
+{
+    private static final float[] VECTOR = { 0.1f, -2.5f, 0.0f, Float.MIN_VALUE };
+
+    @Test
+    void binaryRoundTrip()
+    {
+        byte[] bytes = VectorCodec.toBytes(VECTOR);
+
+        assertEquals(VECTOR.length * Float.BYTES, bytes.length);
+        assertArrayEquals(VECTOR, VectorCodec.fromFieldValue(bytes));
+        assertArrayEquals(VECTOR, VectorCodec.fromFieldValue(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    void fromDenseVectorFieldValues()
+    {
+        assertArrayEquals(VECTOR, VectorCodec.fromFieldValue(List.of(0.1f, -2.5f, 0.0f, Float.MIN_VALUE)));
+        assertArrayEquals(VECTOR,
+            VectorCodec.fromFieldValue(List.of("0.1", "-2.5", "0.0", String.valueOf(Float.MIN_VALUE))));
+        assertNull(VectorCodec.fromFieldValue(null));
+    }
+
+    @Test
+    void asList()
+    {
+        assertEquals(List.of(0.1f, -2.5f, 0.0f, Float.MIN_VALUE), VectorCodec.asList(VECTOR));
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.authorization;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.CacheConfiguration;
+import org.xwiki.contrib.llm.authorization.AuthorizationManager;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Component test for {@link AuthorizationDecisionCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class AuthorizationDecisionCacheTest
+{
+    private static final String SCOPE = "https://www.example.com";
+
+    private static final String USER = "xwiki:XWiki.User";
+
+    private static final Duration LIFESPAN = Duration.ofMinutes(1);
+
+    @MockComponent
+    private CacheManager cacheManager;
+
+    @InjectMockComponents
+    private AuthorizationDecisionCache decisionCache;
+
+    private final Map<String, Object> cacheContent = new HashMap<>();
+
+    private final List<Set<String>> requests = new ArrayList<>();
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        @SuppressWarnings("unchecked")
+        Cache<Object> cache = mock(Cache.class);
+        when(cache.get(anyString())).then(invocation -> this.cacheContent.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> this.cacheContent.put(invocation.getArgument(0), invocation.getArgument(1)))
+            .when(cache).set(anyString(), any());
+        when(this.cacheManager.createNewCache(any(CacheConfiguration.class))).thenReturn(cache);
+    }
+
+    private AuthorizationManager authorizationManager(Map<String, Boolean> decisions)
+    {
+        return documentIds -> {
+            this.requests.add(documentIds);
+            Map<String, Boolean> result = new HashMap<>(decisions);
+            result.keySet().retainAll(documentIds);
+            return result;
+        };
+    }
+
+    @Test
+    void canView()
+    {
+        AuthorizationManager authorizationManager = authorizationManager(Map.of("a", true, "b", false));
+
+        assertEquals(Map.of("a", true, "b", false),
+            this.decisionCache.canView(SCOPE, USER, Set.of("a", "b"), LIFESPAN, LIFESPAN, authorizationManager));
+        assertEquals(Map.of("a", true, "b", false),
+            this.decisionCache.canView(SCOPE, USER, Set.of("a", "b"), LIFESPAN, LIFESPAN, authorizationManager));
+        assertEquals(List.of(Set.of("a", "b")), this.requests);
+
+        // Decisions are cached per user.
+        this.decisionCache.canView(SCOPE, "xwiki:XWiki.Other", Set.of("a"), LIFESPAN, LIFESPAN,
+            authorizationManager);
+        assertEquals(List.of(Set.of("a", "b"), Set.of("a")), this.requests);
+    }
+
+    @Test
+    void canViewWithoutNegativeCaching()
+    {
+        AuthorizationManager authorizationManager = authorizationManager(Map.of("a", true, "b", false));
+
+        this.decisionCache.canView(SCOPE, USER, Set.of("a", "b"), LIFESPAN, Duration.ZERO, authorizationManager);
+        assertEquals(Map.of("a", true, "b", false),
+            this.decisionCache.canView(SCOPE, USER, Set.of("a", "b"), LIFESPAN, Duration.ZERO,
+                authorizationManager));
+
+        // Only the denied document is checked again.
+        assertEquals(List.of(Set.of("a", "b"), Set.of("b")), this.requests);
+    }
+
+    @Test
+    void canViewDoesNotCacheMissingDecisions()
+    {
+        AuthorizationManager failingAuthorizationManager = authorizationManager(Map.of());
+
+        assertEquals(Map.of(),
+            this.decisionCache.canView(SCOPE, USER, Set.of("a"), LIFESPAN, LIFESPAN, failingAuthorizationManager));
+
+        assertEquals(Map.of("a", true), this.decisionCache.canView(SCOPE, USER, Set.of("a"), LIFESPAN, LIFESPAN,
+            authorizationManager(Map.of("a", true))));
+        assertEquals(2, this.requests.size());
+    }
+}
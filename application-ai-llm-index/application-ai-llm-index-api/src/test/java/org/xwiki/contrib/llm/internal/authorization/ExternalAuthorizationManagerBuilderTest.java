@@ -37,10 +37,13 @@ import org.xwiki.contrib.llm.IndexException;
 import org.xwiki.contrib.llm.authorization.AuthorizationManager;
 import org.xwiki.contrib.llm.authorization.ExternalAuthorizationConfiguration;
 import org.xwiki.contrib.llm.internal.HttpClientFactory;
+import org.xwiki.contrib.llm.internal.JSONCodec;
+import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 import org.xwiki.test.junit5.mockito.MockComponent;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xpn.xwiki.objects.BaseObject;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -62,6 +65,7 @@ import static org.mockito.Mockito.when;
  * @version $Id$
  */
 @ComponentTest
+@ComponentList({ JSONCodec.class })
 class ExternalAuthorizationManagerBuilderTest
 {
     private static final String TEST_URL = "https://www.example.com";
@@ -91,7 +95,7 @@ class ExternalAuthorizationManagerBuilderTest
             .thenReturn(new ExternalAuthorizationRequest(expected.keySet(), testUser, null, null, null));
 
         HttpClient mockClient = mock();
-        when(this.httpClientFactory.createHttpClient()).thenReturn(mockClient);
+        when(this.httpClientFactory.getHttpClient(any(), eq(HttpClient.Version.HTTP_1_1))).thenReturn(mockClient);
         HttpResponse<InputStream> mockResponse = mock();
         doReturn(mockResponse).when(mockClient).send(any(), any());
         when(mockResponse.statusCode()).thenReturn(200);
@@ -147,6 +151,19 @@ class ExternalAuthorizationManagerBuilderTest
         assertEquals(TEST_URL, ((ExternalAuthorizationConfiguration) object).url());
     }
 
+    @Test
+    void deserializeConfigurationWithoutCacheDurations() throws Exception
+    {
+        ExternalAuthorizationConfiguration configuration = new ObjectMapper()
+            .readValue("{\"url\":\"%s\"}".formatted(TEST_URL), ExternalAuthorizationConfiguration.class);
+        assertEquals(new ExternalAuthorizationConfiguration(TEST_URL), configuration);
+
+        configuration = new ObjectMapper().readValue(
+            "{\"url\":\"%s\",\"cacheDuration\":0,\"negativeCacheDuration\":5}".formatted(TEST_URL),
+            ExternalAuthorizationConfiguration.class);
+        assertEquals(new ExternalAuthorizationConfiguration(TEST_URL, 0, 5), configuration);
+    }
+
     @Test
     void setConfiguration()
     {
@@ -19,15 +19,41 @@
  */
 package org.xwiki.contrib.llm.internal.authorization;
 
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.xwiki.contrib.llm.IndexException;
+import org.xwiki.contrib.llm.authorization.AuthorizationManager;
+import org.xwiki.contrib.llm.internal.DefaultCollection;
+import org.xwiki.contrib.llm.internal.xwikistore.XWikiDocumentStore;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.DocumentReferenceResolver;
+import org.xwiki.security.authorization.Right;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
 
+import com.xpn.xwiki.XWikiContext;
 import com.xpn.xwiki.objects.BaseObject;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
 
 /**
  * Component test for {@link XWikiAuthorizationManagerBuilder}.
@@ -37,9 +63,73 @@ import static org.mockito.Mockito.verifyNoInteractions;
 @ComponentTest
 class XWikiAuthorizationManagerBuilderTest
 {
+    private static final String WIKI = "wiki";
+
+    private static final DocumentReference USER_REFERENCE = new DocumentReference(WIKI, "XWiki", "User");
+
     @InjectMockComponents
     private XWikiAuthorizationManagerBuilder builder;
 
+    @MockComponent
+    private DocumentReferenceResolver<String> documentReferenceResolver;
+
+    @MockComponent
+    private org.xwiki.security.authorization.AuthorizationManager authorizationManager;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    private final Map<String, DocumentReference> documentReferences = new HashMap<>();
+
+    @BeforeEach
+    void setUp()
+    {
+        XWikiContext context = mock();
+        when(context.getUserReference()).thenReturn(USER_REFERENCE);
+        when(this.contextProvider.get()).thenReturn(context);
+        when(this.documentReferenceResolver.resolve(anyString()))
+            .then(invocation -> this.documentReferences.get(invocation.<String>getArgument(0)));
+        // Users can view documents with an even number.
+        when(this.authorizationManager.hasAccess(eq(Right.VIEW), eq(USER_REFERENCE), any()))
+            .then(invocation -> Integer.parseInt(invocation.<DocumentReference>getArgument(2).getName()) % 2 == 0);
+    }
+
+    private static BaseObject mockConfigurationObject(String documentStore)
+    {
+        BaseObject configurationObject = mock();
+        when(configurationObject.getStringValue(DefaultCollection.DOCUMENT_STORE_FIELDNAME)).thenReturn(documentStore);
+        return configurationObject;
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = { 10, 100, 1000 })
+    void canView(int candidates) throws IndexException
+    {
+        Map<String, Boolean> expected = new HashMap<>();
+        for (int i = 0; i < candidates; i++) {
+            // Two translations per document, ten documents per space.
+            int documentNumber = i / 2;
+            DocumentReference documentReference = new DocumentReference(WIKI, "Space" + documentNumber / 10,
+                String.valueOf(documentNumber), i % 2 == 0 ? Locale.ROOT : Locale.FRENCH);
+            String documentId = documentReference + String.valueOf(i);
+            this.documentReferences.put(documentId, documentReference);
+            expected.put(documentId, documentNumber % 2 == 0);
+        }
+
+        AuthorizationManager manager = this.builder.build(mockConfigurationObject(XWikiDocumentStore.NAME));
+
+        // Every document is evaluated exactly once, even when several of its translations are candidates.
+        assertEquals(expected, manager.canView(expected.keySet()));
+        verify(this.authorizationManager, times(candidates / 2)).hasAccess(eq(Right.VIEW), eq(USER_REFERENCE),
+            any(DocumentReference.class));
+    }
+
+    @Test
+    void buildWithOtherDocumentStore()
+    {
+        assertThrows(IndexException.class, () -> this.builder.build(mockConfigurationObject("internal")));
+    }
+
     @Test
     void getConfigurationTypeIsNull()
     {
@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.fusion;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.llm.openai.Context;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Component test for {@link LinearSearchResultFusion}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class LinearSearchResultFusionTest
+{
+    private static final String COLLECTION = "collection";
+
+    @InjectMockComponents
+    private LinearSearchResultFusion fusion;
+
+    private static Context context(String content, double score)
+    {
+        return new Context(COLLECTION, content, null, content, score, null);
+    }
+
+    @Test
+    void fuse()
+    {
+        List<Context> semanticResults = List.of(context("a", 0.9), context("b", 0.8), context("c", 0.5));
+        List<Context> keywordResults = List.of(context("b", 20.0), context("d", 10.0), context("e", 5.0));
+
+        List<Context> result = this.fusion.fuse(semanticResults, keywordResults, 0.6, 0.4);
+
+        // b: 0.6 * 0.75 + 0.4 * 1, a: 0.6 * 1, d: 0.4 * 1/3, c and e: 0.
+        assertEquals(List.of("b", "a", "d", "c", "e"), result.stream().map(Context::content).toList());
+        assertEquals(0.85, result.get(0).similarityScore(), 1e-9);
+        assertEquals(0.6, result.get(1).similarityScore(), 1e-9);
+    }
+
+    @Test
+    void fuseWithEqualScores()
+    {
+        List<Context> result = this.fusion.fuse(List.of(context("a", 0.5)), List.of(), 1, 1);
+
+        assertEquals(1.0, result.get(0).similarityScore(), 1e-9);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.fusion;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.llm.openai.Context;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Component test for {@link ReciprocalRankSearchResultFusion}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ReciprocalRankSearchResultFusionTest
+{
+    private static final String COLLECTION = "collection";
+
+    @InjectMockComponents
+    private ReciprocalRankSearchResultFusion fusion;
+
+    private static Context context(String content, double score)
+    {
+        return new Context(COLLECTION, content, null, content, score, null);
+    }
+
+    @Test
+    void fuse()
+    {
+        // Keyword scores are on a different scale than the cosine similarity of the semantic results.
+        // b and d have the same score, the semantic result stays first.
+        List<Context> semanticResults = List.of(context("a", 0.9), context("b", 0.8), context("c", 0.7));
+        List<Context> keywordResults = List.of(context("c", 12.0), context("d", 8.0));
+
+        List<Context> result = this.fusion.fuse(semanticResults, keywordResults, 1, 1);
+
+        assertEquals(List.of("c", "a", "b", "d"), result.stream().map(Context::content).toList());
+        assertEquals(1.0 / 63 + 1.0 / 61, result.get(0).similarityScore(), 1e-9);
+        assertEquals(1.0 / 61, result.get(1).similarityScore(), 1e-9);
+    }
+
+    @Test
+    void fuseWithWeights()
+    {
+        List<Context> semanticResults = List.of(context("a", 0.9));
+        List<Context> keywordResults = List.of(context("b", 12.0));
+
+        List<Context> result = this.fusion.fuse(semanticResults, keywordResults, 1, 2);
+
+        assertEquals(List.of("b", "a"), result.stream().map(Context::content).toList());
+    }
+}
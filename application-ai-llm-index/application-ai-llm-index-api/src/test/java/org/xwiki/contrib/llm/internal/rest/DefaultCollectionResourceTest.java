@@ -45,6 +45,7 @@ import org.xwiki.contrib.llm.internal.DefaultCollection;
 import org.xwiki.contrib.llm.internal.DefaultCollectionManager;
 import org.xwiki.contrib.llm.internal.DefaultDocument;
 import org.xwiki.contrib.llm.internal.InternalDocumentStore;
+import org.xwiki.contrib.llm.internal.JSONCodec;
 import org.xwiki.contrib.llm.internal.authorization.XWikiAuthorizationManagerBuilder;
 import org.xwiki.contrib.llm.rest.JSONCollection;
 import org.xwiki.model.reference.DocumentReference;
@@ -111,6 +112,7 @@ import static org.mockito.Mockito.when;
     CurrentUserCollection.class,
     DefaultDocument.class,
     XWikiAuthorizationManagerBuilder.class,
+    JSONCodec.class
 })
 
 @ReferenceComponentList
@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal.xwikistore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.environment.Environment;
+import org.xwiki.model.reference.AttachmentReference;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.EntityReferenceSerializer;
+import org.xwiki.test.annotation.BeforeComponent;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiAttachment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Component test for {@link AttachmentTextExtractor}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class AttachmentTextExtractorTest
+{
+    private static final AttachmentReference ATTACHMENT_REFERENCE =
+        new AttachmentReference("file.txt", new DocumentReference("wiki", "Space", "Page"));
+
+    private static final String TEXT = "Attachment text";
+
+    @MockComponent
+    private Environment environment;
+
+    @MockComponent
+    private EntityReferenceSerializer<String> entityReferenceSerializer;
+
+    @InjectMockComponents
+    private AttachmentTextExtractor attachmentTextExtractor;
+
+    private File permanentDirectory;
+
+    private final XWikiContext context = mock();
+
+    private final XWikiAttachment attachment = mock();
+
+    @BeforeComponent
+    void beforeComponent() throws Exception
+    {
+        this.permanentDirectory = Files.createTempDirectory("aillm").toFile();
+        when(this.environment.getPermanentDirectory()).thenReturn(this.permanentDirectory);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        when(this.entityReferenceSerializer.serialize(ATTACHMENT_REFERENCE)).thenReturn("wiki:Space.Page@file.txt");
+        when(this.attachment.getReference()).thenReturn(ATTACHMENT_REFERENCE);
+        when(this.attachment.getFilename()).thenReturn("file.txt");
+        when(this.attachment.getVersion()).thenReturn("1.1");
+        when(this.attachment.getDate()).thenReturn(new Date(1000));
+        when(this.attachment.getLongSize()).thenReturn((long) TEXT.length());
+        when(this.attachment.getContentInputStream(any()))
+            .then(invocation -> IOUtils.toInputStream(TEXT, StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    void afterEach() throws Exception
+    {
+        this.attachmentTextExtractor.dispose();
+        FileUtils.deleteDirectory(this.permanentDirectory);
+    }
+
+    private String getText() throws Exception
+    {
+        try (Reader reader = this.attachmentTextExtractor.getText(this.attachment, this.context)) {
+            return IOUtils.toString(reader).trim();
+        }
+    }
+
+    @Test
+    void getTextIsCached() throws Exception
+    {
+        assertEquals(TEXT, getText());
+        assertEquals(TEXT, getText());
+
+        verify(this.attachment, times(1)).getContentInputStream(this.context);
+    }
+
+    @Test
+    void getTextOfNewVersion() throws Exception
+    {
+        assertEquals(TEXT, getText());
+        when(this.attachment.getVersion()).thenReturn("2.1");
+        assertEquals(TEXT, getText());
+
+        verify(this.attachment, times(2)).getContentInputStream(this.context);
+    }
+
+    @Test
+    void getTextOfTooLargeAttachment() throws Exception
+    {
+        when(this.attachment.getLongSize()).thenReturn(AttachmentTextExtractor.MAX_ATTACHMENT_SIZE + 1);
+
+        assertNull(this.attachmentTextExtractor.getText(this.attachment, this.context));
+        verify(this.attachment, never()).getContentInputStream(any());
+    }
+
+    @Test
+    void getTextDoesNotCacheReadFailures() throws Exception
+    {
+        when(this.attachment.getContentInputStream(any())).then(invocation -> new InputStream()
+        {
+            @Override
+            public int read() throws IOException
+            {
+                throw new IOException("Failed to read the attachment");
+            }
+        });
+
+        assertEquals("", getText());
+        assertEquals("", getText());
+
+        verify(this.attachment, times(2)).getContentInputStream(this.context);
+    }
+
+    @Test
+    void getTextWithParserThatNeverReturns() throws Exception
+    {
+        this.attachmentTextExtractor.parseTimeout = 100;
+        CountDownLatch release = new CountDownLatch(1);
+        when(this.attachment.getContentInputStream(any())).then(invocation -> new InputStream()
+        {
+            @Override
+            public int read()
+            {
+                // Like a stuck parser, ignore interruptions.
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // Ignore the cancellation.
+                    }
+                }
+                return -1;
+            }
+        });
+
+        try {
+            // More stuck parses than parser threads don't block the extraction of other attachments.
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+                for (int i = 0; i < 3; i++) {
+                    when(this.attachment.getVersion()).thenReturn(i + ".1");
+                    assertEquals("", getText());
+                }
+                when(this.attachment.getVersion()).thenReturn("4.1");
+                when(this.attachment.getContentInputStream(any()))
+                    .then(invocation -> IOUtils.toInputStream(TEXT, StandardCharsets.UTF_8));
+                assertEquals(TEXT, getText());
+            });
+        } finally {
+            release.countDown();
+        }
+    }
+}
@@ -19,7 +19,8 @@
  */
 package org.xwiki.contrib.llm.internal.xwikistore;
 
-import java.nio.charset.StandardCharsets;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -78,6 +79,9 @@ class XWikiDocumentDocumentTest
     @MockComponent
     private ContextualLocalizationManager localizationManager;
 
+    @MockComponent
+    private AttachmentTextExtractor attachmentTextExtractor;
+
     @Mock
     private XWikiDocument xWikiDocument;
 
@@ -226,7 +230,7 @@ class XWikiDocumentDocumentTest
     }
 
     @Test
-    void getContentAttachments() throws XWikiException
+    void getContentAttachments() throws Exception
     {
         String content = "Attachments content";
         when(this.xWikiDocument.getContent()).thenReturn(content);
@@ -238,8 +242,8 @@ class XWikiDocumentDocumentTest
         for (String attachmentNumber : List.of("1", "2")) {
             XWikiAttachment attachment = mock();
             when(attachment.getFilename()).thenReturn("Attachment Filename " + attachmentNumber);
-            when(attachment.getContentInputStream(any()))
-                .thenReturn(IOUtils.toInputStream("Attachment Content " + attachmentNumber, StandardCharsets.UTF_8));
+            when(this.attachmentTextExtractor.getText(eq(attachment), any()))
+                .thenReturn(new StringReader("Attachment Content " + attachmentNumber + "\n"));
             attachments.add(attachment);
         }
         when(this.xWikiDocument.getAttachmentList()).thenReturn(attachments);
@@ -261,6 +265,38 @@ class XWikiDocumentDocumentTest
             """, this.xWikiDocumentDocument.getContent());
     }
 
+    @Test
+    void getContentReaderSkipsAttachmentsWithoutText() throws Exception
+    {
+        when(this.xWikiDocument.getContent()).thenReturn("Content");
+        when(this.xWikiDocument.getSyntax()).thenReturn(Syntax.MARKDOWN_1_0);
+        when(this.xWikiDocument.getRenderedTitle(eq(Syntax.MARKDOWN_1_0), any())).thenReturn("Title");
+
+        XWikiAttachment blankAttachment = mock();
+        when(this.attachmentTextExtractor.getText(eq(blankAttachment), any())).thenReturn(new StringReader(" \n\t "));
+        XWikiAttachment brokenAttachment = mock();
+        when(this.attachmentTextExtractor.getText(eq(brokenAttachment), any())).thenThrow(new XWikiException());
+        XWikiAttachment largeAttachment = mock();
+        when(this.attachmentTextExtractor.getText(eq(largeAttachment), any())).thenReturn(null);
+        XWikiAttachment attachment = mock();
+        when(attachment.getFilename()).thenReturn("file.txt");
+        when(this.attachmentTextExtractor.getText(eq(attachment), any())).thenReturn(new StringReader("Text\n"));
+        when(this.xWikiDocument.getAttachmentList())
+            .thenReturn(List.of(blankAttachment, brokenAttachment, largeAttachment, attachment));
+
+        try (Reader reader = this.xWikiDocumentDocument.getContentReader()) {
+            assertEquals("""
+                # Title
+
+                Content
+
+                ## file.txt
+
+                Text
+                """, IOUtils.toString(reader));
+        }
+    }
+
     private record MethodParameter(
         FailableConsumer<XWikiDocumentDocument, IndexException> method,
         String displayName)
@@ -73,6 +73,51 @@ public interface EmbeddingModel
      */
     List<double[]> embed(List<String> texts, EmbeddingPurpose purpose) throws RequestError;
 
+    /**
+     * Embed the given texts in single precision. Embedding models compute and transmit embeddings as floats, so
+     * this avoids converting every embedding to a {@code double[]} and back when they are stored as floats anyway.
+     *
+     * @param texts the texts to embed
+     * @param purpose the purpose of the embedding
+     * @return an embedding for each text
+     * @throws RequestError when the API request fails
+     * @since 0.9.1
+     */
+    default List<float[]> embedFloat(List<String> texts, EmbeddingPurpose purpose) throws RequestError
+    {
+        return embed(texts, purpose).stream()
+            .map(embedding -> {
+                float[] result = new float[embedding.length];
+                for (int i = 0; i < embedding.length; i++) {
+                    result[i] = (float) embedding[i];
+                }
+                return result;
+            })
+            .toList();
+    }
+
+    /**
+     * @param purpose the purpose of the embedding
+     * @return the prefix that is added to texts that are embedded for the given purpose, or an empty string if no
+     *     prefix is added
+     * @since 0.9.1
+     */
+    default String getPrefix(EmbeddingPurpose purpose)
+    {
+        return "";
+    }
+
+    /**
+     * @return a key that identifies the configuration that determines the embeddings of the model, e.g., the server
+     *     and the upstream model, such that embeddings that were cached with a previous configuration aren't reused
+     * @since 0.9.1
+     */
+    default String getConfigurationKey()
+    {
+        EmbeddingModelDescriptor descriptor = getDescriptor();
+        return descriptor.getId() + ':' + descriptor.getDimensions();
+    }
+
     /**
      * @return the descriptor of the model
      */
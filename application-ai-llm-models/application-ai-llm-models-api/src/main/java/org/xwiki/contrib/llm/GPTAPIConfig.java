@@ -31,6 +31,7 @@ public class GPTAPIConfig
     private String url;
     private String token;
     private boolean canStream;
+    private boolean http2;
 
     /**
      * Take a map representation of a GPTAPIConfig object as a parameter and build a
@@ -44,6 +45,8 @@ public class GPTAPIConfig
         this.token = (String) properties.get("token");
         Integer requestMode = (Integer) properties.get("Requestmode");
         this.canStream = requestMode != null && requestMode == 1;
+        Integer http2Value = (Integer) properties.get("http2");
+        this.http2 = http2Value != null && http2Value == 1;
     }
 
     /**
@@ -87,6 +90,15 @@ public class GPTAPIConfig
         return canStream;
     }
 
+    /**
+     * @return true if requests to the server shall use HTTP/2, else false (HTTP/1.1 is used)
+     * @since 0.9.1
+     */
+    public boolean isHTTP2()
+    {
+        return http2;
+    }
+
     /**
      * @return A String representation of the GPTAPIConfig object.
      */
@@ -97,6 +109,7 @@ public class GPTAPIConfig
         res += " URL : " + url;
         res += " Token : " + token;
         res += " canStream : " + canStream;
+        res += " http2 : " + http2;
         return res;
     }
 }
@@ -34,8 +34,8 @@ public interface GPTAPIConfigProvider
 {
     /**
      * @param currentWiki The identifier of the wiki from which the request originated.
-     * @return A map containing all the available {@link GPTAPIConfig} objects in the specified wiki or an empty map if
-     *     none exist.
+     * @return An immutable map containing all the available {@link GPTAPIConfig} objects in the specified wiki or an
+     *     empty map if none exist.
      * @throws GPTAPIException if something goes wrong. Will return an empty map as well in such case.
      */
     Map<String, GPTAPIConfig> getConfigObjects(String currentWiki) throws GPTAPIException;
@@ -38,8 +38,6 @@ import org.xwiki.model.reference.WikiReference;
 import org.xwiki.user.UserReference;
 import org.xwiki.user.UserReferenceSerializer;
 import org.xwiki.user.group.GroupException;
-import org.xwiki.user.group.GroupManager;
-import org.xwiki.user.group.WikiTarget;
 
 import com.xpn.xwiki.XWikiContext;
 
@@ -53,8 +51,6 @@ public abstract class AbstractModel implements WikiComponent
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractModel.class);
 
-    protected final GroupManager groupManager;
-
     protected final UserReferenceSerializer<DocumentReference> userReferenceSerializer;
 
     protected final GPTAPIConfigProvider configProvider;
@@ -63,15 +59,17 @@ public abstract class AbstractModel implements WikiComponent
 
     protected final Provider<XWikiContext> contextProvider;
 
+    protected final UserGroupsCache userGroupsCache;
+
     protected AbstractModel(ModelConfiguration modelConfiguration, ComponentManager componentManager)
         throws ComponentLookupException
     {
         this.modelConfiguration = modelConfiguration;
-        this.groupManager = componentManager.getInstance(GroupManager.class);
         this.userReferenceSerializer =
             componentManager.getInstance(UserReferenceSerializer.TYPE_DOCUMENT_REFERENCE, "document");
         this.configProvider = componentManager.getInstance(GPTAPIConfigProvider.class);
         this.contextProvider = componentManager.getInstance(XWikiContext.TYPE_PROVIDER);
+        this.userGroupsCache = componentManager.getInstance(UserGroupsCache.class);
     }
 
     @Override
@@ -131,16 +129,11 @@ public abstract class AbstractModel implements WikiComponent
         }
         DocumentReference documentUserReference = this.userReferenceSerializer.serialize(user);
         Collection<DocumentReference> userGroups;
-        XWikiContext context = this.contextProvider.get();
-        String currentWiki = context.getWikiId();
         try {
-            context.setWikiId(getWikiReference().getName());
-            userGroups = this.groupManager.getGroups(documentUserReference, WikiTarget.ENTITY_AND_CURRENT, true);
+            userGroups = this.userGroupsCache.getGroups(documentUserReference, getWikiReference().getName());
         } catch (GroupException e) {
             LOGGER.warn("Failed to get groups for user [{}]", documentUserReference, e);
             return false;
-        } finally {
-            context.setWikiId(currentWiki);
         }
 
         return this.modelConfiguration.getAllowedGroups().stream().anyMatch(userGroups::contains);
@@ -0,0 +1,65 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+/**
+ * Builds unambiguous cache keys from several parts.
+ *
+ * <p>Every part is prefixed with its length, such that no choice of parts can produce the key of other parts,
+ * whatever characters the parts contain. The key of some parts is a prefix of the key of any additional parts, which
+ * allows removing all keys that start with the same parts.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public final class CacheKeyBuilder
+{
+    private static final char LENGTH_SEPARATOR = ':';
+
+    private final StringBuilder key = new StringBuilder();
+
+    /**
+     * @param part the part to append, {@code null} is appended like an empty part
+     * @return this builder
+     */
+    public CacheKeyBuilder append(String part)
+    {
+        String value = part != null ? part : "";
+        this.key.append(value.length()).append(LENGTH_SEPARATOR).append(value);
+        return this;
+    }
+
+    /**
+     * @param part the part to append
+     * @return this builder
+     */
+    public CacheKeyBuilder append(Object part)
+    {
+        return append(part != null ? part.toString() : null);
+    }
+
+    /**
+     * @return the key of the appended parts
+     */
+    public String build()
+    {
+        return this.key.toString();
+    }
+}
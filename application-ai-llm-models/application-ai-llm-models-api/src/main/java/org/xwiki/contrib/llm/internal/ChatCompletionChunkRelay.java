@@ -0,0 +1,265 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import com.fasterxml.jackson.core.JacksonException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Relays a server-sent events stream of chat completion chunks, replacing the model of every chunk.
+ *
+ * <p>The chunks are rewritten token by token with Jackson's streaming API and written directly to the output, so
+ * no chunk objects are created and the bytes are only decoded as far as the JSON parser requires. All properties are
+ * relayed, including the ones that aren't part of {@code ChatCompletionChunk} like tool calls or log probabilities,
+ * only properties whose value is {@code null} are omitted.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public class ChatCompletionChunkRelay
+{
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final byte[] DATA_PREFIX = "data: ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] EVENT_END = "\n\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+    private static final String MODEL_FIELD = "model";
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final String model;
+
+    private final OutputStream outputStream;
+
+    private final Function<String, IOException> errorHandler;
+
+    private final ExposedByteArrayOutputStream line = new ExposedByteArrayOutputStream();
+
+    private final ExposedByteArrayOutputStream data = new ExposedByteArrayOutputStream();
+
+    private final ExposedByteArrayOutputStream rewritten = new ExposedByteArrayOutputStream();
+
+    /**
+     * A byte array output stream that gives access to its buffer to avoid copies.
+     */
+    private static final class ExposedByteArrayOutputStream extends ByteArrayOutputStream
+    {
+        private byte[] buffer()
+        {
+            return this.buf;
+        }
+
+        private boolean startsWith(byte[] prefix)
+        {
+            if (this.count < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (this.buf[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean isBlank()
+        {
+            for (int i = 0; i < this.count; i++) {
+                if (!Character.isWhitespace(this.buf[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @param model the model to set in every chunk
+     * @param outputStream the output stream to write the events to
+     * @param errorHandler called with the data of a chunk that isn't valid JSON, returns the exception to throw
+     */
+    public ChatCompletionChunkRelay(String model, OutputStream outputStream,
+        Function<String, IOException> errorHandler)
+    {
+        this.model = model;
+        this.outputStream = outputStream;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Read the server-sent events from the given input stream and write every chunk to the output stream. Each event
+     * is flushed immediately to not delay the streaming output. The {@code [DONE]} event is not relayed.
+     *
+     * @param inputStream the input stream to read the events from
+     * @throws IOException if reading or writing fails, or a chunk isn't valid JSON
+     */
+    public void relay(InputStream inputStream) throws IOException
+    {
+        byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+        int read;
+        try {
+            // read() returns as soon as some bytes are available, so this doesn't delay events.
+            while ((read = inputStream.read(readBuffer)) != -1) {
+                for (int i = 0; i < read; i++) {
+                    byte b = readBuffer[i];
+                    if (b == '\n') {
+                        processLine();
+                    } else if (b != '\r') {
+                        this.line.write(b);
+                    }
+                }
+            }
+        } catch (EOFException e) {
+            // Ignore, this is expected when request is closed by the client.
+        }
+
+        // Process an unterminated last line and the last event.
+        if (this.line.size() > 0) {
+            processLine();
+        }
+        dispatchEvent();
+    }
+
+    private void processLine() throws IOException
+    {
+        if (this.line.size() == 0) {
+            dispatchEvent();
+        } else if (this.line.startsWith(DATA_PREFIX)) {
+            if (this.data.size() > 0) {
+                this.data.write('\n');
+            }
+            this.data.write(this.line.buffer(), DATA_PREFIX.length, this.line.size() - DATA_PREFIX.length);
+        }
+        this.line.reset();
+    }
+
+    private void dispatchEvent() throws IOException
+    {
+        try {
+            // Ignore empty chunks and the [DONE] chunk.
+            if (this.data.isBlank() || (this.data.size() == DONE.length && this.data.startsWith(DONE))) {
+                return;
+            }
+
+            this.rewritten.reset();
+            try {
+                rewriteModel();
+            } catch (JacksonException e) {
+                throw this.errorHandler.apply(this.data.toString(StandardCharsets.UTF_8));
+            }
+
+            this.outputStream.write(DATA_PREFIX);
+            this.rewritten.writeTo(this.outputStream);
+            this.outputStream.write(EVENT_END);
+            this.outputStream.flush();
+        } finally {
+            this.data.reset();
+        }
+    }
+
+    private void rewriteModel() throws IOException
+    {
+        try (JsonParser parser = JSON_FACTORY.createParser(this.data.buffer(), 0, this.data.size());
+             JsonGenerator generator = JSON_FACTORY.createGenerator(this.rewritten, JsonEncoding.UTF8)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected a JSON object");
+            }
+
+            generator.writeStartObject();
+            boolean modelWritten = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                if (MODEL_FIELD.equals(fieldName)) {
+                    writeModel(generator);
+                    parser.skipChildren();
+                    modelWritten = true;
+                } else {
+                    copyField(parser, generator, fieldName);
+                }
+            }
+
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw new JsonParseException(parser, "Unexpected content after the JSON object");
+            }
+
+            if (!modelWritten) {
+                writeModel(generator);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Copy the current value, omitting the properties of objects whose value is {@code null} at any depth.
+     */
+    private static void copyValue(JsonParser parser, JsonGenerator generator) throws IOException
+    {
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                parser.nextToken();
+                copyField(parser, generator, fieldName);
+            }
+            generator.writeEndObject();
+        } else if (parser.currentToken() == JsonToken.START_ARRAY) {
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                copyValue(parser, generator);
+            }
+            generator.writeEndArray();
+        } else {
+            generator.copyCurrentEvent(parser);
+        }
+    }
+
+    private static void copyField(JsonParser parser, JsonGenerator generator, String fieldName) throws IOException
+    {
+        if (parser.currentToken() != JsonToken.VALUE_NULL) {
+            generator.writeFieldName(fieldName);
+            copyValue(parser, generator);
+        }
+    }
+
+    private void writeModel(JsonGenerator generator) throws IOException
+    {
+        // Like the serialized chunks, omit the model when it is null.
+        if (this.model != null) {
+            generator.writeStringField(MODEL_FIELD, this.model);
+        }
+    }
+}
@@ -24,13 +24,11 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.llm.ChatModel;
 import org.xwiki.contrib.llm.ChatModelDescriptor;
 import org.xwiki.contrib.llm.ChatModelManager;
@@ -49,15 +47,11 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class DefaultChatModelManager implements ChatModelManager
 {
-    @Inject
-    @Named("context")
-    private Provider<ComponentManager> componentManagerProvider;
-
     @Inject
     private Provider<XWikiContext> contextProvider;
 
     @Inject
-    private ModelComponentFixer modelComponentFixer;
+    private ModelRegistry modelRegistry;
 
     @Override
     public ChatModel getModel(String name, UserReference userReference, String wikiId) throws GPTAPIException
@@ -83,10 +77,11 @@ public class DefaultChatModelManager implements ChatModelManager
 
     private ChatModel getChatModelComponent(String name) throws ComponentLookupException
     {
-        if (!this.componentManagerProvider.get().hasComponent(ChatModel.class, name)) {
-            this.modelComponentFixer.fixComponents();
+        ChatModel model = this.modelRegistry.getModel(ChatModel.class, name);
+        if (model == null) {
+            throw new ComponentLookupException(String.format("No model with name [%s] found.", name));
         }
-        return this.componentManagerProvider.get().getInstance(ChatModel.class, name);
+        return model;
     }
 
     @Override
@@ -97,12 +92,7 @@ public class DefaultChatModelManager implements ChatModelManager
         try {
             context.setWikiId(wikiId);
 
-            List<ChatModel> models = this.componentManagerProvider.get().getInstanceList(ChatModel.class);
-            if (models.isEmpty()) {
-                this.modelComponentFixer.fixComponents();
-                models = this.componentManagerProvider.get().getInstanceList(ChatModel.class);
-            }
-            return models.stream()
+            return this.modelRegistry.getModels(ChatModel.class).values().stream()
                 .filter(ChatModel::isValid)
                 .filter(model -> model.hasAccess(userReference))
                 .map(ChatModel::getDescriptor)
@@ -65,6 +65,14 @@ public class DefaultEmbeddingModel extends AbstractModel implements EmbeddingMod
 
     @Override
     public List<double[]> embed(List<String> texts, EmbeddingPurpose purpose) throws RequestError
+    {
+        return embedFloat(texts, purpose).stream()
+            .map(DefaultEmbeddingModel::toDoubleArray)
+            .toList();
+    }
+
+    @Override
+    public List<float[]> embedFloat(List<String> texts, EmbeddingPurpose purpose) throws RequestError
     {
         try {
             GPTAPIServer server = this.componentManagerProvider.get()
@@ -87,6 +95,16 @@ public class DefaultEmbeddingModel extends AbstractModel implements EmbeddingMod
             this.modelConfiguration.getDimensions());
     }
 
+    @Override
+    public String getConfigurationKey()
+    {
+        return new CacheKeyBuilder()
+            .append(this.modelConfiguration.getServerName())
+            .append(this.modelConfiguration.getModel())
+            .append(this.modelConfiguration.getDimensions())
+            .build();
+    }
+
     @Override
     public Type getRoleType()
     {
@@ -99,16 +117,31 @@ public class DefaultEmbeddingModel extends AbstractModel implements EmbeddingMod
         return this.modelConfiguration.getMaximumParallelism();
     }
 
-    private String addPrefix(String text, EmbeddingPurpose purpose)
+    private static double[] toDoubleArray(float[] floatArray)
+    {
+        double[] doubleArray = new double[floatArray.length];
+        for (int i = 0; i < floatArray.length; i++) {
+            doubleArray[i] = floatArray[i];
+        }
+        return doubleArray;
+    }
+
+    @Override
+    public String getPrefix(EmbeddingPurpose purpose)
     {
         switch (purpose) {
             case INDEX:
-                return this.modelConfiguration.getEmbeddingIndexPrefix() + text;
+                return this.modelConfiguration.getEmbeddingIndexPrefix();
             case QUERY:
-                return this.modelConfiguration.getEmbeddingQueryPrefix() + text;
+                return this.modelConfiguration.getEmbeddingQueryPrefix();
             case OTHER:
             default:
-                return text;
+                return "";
         }
     }
+
+    private String addPrefix(String text, EmbeddingPurpose purpose)
+    {
+        return getPrefix(purpose) + text;
+    }
 }
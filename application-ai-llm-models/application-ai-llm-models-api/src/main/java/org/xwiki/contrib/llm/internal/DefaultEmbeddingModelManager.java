@@ -23,13 +23,11 @@ import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
-import javax.inject.Named;
 import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
-import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.contrib.llm.EmbeddingModel;
 import org.xwiki.contrib.llm.EmbeddingModelDescriptor;
 import org.xwiki.contrib.llm.EmbeddingModelManager;
@@ -51,15 +49,11 @@ import com.xpn.xwiki.XWikiContext;
 @Singleton
 public class DefaultEmbeddingModelManager implements EmbeddingModelManager
 {
-    @Inject
-    @Named("context")
-    private Provider<ComponentManager> componentManagerProvider;
-
     @Inject
     private Provider<XWikiContext> contextProvider;
 
     @Inject
-    private ModelComponentFixer modelComponentFixer;
+    private ModelRegistry modelRegistry;
 
     @Override
     public EmbeddingModel getModel(WikiReference wiki, String id, UserReference userReference) throws GPTAPIException
@@ -85,11 +79,11 @@ public class DefaultEmbeddingModelManager implements EmbeddingModelManager
 
     private EmbeddingModel getInstance(String id) throws ComponentLookupException
     {
-        if (!this.componentManagerProvider.get().hasComponent(EmbeddingModel.class, id)) {
-            this.modelComponentFixer.fixComponents();
+        EmbeddingModel model = this.modelRegistry.getModel(EmbeddingModel.class, id);
+        if (model == null) {
+            throw new ComponentLookupException(String.format("No model with id [%s] found.", id));
         }
-
-        return this.componentManagerProvider.get().getInstance(EmbeddingModel.class, id);
+        return model;
     }
 
     @Override
@@ -101,12 +95,7 @@ public class DefaultEmbeddingModelManager implements EmbeddingModelManager
         try {
             context.setWikiReference(wiki);
 
-            List<EmbeddingModel> models = this.componentManagerProvider.get().getInstanceList(EmbeddingModel.class);
-            if (models.isEmpty()) {
-                this.modelComponentFixer.fixComponents();
-                models = this.componentManagerProvider.get().getInstanceList(EmbeddingModel.class);
-            }
-            return models.stream()
+            return this.modelRegistry.getModels(EmbeddingModel.class).values().stream()
                 .filter(model -> model.hasAccess(userReference))
                 .map(EmbeddingModel::getDescriptor)
                 .collect(Collectors.toList());
@@ -19,30 +19,20 @@
  */
 package org.xwiki.contrib.llm.internal;
 
-import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import javax.inject.Inject;
-import javax.inject.Provider;
 import javax.inject.Singleton;
 
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.llm.GPTAPIConfig;
 import org.xwiki.contrib.llm.GPTAPIConfigProvider;
 import org.xwiki.contrib.llm.GPTAPIException;
-import org.xwiki.model.reference.DocumentReference;
 import org.xwiki.stability.Unstable;
 
-import com.xpn.xwiki.XWikiContext;
-import com.xpn.xwiki.XWikiException;
-import com.xpn.xwiki.doc.XWikiDocument;
-import com.xpn.xwiki.objects.BaseObject;
-
 /**
- * Default implementation of {@link GPTAPIConfigProvider}.
+ * Default implementation of {@link GPTAPIConfigProvider}. The configurations are shared snapshots, see
+ * {@link GPTAPIConfigSnapshotCache}.
  *
  * @version $Id$
  * @since 0.1
@@ -52,46 +42,13 @@ import com.xpn.xwiki.objects.BaseObject;
 @Singleton
 public class DefaultGPTAPIConfigProvider implements GPTAPIConfigProvider 
 {
-    private static final List<String> AI_SPACE_NAMES = List.of("AI", "Code");
-
-    @Inject
-    private Provider<XWikiContext> contextProvider;
-
     @Inject
-    private GPTAPIConfigBuilder configBuilder;
+    private GPTAPIConfigSnapshotCache snapshotCache;
 
     @Override
     public Map<String, GPTAPIConfig> getConfigObjects(String currentWiki)
         throws GPTAPIException
     {
-        XWikiContext context = contextProvider.get();
-        com.xpn.xwiki.XWiki xwiki = context.getWiki();
-        return getConfigFromDoc(xwiki, context, currentWiki);
-    }
-
-    /**
-     * @param xwiki       The XWiki instance.
-     * @param context     The current XWiki context.
-     * @param currentWiki The current Wiki id.
-     * @return A map object of {@link #GPTAPIConfig}
-     */
-    private Map<String, GPTAPIConfig> getConfigFromDoc(com.xpn.xwiki.XWiki xwiki, XWikiContext context,
-            String currentWiki) throws GPTAPIException
-    {
-        // Retrieve the LLM Configuration Objects
-        try {
-            DocumentReference configDocumentReference = new DocumentReference(currentWiki, AI_SPACE_NAMES, "AIConfig");
-            DocumentReference configClassReference =
-                new DocumentReference(currentWiki, AI_SPACE_NAMES, "AIConfigClass");
-            XWikiDocument doc = xwiki.getDocument(configDocumentReference, context);
-            List<BaseObject> configObjects = doc.getXObjects(configClassReference);
-            return configObjects.stream()
-                .filter(Objects::nonNull)
-                .map(this.configBuilder::build)
-                .collect(Collectors.toMap(GPTAPIConfig::getName, Function.identity()));
-
-        } catch (XWikiException e) {
-            throw new GPTAPIException("Error while trying to access the configuration.", e);
-        }
+        return this.snapshotCache.get(currentWiki);
     }
 }
@@ -20,6 +20,7 @@
 package org.xwiki.contrib.llm.internal;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.List;
 
@@ -40,10 +41,12 @@ import org.xwiki.contrib.llm.openai.ChatCompletionResult;
  * @version $Id$
  * @since 0.3
  */
-public class FilteringOpenAIChatModel extends AbstractModel implements ChatModel
+public class FilteringOpenAIChatModel extends AbstractModel implements RelayingChatModel
 {
     private final ChatRequestFilter firstFilter;
 
+    private final OpenAIChatModel chatModel;
+
     /**
      * Initialize the model.
      *
@@ -66,12 +69,12 @@ public class FilteringOpenAIChatModel extends AbstractModel implements ChatModel
             current = filter;
         }
 
-        OpenAIChatModel chatModel = new OpenAIChatModel(modelConfiguration, componentManager);
+        this.chatModel = new OpenAIChatModel(modelConfiguration, componentManager);
         if (current != null) {
-            current.setNext(chatModel);
+            current.setNext(this.chatModel);
         }
 
-        this.firstFilter = filters.isEmpty() ? chatModel : filters.get(0);
+        this.firstFilter = filters.isEmpty() ? this.chatModel : filters.get(0);
     }
 
     @Override
@@ -93,6 +96,19 @@ public class FilteringOpenAIChatModel extends AbstractModel implements ChatModel
         return this.firstFilter.process(request);
     }
 
+    @Override
+    public boolean supportsRelay()
+    {
+        // Filters may need to see or modify the chunks, so only relay them when there are no filters.
+        return this.firstFilter == this.chatModel && supportsStreaming();
+    }
+
+    @Override
+    public void relayStreaming(ChatCompletionRequest request, OutputStream outputStream) throws IOException
+    {
+        this.chatModel.relayStreaming(request, outputStream);
+    }
+
     @Override
     public boolean supportsStreaming()
     {
@@ -0,0 +1,82 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.bridge.event.WikiDeletedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Invalidates the configuration snapshot of {@link GPTAPIConfigSnapshotCache} when the server configuration document
+ * of a wiki is created, updated or deleted. This isn't a local listener as every cluster node has its own snapshots.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component
+@Singleton
+@Named(GPTAPIConfigInvalidationListener.NAME)
+public class GPTAPIConfigInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the event listener.
+     */
+    public static final String NAME = "org.xwiki.contrib.llm.internal.GPTAPIConfigInvalidationListener";
+
+    @Inject
+    private GPTAPIConfigSnapshotCache snapshotCache;
+
+    /**
+     * Default constructor.
+     */
+    public GPTAPIConfigInvalidationListener()
+    {
+        super(NAME, List.of(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent(),
+            new WikiDeletedEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (event instanceof WikiDeletedEvent wikiDeletedEvent) {
+            this.snapshotCache.invalidate(wikiDeletedEvent.getWikiId());
+        } else if (source instanceof XWikiDocument document) {
+            DocumentReference documentReference = document.getDocumentReference();
+            if (GPTAPIServerWikiObjectComponentBuilder.AI_CONFIG_DOCUMENT.equals(
+                documentReference.getLocalDocumentReference()))
+            {
+                this.snapshotCache.invalidate(documentReference.getWikiReference().getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.contrib.llm.GPTAPIConfig;
+import org.xwiki.contrib.llm.GPTAPIException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.model.reference.WikiReference;
+
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.XWikiException;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+/**
+ * Cache of the server configurations of each wiki, such that chat and embedding requests don't need to load the
+ * {@code AI.Code.AIConfig} document and to rebuild the configurations every time.
+ *
+ * <p>The configurations of a wiki are kept as an immutable snapshot that is shared by all models until
+ * {@link GPTAPIConfigInvalidationListener} removes it because the configuration document was created, updated or
+ * deleted.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = GPTAPIConfigSnapshotCache.class)
+@Singleton
+public class GPTAPIConfigSnapshotCache
+{
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private GPTAPIConfigBuilder configBuilder;
+
+    private final Map<String, Map<String, GPTAPIConfig>> snapshots = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation to detect invalidations that happen while a configuration is loaded.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param wiki the wiki whose configurations shall be returned
+     * @return the immutable map of the configurations of the wiki by server name
+     * @throws GPTAPIException if loading the configuration failed
+     */
+    public Map<String, GPTAPIConfig> get(String wiki) throws GPTAPIException
+    {
+        Map<String, GPTAPIConfig> snapshot = this.snapshots.get(wiki);
+        if (snapshot == null) {
+            long invalidationsBefore = this.invalidations.get();
+            snapshot = Map.copyOf(load(wiki));
+            // Don't keep the snapshot if the configuration was modified while loading it as it might be outdated.
+            this.snapshots.put(wiki, snapshot);
+            if (this.invalidations.get() != invalidationsBefore) {
+                this.snapshots.remove(wiki, snapshot);
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Remove the configurations of a wiki.
+     *
+     * @param wiki the wiki whose configurations shall be removed
+     */
+    public void invalidate(String wiki)
+    {
+        this.invalidations.incrementAndGet();
+        this.snapshots.remove(wiki);
+    }
+
+    private Map<String, GPTAPIConfig> load(String wiki) throws GPTAPIException
+    {
+        XWikiContext context = this.contextProvider.get();
+        WikiReference wikiReference = new WikiReference(wiki);
+        try {
+            DocumentReference configDocumentReference =
+                new DocumentReference(GPTAPIServerWikiObjectComponentBuilder.AI_CONFIG_DOCUMENT, wikiReference);
+            DocumentReference configClassReference =
+                new DocumentReference(GPTAPIServerWikiObjectComponentBuilder.AI_CONFIG_CLASS_REFERENCE, wikiReference);
+            XWikiDocument doc = context.getWiki().getDocument(configDocumentReference, context);
+            List<BaseObject> configObjects = doc.getXObjects(configClassReference);
+            return configObjects.stream()
+                .filter(Objects::nonNull)
+                .map(this.configBuilder::build)
+                .collect(Collectors.toMap(GPTAPIConfig::getName, Function.identity()));
+        } catch (XWikiException e) {
+            throw new GPTAPIException("Error while trying to access the configuration.", e);
+        }
+    }
+}
@@ -38,8 +38,8 @@ public interface GPTAPIServer
      *
      * @param model the embedding model
      * @param texts the texts to embed
-     * @return the embeddings of the given texts
+     * @return the embeddings of the given texts, in single precision as returned by the embedding models
      * @throws RequestError if there is any problem calling the embedding model
      */
-    List<double[]> embed(String model, List<String> texts) throws RequestError;
+    List<float[]> embed(String model, List<String> texts) throws RequestError;
 }
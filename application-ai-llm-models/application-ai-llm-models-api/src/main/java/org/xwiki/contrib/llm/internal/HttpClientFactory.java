@@ -19,32 +19,206 @@
  */
 package org.xwiki.contrib.llm.internal;
 
+import java.net.URI;
 import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Singleton;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.contrib.llm.GPTAPIConfig;
 
 /**
- * A simple factory for HTTP clients, mainly to help with testing.
+ * A factory for HTTP clients that keeps one shared client per server origin and HTTP version so that connections and
+ * TLS sessions are reused across requests.
+ *
+ * <p>Clients that haven't been used for {@link #IDLE_TIMEOUT} are dropped, as are the clients whose server
+ * configurations have all been changed or removed (see {@link #release(GPTAPIConfig)}). All clients share the same
+ * executor for their asynchronous tasks.</p>
  *
  * @version $Id$
  * @since 0.3
  */
 @Component(roles = HttpClientFactory.class)
 @Singleton
-public class HttpClientFactory
+public class HttpClientFactory implements Initializable, Disposable
 {
     /**
-     * @return a new HTTP client
+     * The time after which a client that hasn't been used is dropped.
+     */
+    static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(20);
+
+    private final Map<ClientKey, CachedClient> clients = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    private ScheduledExecutorService evictionExecutor;
+
+    private record ClientKey(String origin, HttpClient.Version version)
+    {
+    }
+
+    private static final class CachedClient
+    {
+        private final HttpClient client;
+
+        /**
+         * The names of the server configurations that use the client, the client is dropped when all of them have
+         * been released.
+         */
+        private final Set<String> servers = ConcurrentHashMap.newKeySet();
+
+        private volatile long lastUsed = System.nanoTime();
+
+        CachedClient(HttpClient client)
+        {
+            this.client = client;
+        }
+
+        private HttpClient use()
+        {
+            this.lastUsed = System.nanoTime();
+            return this.client;
+        }
+    }
+
+    @Override
+    public void initialize()
+    {
+        this.executor = Executors.newCachedThreadPool(new BasicThreadFactory.Builder()
+            .namingPattern("LLM HTTP client %d")
+            .daemon(true)
+            .build());
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("LLM HTTP client eviction")
+            .daemon(true)
+            .build());
+        long period = IDLE_TIMEOUT.toSeconds() / 2;
+        this.evictionExecutor.scheduleWithFixedDelay(this::evictIdleClients, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return a new HTTP client, prefer {@link #getHttpClient(String, HttpClient.Version)} to reuse connections
      */
     public HttpClient createHttpClient()
     {
-        return HttpClient.newBuilder()
-            .version(HttpClient.Version.HTTP_1_1)
+        return createHttpClient(HttpClient.Version.HTTP_1_1);
+    }
+
+    /**
+     * @param config the configuration of the server to send requests to
+     * @return the shared HTTP client for the server, using HTTP/2 if enabled in the configuration
+     * @since 0.9.1
+     */
+    public HttpClient getHttpClient(GPTAPIConfig config)
+    {
+        ClientKey key = new ClientKey(getOrigin(config.getURL()), getVersion(config));
+        String server = StringUtils.defaultString(config.getName());
+        CachedClient cachedClient = this.clients.get(key);
+        if (cachedClient == null || !cachedClient.servers.contains(server)) {
+            // Register the server atomically with the map to not add it to a client that is being released.
+            cachedClient = this.clients.compute(key, (k, existing) -> {
+                CachedClient result = existing != null ? existing : new CachedClient(createHttpClient(k.version()));
+                result.servers.add(server);
+                return result;
+            });
+        }
+        return cachedClient.use();
+    }
+
+    /**
+     * @param url the URL to send requests to
+     * @param version the HTTP version to use
+     * @return the shared HTTP client for the origin of the given URL and the given HTTP version
+     * @since 0.9.1
+     */
+    public HttpClient getHttpClient(String url, HttpClient.Version version)
+    {
+        return this.clients.computeIfAbsent(new ClientKey(getOrigin(url), version),
+            key -> new CachedClient(createHttpClient(key.version()))).use();
+    }
+
+    /**
+     * Release the shared HTTP client of the given server configuration, e.g., because the configuration has been
+     * changed or removed. The client is only dropped when no other server configuration uses it. Requests that are
+     * still running with the client aren't affected.
+     *
+     * @param config the configuration of the server
+     * @since 0.9.1
+     */
+    public void release(GPTAPIConfig config)
+    {
+        String server = StringUtils.defaultString(config.getName());
+        this.clients.computeIfPresent(new ClientKey(getOrigin(config.getURL()), getVersion(config)),
+            (key, cachedClient) -> {
+                cachedClient.servers.remove(server);
+                return cachedClient.servers.isEmpty() ? null : cachedClient;
+            });
+    }
+
+    private HttpClient createHttpClient(HttpClient.Version version)
+    {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(version)
             .followRedirects(HttpClient.Redirect.NORMAL)
-            .connectTimeout(Duration.ofSeconds(20))
-            .build();
+            .connectTimeout(CONNECT_TIMEOUT);
+
+        if (this.executor != null) {
+            builder.executor(this.executor);
+        }
+
+        return builder.build();
+    }
+
+    private static HttpClient.Version getVersion(GPTAPIConfig config)
+    {
+        return config.isHTTP2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1;
+    }
+
+    private static String getOrigin(String url)
+    {
+        try {
+            URI uri = URI.create(StringUtils.defaultString(url));
+            if (uri.getScheme() != null && uri.getRawAuthority() != null) {
+                return uri.getScheme() + "://" + uri.getRawAuthority();
+            }
+        } catch (IllegalArgumentException e) {
+            // Fall back to the full URL, the request will fail anyway.
+        }
+
+        return StringUtils.defaultString(url);
+    }
+
+    private void evictIdleClients()
+    {
+        long now = System.nanoTime();
+        this.clients.entrySet().removeIf(entry -> now - entry.getValue().lastUsed > IDLE_TIMEOUT.toNanos());
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.evictionExecutor != null) {
+            this.evictionExecutor.shutdownNow();
+        }
+
+        this.clients.clear();
+
+        if (this.executor != null) {
+            this.executor.shutdown();
+        }
     }
 }
@@ -0,0 +1,118 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Shared JSON codec for the requests and responses of the LLM servers and the REST API.
+ *
+ * <p>Creating an {@link ObjectMapper} per request throws away Jackson's caches of serializers and deserializers,
+ * which are far more expensive to build than to use. This component keeps a single mapper and caches an
+ * {@link ObjectReader} and an {@link ObjectWriter} per type. Readers ignore unknown properties as the APIs of the
+ * LLM servers evolve, and writers omit {@code null} values as some servers reject them.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = JSONCodec.class)
+@Singleton
+public class JSONCodec
+{
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final ObjectMapper nonNullObjectMapper = this.objectMapper.copy()
+        .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+
+    private final Map<JavaType, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    private final Map<JavaType, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    private final ObjectWriter writer = this.nonNullObjectMapper.writer();
+
+    /**
+     * @return the shared object mapper with the default configuration of Jackson, it must not be re-configured
+     */
+    public ObjectMapper getObjectMapper()
+    {
+        return this.objectMapper;
+    }
+
+    /**
+     * @param type the type to read
+     * @return a reader for the given type that ignores unknown properties
+     */
+    public ObjectReader getReader(Class<?> type)
+    {
+        return getReader((Type) type);
+    }
+
+    /**
+     * @param type the type to read
+     * @return a reader for the given type that ignores unknown properties
+     */
+    public ObjectReader getReader(TypeReference<?> type)
+    {
+        return getReader(type.getType());
+    }
+
+    /**
+     * @param type the type to read
+     * @return a reader for the given type that ignores unknown properties
+     */
+    public ObjectReader getReader(Type type)
+    {
+        return this.readers.computeIfAbsent(this.objectMapper.constructType(type),
+            javaType -> this.objectMapper.readerFor(javaType)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    }
+
+    /**
+     * @param type the type to write
+     * @return a writer for the given type that omits {@code null} values
+     */
+    public ObjectWriter getWriter(Class<?> type)
+    {
+        return this.writers.computeIfAbsent(this.objectMapper.constructType(type),
+            this.nonNullObjectMapper::writerFor);
+    }
+
+    /**
+     * @return a writer for values of any type that omits {@code null} values
+     */
+    public ObjectWriter getWriter()
+    {
+        return this.writer;
+    }
+}
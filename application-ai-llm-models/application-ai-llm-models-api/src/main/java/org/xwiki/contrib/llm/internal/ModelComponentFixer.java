@@ -20,7 +20,10 @@
 package org.xwiki.contrib.llm.internal;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -102,10 +105,31 @@ public class ModelComponentFixer
     @Inject
     private Logger logger;
 
+    private final Map<String, CompletableFuture<Void>> runningFixes = new ConcurrentHashMap<>();
+
     /**
-     * Try fixing model components.
+     * Try fixing model components of the current wiki. Concurrent calls for the same wiki wait for the running fix
+     * instead of fixing the components again, calls for other wikis aren't blocked.
      */
-    public synchronized void fixComponents()
+    public void fixComponents()
+    {
+        String wiki = this.contextProvider.get().getWikiId();
+        CompletableFuture<Void> fix = new CompletableFuture<>();
+        CompletableFuture<Void> runningFix = this.runningFixes.putIfAbsent(wiki, fix);
+        if (runningFix != null) {
+            runningFix.join();
+            return;
+        }
+
+        try {
+            fixWikiComponents();
+        } finally {
+            this.runningFixes.remove(wiki, fix);
+            fix.complete(null);
+        }
+    }
+
+    private void fixWikiComponents()
     {
         ComponentManager componentManager = this.contextComponentManagerProvider.get();
 
@@ -0,0 +1,151 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.llm.ChatModel;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Registry of the chat and embedding models of each wiki, such that looking up a model only needs a map read instead
+ * of asking the component manager and possibly {@link ModelComponentFixer fixing the model components}.
+ *
+ * <p>The models of a wiki are kept as an immutable map by component hint that is replaced as a whole when the models
+ * change. {@link ModelRegistryInvalidationListener} removes all maps when a model component is registered or
+ * unregistered, the maps are then rebuilt on the next lookup.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = ModelRegistry.class)
+@Singleton
+public class ModelRegistry
+{
+    @Inject
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private ModelComponentFixer modelComponentFixer;
+
+    private final Map<String, Map<String, ?>> models = new ConcurrentHashMap<>();
+
+    /**
+     * The names of the models that were still missing after fixing the model components, by the same key as the
+     * models.
+     */
+    private final Map<String, Set<String>> missingNames = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented on every invalidation to detect invalidations that happen while the models are loaded.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Get the models of the current wiki.
+     *
+     * @param role the type of the models, e.g., {@link ChatModel}
+     * @param <T> the type of the models
+     * @return the immutable map of the models of the current wiki by name
+     * @throws ComponentLookupException if loading the models failed
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Map<String, T> getModels(Class<T> role) throws ComponentLookupException
+    {
+        String key = getKey(role);
+        Map<String, T> result = (Map<String, T>) this.models.get(key);
+        if (result == null) {
+            long invalidationsBefore = this.invalidations.get();
+            result = loadModels(role);
+            // Don't keep the models if they were modified while loading them as they might be outdated.
+            this.models.put(key, result);
+            if (this.invalidations.get() != invalidationsBefore) {
+                this.models.remove(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get a model of the current wiki. When the model is missing, the model components are fixed and the lookup is
+     * retried, but only once per name until the models change to not fix the components on every lookup of a model
+     * that doesn't exist.
+     *
+     * @param role the type of the model, e.g., {@link ChatModel}
+     * @param name the name of the model
+     * @param <T> the type of the model
+     * @return the model, or {@code null} if there is no model with the given name
+     * @throws ComponentLookupException if loading the models failed
+     */
+    public <T> T getModel(Class<T> role, String name) throws ComponentLookupException
+    {
+        T result = getModels(role).get(name);
+        if (result == null) {
+            String key = getKey(role);
+            if (this.missingNames.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(name)) {
+                this.modelComponentFixer.fixComponents();
+                this.models.remove(key);
+                result = getModels(role).get(name);
+            }
+        }
+        return result;
+    }
+
+    private String getKey(Class<?> role)
+    {
+        return new CacheKeyBuilder().append(this.contextProvider.get().getWikiId()).append(role.getName()).build();
+    }
+
+    private <T> Map<String, T> loadModels(Class<T> role) throws ComponentLookupException
+    {
+        Map<String, T> result = this.componentManagerProvider.get().getInstanceMap(role);
+        if (result.isEmpty()) {
+            this.modelComponentFixer.fixComponents();
+            result = this.componentManagerProvider.get().getInstanceMap(role);
+        }
+        return Map.copyOf(result);
+    }
+
+    /**
+     * Remove the models of all wikis.
+     */
+    public void invalidateAll()
+    {
+        this.invalidations.incrementAndGet();
+        this.models.clear();
+        this.missingNames.clear();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.contrib.llm.ChatModel;
+import org.xwiki.contrib.llm.EmbeddingModel;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Clears the {@link ModelRegistry} when a chat or embedding model component is registered or unregistered, e.g.,
+ * because a model document has been modified. Component events aren't distributed in a cluster, but every cluster
+ * node registers the model components itself.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component
+@Singleton
+@Named(ModelRegistryInvalidationListener.NAME)
+public class ModelRegistryInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the event listener.
+     */
+    public static final String NAME = "org.xwiki.contrib.llm.internal.ModelRegistryInvalidationListener";
+
+    @Inject
+    private ModelRegistry modelRegistry;
+
+    /**
+     * Default constructor.
+     */
+    public ModelRegistryInvalidationListener()
+    {
+        super(NAME, List.of(
+            new ComponentDescriptorAddedEvent(ChatModel.class), new ComponentDescriptorRemovedEvent(ChatModel.class),
+            new ComponentDescriptorAddedEvent(EmbeddingModel.class),
+            new ComponentDescriptorRemovedEvent(EmbeddingModel.class)));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        this.modelRegistry.invalidateAll();
+    }
+}
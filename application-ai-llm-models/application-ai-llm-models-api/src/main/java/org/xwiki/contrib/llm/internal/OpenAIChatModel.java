@@ -22,6 +22,7 @@ package org.xwiki.contrib.llm.internal;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
@@ -44,8 +45,7 @@ import org.xwiki.contrib.llm.openai.ChatCompletionResult;
 import org.xwiki.contrib.llm.openai.StreamOptions;
 
 import com.fasterxml.jackson.core.JacksonException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.theokanning.openai.OpenAiError;
 
 /**
@@ -62,6 +62,8 @@ public class OpenAIChatModel extends AbstractModel implements ChatRequestFilter
 
     private final RequestHelper requestHelper;
 
+    private final JSONCodec jsonCodec;
+
     /**
      * Initialize the model.
      *
@@ -73,6 +75,7 @@ public class OpenAIChatModel extends AbstractModel implements ChatRequestFilter
     {
         super(modelConfiguration, componentManager);
         this.requestHelper = componentManager.getInstance(RequestHelper.class);
+        this.jsonCodec = componentManager.getInstance(JSONCodec.class);
     }
 
     @Override
@@ -96,8 +99,7 @@ public class OpenAIChatModel extends AbstractModel implements ChatRequestFilter
             HttpResponse<InputStream> httpResponse = this.requestHelper.post(config, PATH,
                 adaptedRequest, HttpResponse.BodyHandlers.ofInputStream());
             try (InputStream body = httpResponse.body()) {
-                ObjectMapper objectMapper = new ObjectMapper();
-                objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+                ObjectReader chunkReader = this.jsonCodec.getReader(ChatCompletionChunk.class);
 
                 if (httpResponse.statusCode() == 200) {
                     // Read the SSE stream and call the consumer for every chunk
@@ -109,16 +111,16 @@ public class OpenAIChatModel extends AbstractModel implements ChatRequestFilter
 
                         try {
                             ChatCompletionChunk chatCompletionResult =
-                                objectMapper.readValue(chunk, ChatCompletionChunk.class);
+                                chunkReader.readValue(chunk);
                             // Replace the model by the model from the request
                             ChatCompletionChunk newChunk = chatCompletionResult.but().model(request.model()).build();
                             consumer.accept(newChunk);
                         } catch (JacksonException e) {
-                            throw handleError(objectMapper, 200, chunk);
+                            throw handleError(200, chunk);
                         }
                     });
                 } else {
-                    throw handleError(objectMapper, httpResponse.statusCode(),
+                    throw handleError(httpResponse.statusCode(),
                         IOUtils.toString(body, StandardCharsets.UTF_8));
                 }
             } catch (EOFException e) {
@@ -140,12 +142,42 @@ public class OpenAIChatModel extends AbstractModel implements ChatRequestFilter
         }
     }
 
-    private RequestError handleError(ObjectMapper objectMapper, int code, String response)
+    /**
+     * Process the given request and relay the streamed chunks to the given output stream, see
+     * {@link RelayingChatModel#relayStreaming(ChatCompletionRequest, OutputStream)}. The configuration of the server
+     * must support streaming.
+     *
+     * @param request the request to process
+     * @param outputStream the output stream to write the events to
+     * @throws IOException if the request fails or the response cannot be written
+     * @since 0.9.1
+     */
+    public void relayStreaming(ChatCompletionRequest request, OutputStream outputStream) throws IOException
+    {
+        GPTAPIConfig config = this.getConfig();
+        ChatCompletionRequest adaptedRequest = setModel(request, true,
+            StringUtils.startsWith(config.getURL(), "https://api.openai.com"));
+
+        HttpResponse<InputStream> httpResponse = this.requestHelper.post(config, PATH,
+            adaptedRequest, HttpResponse.BodyHandlers.ofInputStream());
+        try (InputStream body = httpResponse.body()) {
+            if (httpResponse.statusCode() == 200) {
+                new ChatCompletionChunkRelay(request.model(), outputStream,
+                    chunk -> handleError(200, chunk)).relay(body);
+            } else {
+                throw handleError(httpResponse.statusCode(),
+                    IOUtils.toString(body, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private RequestError handleError(int code, String response)
     {
         String errorMessage = response;
         // Try getting the actual error message from the content.
         try {
-            errorMessage = objectMapper.readValue(response, OpenAiError.class).getError().getMessage();
+            OpenAiError error = this.jsonCodec.getReader(OpenAiError.class).readValue(response);
+            errorMessage = error.getError().getMessage();
         } catch (Exception e) {
             // Ignore.
         }
@@ -178,16 +210,14 @@ public class OpenAIChatModel extends AbstractModel implements ChatRequestFilter
         HttpResponse<String> httpResponse = this.requestHelper.post(this.getConfig(),
             PATH, adaptedRequest, HttpResponse.BodyHandlers.ofString());
         String body = httpResponse.body();
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
         if (httpResponse.statusCode() == 200) {
             try {
-                return objectMapper.readValue(body, ChatCompletionResult.class);
+                return this.jsonCodec.getReader(ChatCompletionResult.class).readValue(body);
             } catch (JacksonException e) {
-                throw handleError(objectMapper, 200, body);
+                throw handleError(200, body);
             }
         } else {
-            throw handleError(objectMapper, httpResponse.statusCode(), body);
+            throw handleError(httpResponse.statusCode(), body);
         }
     }
 
@@ -30,11 +30,10 @@ import javax.inject.Named;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.contrib.llm.RequestError;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.theokanning.openai.OpenAiError;
 import com.theokanning.openai.OpenAiResponse;
 import com.theokanning.openai.embedding.Embedding;
@@ -50,33 +49,41 @@ import com.theokanning.openai.embedding.EmbeddingRequest;
 @Component(roles = GPTAPIServerWikiComponent.class)
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 @Named("openai")
-public class OpenAIGPTAPIServer extends AbstractGPTAPIServer
+public class OpenAIGPTAPIServer extends AbstractGPTAPIServer implements Disposable
 {
+    private static final TypeReference<OpenAiResponse<Embedding>> EMBEDDING_RESPONSE_TYPE =
+        new TypeReference<>()
+        {
+        };
+
     @Inject
     private RequestHelper requestHelper;
 
+    @Inject
+    private HttpClientFactory httpClientFactory;
+
+    @Inject
+    private JSONCodec jsonCodec;
+
     @Override
-    public List<double[]> embed(String model, List<String> texts) throws RequestError
+    public List<float[]> embed(String model, List<String> texts) throws RequestError
     {
         EmbeddingRequest request = new EmbeddingRequest(model, texts, null);
 
         try {
             HttpResponse<InputStream> httpResponse =
                 this.requestHelper.post(this.config, "embeddings", request, HttpResponse.BodyHandlers.ofInputStream());
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-
             if (httpResponse.statusCode() != 200) {
-                OpenAiError error = objectMapper.readValue(httpResponse.body(), OpenAiError.class);
+                OpenAiError error = this.jsonCodec.getReader(OpenAiError.class).readValue(httpResponse.body());
                 throw new RequestError(httpResponse.statusCode(), error.error.getMessage());
             }
 
-            OpenAiResponse<Embedding> openAiResponse = readEmbeddingResponse(objectMapper, httpResponse);
+            OpenAiResponse<Embedding> openAiResponse = readEmbeddingResponse(httpResponse);
 
             if (openAiResponse.data != null) {
                 return openAiResponse.data.stream()
                     .map(Embedding::getEmbedding)
-                    .map(list -> list.stream().mapToDouble(Double::doubleValue).toArray())
+                    .map(OpenAIGPTAPIServer::toFloatArray)
                     .toList();
             } else {
                 throw new IOException("Response data is null");
@@ -89,18 +96,33 @@ public class OpenAIGPTAPIServer extends AbstractGPTAPIServer
         }
     }
 
-    private static OpenAiResponse<Embedding> readEmbeddingResponse(ObjectMapper objectMapper,
-        HttpResponse<InputStream> httpResponse) throws IOException
+    @Override
+    public void dispose()
+    {
+        // Called when the server configuration is removed or changed, don't keep connections to the old server.
+        if (this.config != null) {
+            this.httpClientFactory.release(this.config);
+        }
+    }
+
+    private static float[] toFloatArray(List<Double> values)
+    {
+        float[] result = new float[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i).floatValue();
+        }
+        return result;
+    }
+
+    private OpenAiResponse<Embedding> readEmbeddingResponse(HttpResponse<InputStream> httpResponse)
+        throws IOException
     {
         try {
-            return objectMapper.readValue(httpResponse.body(),
-                new TypeReference<OpenAiResponse<Embedding>>()
-                {
-                });
+            return this.jsonCodec.getReader(EMBEDDING_RESPONSE_TYPE).readValue(httpResponse.body());
         } catch (IOException e) {
             // If parsing the response failed, it is possible that in fact, it was an error response.
             // Try reading the error response and throw an exception with the error.
-            OpenAiError error = objectMapper.readValue(httpResponse.body(), OpenAiError.class);
+            OpenAiError error = this.jsonCodec.getReader(OpenAiError.class).readValue(httpResponse.body());
             throw new IOException(error.error.getMessage());
         }
     }
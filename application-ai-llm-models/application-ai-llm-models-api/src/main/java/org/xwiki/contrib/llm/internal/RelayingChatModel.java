@@ -0,0 +1,52 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.xwiki.contrib.llm.ChatModel;
+import org.xwiki.contrib.llm.openai.ChatCompletionRequest;
+
+/**
+ * A chat model that can relay the server-sent events stream of the upstream server directly to the client without
+ * deserializing the chunks. This is only possible when no filter needs to see or modify the chunks.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+public interface RelayingChatModel extends ChatModel
+{
+    /**
+     * @return {@code true} if the streamed chunks can be relayed without processing them, {@code false} otherwise
+     */
+    boolean supportsRelay();
+
+    /**
+     * Process the given request and write the streamed chunks as server-sent events to the given output stream. The
+     * model of the chunks is replaced by the model of the request and properties whose value is {@code null} are
+     * omitted, all other properties are relayed. The final {@code [DONE]} event isn't written.
+     *
+     * @param request the request to process
+     * @param outputStream the output stream to write the events to
+     * @throws IOException if the request fails or the response cannot be written
+     */
+    void relayStreaming(ChatCompletionRequest request, OutputStream outputStream) throws IOException;
+}
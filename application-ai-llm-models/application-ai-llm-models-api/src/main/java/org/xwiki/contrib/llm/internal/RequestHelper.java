@@ -37,9 +37,6 @@ import org.apache.commons.lang3.function.FailableConsumer;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.contrib.llm.GPTAPIConfig;
 
-import com.fasterxml.jackson.annotation.JsonInclude;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 /**
  * Helper component for HTTP requests.
  *
@@ -59,6 +56,9 @@ public class RequestHelper
     @Inject
     private HttpClientFactory httpClientFactory;
 
+    @Inject
+    private JSONCodec jsonCodec;
+
     /**
      * Perform a POST request.
      *
@@ -75,7 +75,7 @@ public class RequestHelper
         HttpResponse.BodyHandler<R> bodyHandler)
         throws IOException
     {
-        HttpClient httpClient = this.httpClientFactory.createHttpClient();
+        HttpClient httpClient = this.httpClientFactory.getHttpClient(config);
         HttpRequest request = prepareRequest(path, config, body);
 
         try {
@@ -145,9 +145,8 @@ public class RequestHelper
             .header("User-Agent", "XWiki AI LLM Application");
 
         if (body != null) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
-            builder = builder.POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+            builder = builder.POST(
+                HttpRequest.BodyPublishers.ofByteArray(this.jsonCodec.getWriter().writeValueAsBytes(body)));
         }
 
         return builder.build();
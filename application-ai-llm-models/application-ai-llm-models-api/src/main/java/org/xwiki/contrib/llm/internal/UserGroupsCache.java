@@ -0,0 +1,167 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.cache.Cache;
+import org.xwiki.cache.CacheException;
+import org.xwiki.cache.CacheManager;
+import org.xwiki.cache.config.LRUCacheConfiguration;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.user.group.GroupException;
+import org.xwiki.user.group.GroupManager;
+import org.xwiki.user.group.WikiTarget;
+
+import com.xpn.xwiki.XWikiContext;
+
+/**
+ * Cache of the groups of users, used to check access to models and collections without asking the group manager for
+ * every checked model or collection.
+ *
+ * <p>The groups are cached for the current request in the XWiki context and shared between requests for
+ * {@link #LIFESPAN} seconds. The shared cache is cleared when a group document changes, see
+ * {@link UserGroupsCacheInvalidationListener}.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = UserGroupsCache.class)
+@Singleton
+public class UserGroupsCache implements Initializable, Disposable
+{
+    /**
+     * The maximum number of users and wikis for which groups are cached.
+     */
+    static final int MAX_ENTRIES = 10000;
+
+    /**
+     * The number of seconds after which the cached groups of a user expire.
+     */
+    static final int LIFESPAN = 60;
+
+    private static final String CONTEXT_KEY = "aillm.userGroups";
+
+    @Inject
+    private GroupManager groupManager;
+
+    @Inject
+    private Provider<XWikiContext> contextProvider;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private Cache<Set<DocumentReference>> cache;
+
+    @Override
+    public void initialize() throws InitializationException
+    {
+        LRUCacheConfiguration configuration = new LRUCacheConfiguration("aillm.userGroups", MAX_ENTRIES);
+        configuration.getLRUEvictionConfiguration().setLifespan(LIFESPAN);
+        try {
+            this.cache = this.cacheManager.createNewCache(configuration);
+        } catch (CacheException e) {
+            throw new InitializationException("Failed to create the user groups cache", e);
+        }
+    }
+
+    /**
+     * Get the groups of the given user, including the groups of the groups, in the given wiki and the wiki of the
+     * user.
+     *
+     * @param user the user whose groups shall be returned, {@code null} for the guest user
+     * @param wiki the wiki in which the groups shall be resolved
+     * @return the groups of the user, the returned set must not be modified
+     * @throws GroupException if getting the groups failed
+     */
+    public Set<DocumentReference> getGroups(DocumentReference user, String wiki) throws GroupException
+    {
+        String key = getKey(user, wiki);
+        XWikiContext context = this.contextProvider.get();
+        Map<String, Set<DocumentReference>> requestGroups = getRequestGroups(context);
+
+        Set<DocumentReference> groups = requestGroups.get(key);
+        if (groups == null) {
+            groups = this.cache.get(key);
+            if (groups == null) {
+                groups = computeGroups(context, user, wiki);
+                this.cache.set(key, groups);
+            }
+            requestGroups.put(key, groups);
+        }
+        return groups;
+    }
+
+    private Set<DocumentReference> computeGroups(XWikiContext context, DocumentReference user, String wiki)
+        throws GroupException
+    {
+        String currentWiki = context.getWikiId();
+        try {
+            context.setWikiId(wiki);
+            return Set.copyOf(this.groupManager.getGroups(user, WikiTarget.ENTITY_AND_CURRENT, true));
+        } finally {
+            context.setWikiId(currentWiki);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Set<DocumentReference>> getRequestGroups(XWikiContext context)
+    {
+        Map<String, Set<DocumentReference>> requestGroups =
+            (Map<String, Set<DocumentReference>>) context.get(CONTEXT_KEY);
+        if (requestGroups == null) {
+            requestGroups = new HashMap<>();
+            context.put(CONTEXT_KEY, requestGroups);
+        }
+        return requestGroups;
+    }
+
+    /**
+     * Remove the groups of all users from the shared cache. The groups that were already used in current requests are
+     * kept for these requests.
+     */
+    public void invalidateAll()
+    {
+        this.cache.removeAll();
+    }
+
+    private static String getKey(DocumentReference user, String wiki)
+    {
+        return new CacheKeyBuilder().append(wiki).append(user).build();
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.cache != null) {
+            this.cache.dispose();
+        }
+    }
+}
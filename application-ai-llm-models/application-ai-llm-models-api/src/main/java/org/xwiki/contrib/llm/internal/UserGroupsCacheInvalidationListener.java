@@ -0,0 +1,85 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.bridge.event.DocumentCreatedEvent;
+import org.xwiki.bridge.event.DocumentDeletedEvent;
+import org.xwiki.bridge.event.DocumentUpdatedEvent;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.model.reference.LocalDocumentReference;
+import org.xwiki.observation.AbstractEventListener;
+import org.xwiki.observation.event.Event;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.doc.XWikiDocument;
+
+/**
+ * Clears the {@link UserGroupsCache} when a group document is created, updated or deleted. As groups can be members
+ * of other groups, a change can affect the groups of any user, so all cached groups are removed. This isn't a local
+ * listener as every cluster node has its own cache.
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component
+@Singleton
+@Named(UserGroupsCacheInvalidationListener.NAME)
+public class UserGroupsCacheInvalidationListener extends AbstractEventListener
+{
+    /**
+     * The name of the event listener.
+     */
+    public static final String NAME = "org.xwiki.contrib.llm.internal.UserGroupsCacheInvalidationListener";
+
+    private static final LocalDocumentReference GROUP_CLASS_REFERENCE =
+        new LocalDocumentReference(XWiki.SYSTEM_SPACE, "XWikiGroups");
+
+    @Inject
+    private UserGroupsCache userGroupsCache;
+
+    /**
+     * Default constructor.
+     */
+    public UserGroupsCacheInvalidationListener()
+    {
+        super(NAME, List.of(new DocumentCreatedEvent(), new DocumentUpdatedEvent(), new DocumentDeletedEvent()));
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        if (source instanceof XWikiDocument document
+            && (isGroup(document) || isGroup(document.getOriginalDocument())))
+        {
+            this.userGroupsCache.invalidateAll();
+        }
+    }
+
+    private static boolean isGroup(XWikiDocument document)
+    {
+        return document != null && !document.getXObjects(GROUP_CLASS_REFERENCE).isEmpty();
+    }
+}
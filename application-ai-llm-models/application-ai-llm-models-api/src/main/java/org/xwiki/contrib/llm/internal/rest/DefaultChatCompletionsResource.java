@@ -20,6 +20,7 @@
 package org.xwiki.contrib.llm.internal.rest;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 
@@ -37,6 +38,9 @@ import org.xwiki.contrib.llm.ChatModelManager;
 import org.xwiki.contrib.llm.GPTAPIException;
 import org.xwiki.contrib.llm.RequestError;
 import org.xwiki.contrib.llm.internal.CORSUtils;
+import org.xwiki.contrib.llm.internal.JSONCodec;
+import org.xwiki.contrib.llm.internal.RelayingChatModel;
+import org.xwiki.contrib.llm.openai.ChatCompletionChunk;
 import org.xwiki.contrib.llm.openai.ChatCompletionRequest;
 import org.xwiki.contrib.llm.openai.ChatCompletionResult;
 import org.xwiki.contrib.llm.rest.ChatCompletionsResource;
@@ -44,8 +48,7 @@ import org.xwiki.rest.XWikiResource;
 import org.xwiki.rest.XWikiRestException;
 import org.xwiki.user.CurrentUserReference;
 
-import com.fasterxml.jackson.annotation.JsonInclude.Include;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 /**
  * Default implementation of {@link ChatCompletionsResource}.
@@ -70,6 +73,9 @@ public class DefaultChatCompletionsResource extends XWikiResource implements Cha
     @Inject
     private ChatModelManager chatModelManager;
 
+    @Inject
+    private JSONCodec jsonCodec;
+
     @Override
     public Response getCompletions(String origin, String wikiName, ChatCompletionRequest request)
     {
@@ -80,7 +86,11 @@ public class DefaultChatCompletionsResource extends XWikiResource implements Cha
             if (model.supportsStreaming() && Boolean.TRUE.equals(request.stream())) {
                 return Response.ok((StreamingOutput) output -> {
                     try (OutputStreamWriter writer = new OutputStreamWriter(output, StandardCharsets.UTF_8)) {
-                        writeResponseStream(request, model, writer);
+                        if (model instanceof RelayingChatModel relayingModel && relayingModel.supportsRelay()) {
+                            relayResponseStream(request, relayingModel, output, writer);
+                        } else {
+                            writeResponseStream(request, model, writer);
+                        }
                     }
                 }, MediaType.SERVER_SENT_EVENTS_TYPE)
                         .header(CORS_ALLOW_ORIGIN, allowedOrigin)
@@ -122,18 +132,31 @@ public class DefaultChatCompletionsResource extends XWikiResource implements Cha
         }
     }
 
+    private void relayResponseStream(ChatCompletionRequest request, RelayingChatModel model, OutputStream output,
+        OutputStreamWriter writer) throws IOException
+    {
+        // Write the chunks directly to the output stream, the writer is only used for the final events.
+        try {
+            model.relayStreaming(request, output);
+        } catch (RequestError e) {
+            writer.write(DATA_FORMAT.formatted(this.jsonCodec.getWriter().writeValueAsString(e.getOpenAiError())));
+            writer.flush();
+        }
+
+        writer.write(DATA_FORMAT.formatted("[DONE]"));
+    }
+
     private void writeResponseStream(ChatCompletionRequest request, ChatModel model, OutputStreamWriter writer)
         throws IOException
     {
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.setSerializationInclusion(Include.NON_NULL);
+        ObjectWriter chunkWriter = this.jsonCodec.getWriter(ChatCompletionChunk.class);
         try {
             model.processStreaming(request, chunk -> {
-                writer.write(DATA_FORMAT.formatted(objectMapper.writeValueAsString(chunk)));
+                writer.write(DATA_FORMAT.formatted(chunkWriter.writeValueAsString(chunk)));
                 writer.flush();
             });
         } catch (RequestError e) {
-            writer.write(DATA_FORMAT.formatted(objectMapper.writeValueAsString(e.getOpenAiError())));
+            writer.write(DATA_FORMAT.formatted(this.jsonCodec.getWriter().writeValueAsString(e.getOpenAiError())));
             writer.flush();
         }
 
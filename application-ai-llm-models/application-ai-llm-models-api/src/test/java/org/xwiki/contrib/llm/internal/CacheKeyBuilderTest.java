@@ -0,0 +1,57 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit tests for {@link CacheKeyBuilder}.
+ *
+ * @version $Id$
+ */
+class CacheKeyBuilderTest
+{
+    @Test
+    void build()
+    {
+        assertEquals("4:wiki3:a:b0:2:42", new CacheKeyBuilder().append("wiki").append("a:b").append((String) null)
+            .append(42).build());
+    }
+
+    @Test
+    void keysAreUnambiguous()
+    {
+        assertNotEquals(new CacheKeyBuilder().append("a:").append("b").build(),
+            new CacheKeyBuilder().append("a").append(":b").build());
+        assertNotEquals(new CacheKeyBuilder().append("1:a").build(),
+            new CacheKeyBuilder().append("").append("a").build());
+    }
+
+    @Test
+    void keyOfFewerPartsIsPrefix()
+    {
+        assertTrue(new CacheKeyBuilder().append("wiki").append("id").build()
+            .startsWith(new CacheKeyBuilder().append("wiki").build()));
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Unit tests for {@link ChatCompletionChunkRelay}.
+ *
+ * @version $Id$
+ */
+class ChatCompletionChunkRelayTest
+{
+    private static final String MODEL = "AI.Models.GPT";
+
+    @Test
+    void relay() throws IOException
+    {
+        String input = """
+            : comment
+            data: {"id":"1","model":"gpt-4o","choices":[{"index":0,"delta":{"content":"Hé"}}]}
+
+            data: {"id":"2","object":"chat.completion.chunk","choices":[],"usage":{"total_tokens":12}}\r
+            \r
+            data: [DONE]
+
+            """;
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ChatCompletionChunkRelay(MODEL, output, IOException::new)
+            .relay(IOUtils.toInputStream(input, StandardCharsets.UTF_8));
+
+        assertEquals("""
+            data: {"id":"1","model":"AI.Models.GPT","choices":[{"index":0,"delta":{"content":"Hé"}}]}
+
+            data: {"id":"2","object":"chat.completion.chunk","choices":[],"usage":{"total_tokens":12},\
+            "model":"AI.Models.GPT"}
+
+            """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void relayOmitsNullsAndKeepsUnknownProperties() throws IOException
+    {
+        String input = """
+            data: {"id":"1","system_fingerprint":null,"service_tier":"default","choices":[{"index":0,\
+            "delta":{"role":null,"content":null,"refusal":null,"tool_calls":[{"index":0,"id":"call_1",\
+            "function":{"name":"search","arguments":null}}]},"logprobs":null,"finish_reason":null}],"usage":null}
+
+            """;
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new ChatCompletionChunkRelay(MODEL, output, IOException::new)
+            .relay(IOUtils.toInputStream(input, StandardCharsets.UTF_8));
+
+        assertEquals("""
+            data: {"id":"1","service_tier":"default","choices":[{"index":0,"delta":{"tool_calls":[{"index":0,\
+            "id":"call_1","function":{"name":"search"}}]}}],"model":"AI.Models.GPT"}
+
+            """, output.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void relayInvalidChunk()
+    {
+        IOException error = new IOException();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ChatCompletionChunkRelay relay = new ChatCompletionChunkRelay(MODEL, output, chunk -> {
+            assertEquals("{\"id\":", chunk);
+            return error;
+        });
+
+        assertSame(error, assertThrows(IOException.class,
+            () -> relay.relay(IOUtils.toInputStream("data: {\"id\":\n\n", StandardCharsets.UTF_8))));
+        assertEquals(0, output.size());
+    }
+}
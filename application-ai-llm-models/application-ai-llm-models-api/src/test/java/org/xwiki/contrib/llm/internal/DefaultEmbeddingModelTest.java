@@ -57,7 +57,7 @@ import static org.mockito.Mockito.when;
  * @version $Id$
  */
 @ComponentTest
-@ComponentList({ RequestHelper.class })
+@ComponentList({ RequestHelper.class, JSONCodec.class })
 class OpenAIGPTAPIServerTest
 {
 
@@ -118,7 +118,7 @@ class OpenAIGPTAPIServerTest
     @BeforeEach
     void setUp() throws Exception
     {
-        when(this.httpClientFactory.createHttpClient()).thenReturn(this.httpClient);
+        when(this.httpClientFactory.getHttpClient(this.config)).thenReturn(this.httpClient);
         when(this.httpClient.<InputStream>send(any(HttpRequest.class), any())).thenReturn(this.httpResponse);
         when(this.config.getToken()).thenReturn(TOKEN);
         when(this.config.getURL()).thenReturn(URL);
@@ -131,11 +131,11 @@ class OpenAIGPTAPIServerTest
         when(this.httpResponse.statusCode()).thenReturn(200);
         when(this.httpResponse.body()).thenReturn(IOUtils.toInputStream(EMBEDDING_RESPONSE, StandardCharsets.UTF_8));
 
-        double[] embedding = this.server.embed(MODEL, List.of(INPUT)).get(0);
+        float[] embedding = this.server.embed(MODEL, List.of(INPUT)).get(0);
         assertEquals(3, embedding.length);
-        assertEquals(0.0023064255, embedding[0]);
-        assertEquals(-0.009327292, embedding[1]);
-        assertEquals(-0.0028842222, embedding[2]);
+        assertEquals(0.0023064255f, embedding[0]);
+        assertEquals(-0.009327292f, embedding[1]);
+        assertEquals(-0.0028842222f, embedding[2]);
 
         // Capture the POST request
         ArgumentCaptor<HttpRequest> requestCaptor = ArgumentCaptor.forClass(HttpRequest.class);
@@ -0,0 +1,116 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.xwiki.contrib.llm.GPTAPIConfig;
+import org.xwiki.model.reference.DocumentReference;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWiki;
+import com.xpn.xwiki.XWikiContext;
+import com.xpn.xwiki.doc.XWikiDocument;
+import com.xpn.xwiki.objects.BaseObject;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Component test for {@link GPTAPIConfigSnapshotCache}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class GPTAPIConfigSnapshotCacheTest
+{
+    private static final String WIKI = "wiki";
+
+    private static final String SERVER_NAME = "server";
+
+    @InjectMockComponents
+    private GPTAPIConfigSnapshotCache snapshotCache;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private GPTAPIConfigBuilder configBuilder;
+
+    @Mock
+    private XWikiContext context;
+
+    @Mock
+    private XWiki xwiki;
+
+    @Mock
+    private XWikiDocument configDocument;
+
+    @BeforeEach
+    void setUp() throws Exception
+    {
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWiki()).thenReturn(this.xwiki);
+        when(this.xwiki.getDocument(any(DocumentReference.class), any(XWikiContext.class)))
+            .thenReturn(this.configDocument);
+        BaseObject configObject = mock();
+        when(this.configDocument.getXObjects(any(DocumentReference.class))).thenReturn(List.of(configObject));
+        when(this.configBuilder.build(configObject))
+            .thenAnswer(invocation -> new GPTAPIConfig(Map.of("Name", SERVER_NAME)));
+    }
+
+    @Test
+    void getReusesSnapshot() throws Exception
+    {
+        Map<String, GPTAPIConfig> configs = this.snapshotCache.get(WIKI);
+        assertEquals(SERVER_NAME, configs.get(SERVER_NAME).getName());
+        assertSame(configs, this.snapshotCache.get(WIKI));
+
+        verify(this.xwiki).getDocument(new DocumentReference(WIKI, List.of("AI", "Code"), "AIConfig"),
+            this.context);
+    }
+
+    @Test
+    void invalidateReloadsConfiguration() throws Exception
+    {
+        Map<String, GPTAPIConfig> configs = this.snapshotCache.get(WIKI);
+        this.snapshotCache.invalidate("otherWiki");
+        assertSame(configs, this.snapshotCache.get(WIKI));
+
+        this.snapshotCache.invalidate(WIKI);
+        Map<String, GPTAPIConfig> reloadedConfigs = this.snapshotCache.get(WIKI);
+        assertEquals(SERVER_NAME, reloadedConfigs.get(SERVER_NAME).getName());
+
+        verify(this.xwiki, times(2)).getDocument(any(DocumentReference.class), any(XWikiContext.class));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.net.http.HttpClient;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.llm.GPTAPIConfig;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link HttpClientFactory}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class HttpClientFactoryTest
+{
+    @InjectMockComponents
+    private HttpClientFactory factory;
+
+    @AfterEach
+    void tearDown()
+    {
+        this.factory.dispose();
+    }
+
+    @Test
+    void getHttpClient()
+    {
+        GPTAPIConfig config = new GPTAPIConfig(Map.of("Name", "server", "url", "https://api.example.com/v1/"));
+
+        HttpClient client = this.factory.getHttpClient(config);
+        assertEquals(HttpClient.Version.HTTP_1_1, client.version());
+        // Requests to the same origin share the same client.
+        assertSame(client, this.factory.getHttpClient(config));
+        assertSame(client,
+            this.factory.getHttpClient("https://api.example.com/other/path", HttpClient.Version.HTTP_1_1));
+        assertNotSame(client,
+            this.factory.getHttpClient("https://other.example.com/v1/", HttpClient.Version.HTTP_1_1));
+
+        GPTAPIConfig http2Config = new GPTAPIConfig(
+            Map.of("Name", "server", "url", "https://api.example.com/v1/", "http2", 1));
+        HttpClient http2Client = this.factory.getHttpClient(http2Config);
+        assertEquals(HttpClient.Version.HTTP_2, http2Client.version());
+        assertNotSame(client, http2Client);
+
+        // A new client is created after the configuration has been released.
+        this.factory.release(config);
+        assertNotSame(client, this.factory.getHttpClient(config));
+        assertSame(http2Client, this.factory.getHttpClient(http2Config));
+    }
+
+    @Test
+    void releaseKeepsClientOfOtherServers()
+    {
+        GPTAPIConfig config = new GPTAPIConfig(Map.of("Name", "server", "url", "https://api.example.com/v1/"));
+        GPTAPIConfig otherConfig =
+            new GPTAPIConfig(Map.of("Name", "other", "url", "https://api.example.com/v2/"));
+
+        HttpClient client = this.factory.getHttpClient(config);
+        assertSame(client, this.factory.getHttpClient(otherConfig));
+
+        // The client is still used by the other server.
+        this.factory.release(config);
+        assertSame(client, this.factory.getHttpClient(otherConfig));
+
+        this.factory.release(otherConfig);
+        assertNotSame(client, this.factory.getHttpClient(otherConfig));
+    }
+}
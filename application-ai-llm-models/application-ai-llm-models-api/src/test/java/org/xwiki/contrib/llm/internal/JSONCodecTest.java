@@ -0,0 +1,62 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.xwiki.contrib.llm.openai.ChatCompletionChunk;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Unit tests for {@link JSONCodec}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class JSONCodecTest
+{
+    @InjectMockComponents
+    private JSONCodec codec;
+
+    @Test
+    void readAndWriteChunk() throws Exception
+    {
+        ChatCompletionChunk chunk = this.codec.getReader(ChatCompletionChunk.class)
+            .readValue("{\"id\":\"1\",\"created\":42,\"model\":\"gpt\",\"choices\":[],\"system_fingerprint\":\"x\"}");
+
+        assertEquals(new ChatCompletionChunk("1", 42, "gpt", List.of()), chunk);
+        assertEquals("{\"id\":\"1\",\"object\":\"chat.completion.chunk\",\"created\":42,\"model\":\"gpt\","
+            + "\"choices\":[]}", this.codec.getWriter(ChatCompletionChunk.class).writeValueAsString(chunk));
+    }
+
+    @Test
+    void readersAndWritersAreCached()
+    {
+        assertSame(this.codec.getReader(ChatCompletionChunk.class),
+            this.codec.getReader(ChatCompletionChunk.class));
+        assertSame(this.codec.getWriter(ChatCompletionChunk.class),
+            this.codec.getWriter(ChatCompletionChunk.class));
+    }
+}
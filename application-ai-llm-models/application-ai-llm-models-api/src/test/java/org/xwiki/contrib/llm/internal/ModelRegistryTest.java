@@ -0,0 +1,129 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.util.Map;
+
+import javax.inject.Named;
+import javax.inject.Provider;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.contrib.llm.ChatModel;
+import org.xwiki.test.junit5.mockito.ComponentTest;
+import org.xwiki.test.junit5.mockito.InjectMockComponents;
+import org.xwiki.test.junit5.mockito.MockComponent;
+
+import com.xpn.xwiki.XWikiContext;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Component test for {@link ModelRegistry}.
+ *
+ * @version $Id$
+ */
+@ComponentTest
+class ModelRegistryTest
+{
+    private static final String MODEL_NAME = "model";
+
+    @InjectMockComponents
+    private ModelRegistry modelRegistry;
+
+    @MockComponent
+    @Named("context")
+    private Provider<ComponentManager> componentManagerProvider;
+
+    @MockComponent
+    private Provider<XWikiContext> contextProvider;
+
+    @MockComponent
+    private ModelComponentFixer modelComponentFixer;
+
+    @Mock
+    private ComponentManager componentManager;
+
+    @Mock
+    private XWikiContext context;
+
+    @BeforeEach
+    void setUp()
+    {
+        when(this.componentManagerProvider.get()).thenReturn(this.componentManager);
+        when(this.contextProvider.get()).thenReturn(this.context);
+        when(this.context.getWikiId()).thenReturn("wiki");
+    }
+
+    @Test
+    void getModelsReusesModels() throws Exception
+    {
+        ChatModel model = mock();
+        when(this.componentManager.<ChatModel>getInstanceMap(ChatModel.class)).thenReturn(Map.of(MODEL_NAME, model));
+
+        Map<String, ChatModel> models = this.modelRegistry.getModels(ChatModel.class);
+        assertEquals(Map.of(MODEL_NAME, model), models);
+        assertSame(models, this.modelRegistry.getModels(ChatModel.class));
+
+        this.modelRegistry.invalidateAll();
+        assertEquals(Map.of(MODEL_NAME, model), this.modelRegistry.getModels(ChatModel.class));
+
+        verify(this.componentManager, times(2)).getInstanceMap(ChatModel.class);
+        verify(this.modelComponentFixer, never()).fixComponents();
+    }
+
+    @Test
+    void getModelsFixesMissingModels() throws Exception
+    {
+        ChatModel model = mock();
+        when(this.componentManager.<ChatModel>getInstanceMap(ChatModel.class))
+            .thenReturn(Map.of())
+            .thenReturn(Map.of(MODEL_NAME, model));
+
+        assertEquals(Map.of(MODEL_NAME, model), this.modelRegistry.getModels(ChatModel.class));
+
+        verify(this.modelComponentFixer).fixComponents();
+    }
+
+    @Test
+    void getModelFixesMissingModelOnce() throws Exception
+    {
+        ChatModel model = mock();
+        ChatModel otherModel = mock();
+        when(this.componentManager.<ChatModel>getInstanceMap(ChatModel.class))
+            .thenReturn(Map.of("other", otherModel))
+            .thenReturn(Map.of("other", otherModel, MODEL_NAME, model));
+
+        assertSame(model, this.modelRegistry.getModel(ChatModel.class, MODEL_NAME));
+        assertNull(this.modelRegistry.getModel(ChatModel.class, "missing"));
+        assertNull(this.modelRegistry.getModel(ChatModel.class, "missing"));
+
+        verify(this.modelComponentFixer, times(2)).fixComponents();
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.contrib.llm.internal;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.function.FailableFunction;
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.environment.Environment;
+
+import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
+import ai.djl.inference.Predictor;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ZooModel;
+
+/**
+ * Cache of loaded DJL embedding models, each with a bounded pool of predictors.
+ *
+ * <p>Loading a PyTorch model is far more expensive than running it, so models are loaded once and kept until they
+ * have been idle for {@link #IDLE_TIMEOUT} or until all servers that used them have released them. Predictors are
+ * not thread-safe, so every model keeps at most {@link #POOL_SIZE} predictors, one per concurrently embedding thread;
+ * additional callers wait for a predictor to become free.</p>
+ *
+ * @version $Id$
+ * @since 0.9.1
+ */
+@Component(roles = DJLModelCache.class)
+@Singleton
+public class DJLModelCache implements Initializable, Disposable
+{
+    /**
+     * The time after which a model that hasn't been used is unloaded.
+     */
+    static final Duration IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    /**
+     * The maximum number of predictors per model.
+     */
+    static final int POOL_SIZE = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    private static final String CACHE_DIR_PROPERTY = "DJL_CACHE_DIR";
+
+    @Inject
+    private Environment environment;
+
+    @Inject
+    private Logger logger;
+
+    private final Map<String, CachedModel> models = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService evictionExecutor;
+
+    /**
+     * A loaded model together with its pool of predictors.
+     */
+    private final class CachedModel
+    {
+        private final String modelName;
+
+        private final Semaphore permits = new Semaphore(POOL_SIZE, true);
+
+        private final Queue<Predictor<String, float[]>> idlePredictors = new ConcurrentLinkedQueue<>();
+
+        private final Set<Object> owners = ConcurrentHashMap.newKeySet();
+
+        private volatile ZooModel<String, float[]> model;
+
+        private volatile boolean closed;
+
+        private volatile long lastUsed = System.nanoTime();
+
+        CachedModel(String modelName)
+        {
+            this.modelName = modelName;
+        }
+
+        private synchronized ZooModel<String, float[]> getModel() throws Exception
+        {
+            if (this.model == null) {
+                logger.debug("Loading DJL model [{}]", this.modelName);
+                Criteria<String, float[]> criteria =
+                    Criteria.builder()
+                        .setTypes(String.class, float[].class)
+                        .optModelUrls("djl://ai.djl.huggingface.pytorch/" + this.modelName)
+                        .optEngine("PyTorch")
+                        .optTranslatorFactory(new TextEmbeddingTranslatorFactory())
+                        .build();
+                this.model = criteria.loadModel();
+            }
+
+            return this.model;
+        }
+
+        /**
+         * @return {@code true} if the predictor pool was acquired, {@code false} if the model has been closed
+         */
+        private boolean acquire() throws InterruptedException
+        {
+            this.permits.acquire();
+            if (this.closed) {
+                this.permits.release();
+                return false;
+            }
+            return true;
+        }
+
+        private Predictor<String, float[]> takePredictor() throws Exception
+        {
+            Predictor<String, float[]> predictor = this.idlePredictors.poll();
+            if (predictor == null) {
+                predictor = getModel().newPredictor();
+            }
+            return predictor;
+        }
+
+        private void release(Predictor<String, float[]> predictor)
+        {
+            if (predictor != null) {
+                this.idlePredictors.add(predictor);
+            }
+            this.lastUsed = System.nanoTime();
+            this.permits.release();
+        }
+
+        private boolean isIdle(long now)
+        {
+            return now - this.lastUsed > IDLE_TIMEOUT.toNanos();
+        }
+
+        /**
+         * Close the model and all its predictors, waiting for running predictions to finish.
+         */
+        private void close()
+        {
+            this.permits.acquireUninterruptibly(POOL_SIZE);
+            closeUnlocked();
+        }
+
+        /**
+         * Close the model if it is not currently used.
+         *
+         * @return {@code true} if the model was closed
+         */
+        private boolean tryClose()
+        {
+            if (this.permits.tryAcquire(POOL_SIZE)) {
+                closeUnlocked();
+                return true;
+            }
+            return false;
+        }
+
+        private void closeUnlocked()
+        {
+            // Release the permits after closing so that threads waiting on this model notice the closed flag and
+            // load a fresh model.
+            try {
+                this.closed = true;
+                Predictor<String, float[]> predictor;
+                while ((predictor = this.idlePredictors.poll()) != null) {
+                    predictor.close();
+                }
+                synchronized (this) {
+                    if (this.model != null) {
+                        logger.debug("Unloading DJL model [{}]", this.modelName);
+                        this.model.close();
+                        this.model = null;
+                    }
+                }
+            } finally {
+                this.permits.release(POOL_SIZE);
+            }
+        }
+    }
+
+    @Override
+    public void initialize()
+    {
+        if (StringUtils.isBlank(System.getProperty(CACHE_DIR_PROPERTY))) {
+            System.setProperty(CACHE_DIR_PROPERTY,
+                this.environment.getPermanentDirectory().toPath().resolve("cache/djl.ai").toAbsolutePath()
+                    .toString());
+        }
+
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+            .namingPattern("LLM DJL model eviction")
+            .daemon(true)
+            .build());
+        long period = IDLE_TIMEOUT.toSeconds() / 2;
+        this.evictionExecutor.scheduleWithFixedDelay(this::evictIdleModels, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Run the given function with a predictor of the given model, loading the model if necessary.
+     *
+     * @param modelName the name of the model on Hugging Face
+     * @param owner the object that uses the model, the model is kept loaded until all owners released it
+     * @param function the function to call with the predictor
+     * @param <R> the return type of the function
+     * @return the result of the function
+     * @throws Exception if loading the model or the function fails
+     */
+    public <R> R withPredictor(String modelName, Object owner,
+        FailableFunction<Predictor<String, float[]>, R, Exception> function) throws Exception
+    {
+        while (true) {
+            CachedModel cachedModel = this.models.computeIfAbsent(modelName, CachedModel::new);
+            if (cachedModel.acquire()) {
+                cachedModel.owners.add(owner);
+                Predictor<String, float[]> predictor = null;
+                try {
+                    predictor = cachedModel.takePredictor();
+                    return function.apply(predictor);
+                } finally {
+                    cachedModel.release(predictor);
+                }
+            } else {
+                // The model was closed concurrently, make sure it is gone before trying again.
+                this.models.remove(modelName, cachedModel);
+            }
+        }
+    }
+
+    /**
+     * Release all models used by the given owner. Models that aren't used by any other owner are unloaded.
+     *
+     * @param owner the owner that no longer needs its models
+     */
+    public void release(Object owner)
+    {
+        this.models.forEach((modelName, cachedModel) -> {
+            if (cachedModel.owners.remove(owner) && cachedModel.owners.isEmpty()
+                && this.models.remove(modelName, cachedModel)) {
+                cachedModel.close();
+            }
+        });
+    }
+
+    private void evictIdleModels()
+    {
+        long now = System.nanoTime();
+        this.models.forEach((modelName, cachedModel) -> {
+            if (cachedModel.isIdle(now) && cachedModel.tryClose()) {
+                this.models.remove(modelName, cachedModel);
+            }
+        });
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.evictionExecutor != null) {
+            this.evictionExecutor.shutdownNow();
+        }
+
+        this.models.values().forEach(CachedModel::close);
+        this.models.clear();
+    }
+}
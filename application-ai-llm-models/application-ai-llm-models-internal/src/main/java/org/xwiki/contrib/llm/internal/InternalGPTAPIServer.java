@@ -19,24 +19,25 @@
  */
 package org.xwiki.contrib.llm.internal;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
-import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.annotation.InstantiationStrategy;
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.contrib.llm.RequestError;
-import org.xwiki.environment.Environment;
 
-import ai.djl.huggingface.translator.TextEmbeddingTranslatorFactory;
 import ai.djl.inference.Predictor;
-import ai.djl.repository.zoo.Criteria;
-import ai.djl.repository.zoo.ZooModel;
 
 /**
  * An internal GPT API server that uses DJL to compute embeddings.
@@ -47,74 +48,115 @@ import ai.djl.repository.zoo.ZooModel;
 @Component(roles = GPTAPIServerWikiComponent.class)
 @InstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP)
 @Named("internal")
-public class InternalGPTAPIServer extends AbstractGPTAPIServer
+public class InternalGPTAPIServer extends AbstractGPTAPIServer implements Disposable
 {
-    private static final Logger LOGGER = LoggerFactory.getLogger(InternalGPTAPIServer.class);
+    /**
+     * The maximum number of texts that are passed to the model in a single batch.
+     */
+    static final int MAX_BATCH_SIZE = 32;
 
-    private static final String CACHE_DIR_PROPERTY = "DJL_CACHE_DIR";
+    /**
+     * The maximum ratio between the length of the longest and of the shortest text in a batch. All texts of a batch
+     * are padded to the length of the longest one, so mixing short and long texts wastes computation on padding.
+     */
+    static final int MAX_LENGTH_RATIO = 2;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InternalGPTAPIServer.class);
 
     @Inject
-    private Environment environment;
+    private DJLModelCache modelCache;
 
     @Override
-    public List<double[]> embed(String modelName, List<String> texts) throws RequestError
+    public List<float[]> embed(String modelName, List<String> texts) throws RequestError
     {
         try {
-            if (StringUtils.isBlank(System.getProperty(CACHE_DIR_PROPERTY))) {
-                System.setProperty(CACHE_DIR_PROPERTY,
-                    this.environment.getPermanentDirectory().toPath().resolve("cache/djl.ai").toAbsolutePath()
-                        .toString());
-            }
-
-            Criteria<String, float[]> criteria =
-                Criteria.builder()
-                    .setTypes(String.class, float[].class)
-                    .optModelUrls("djl://ai.djl.huggingface.pytorch/" + modelName)
-                    .optEngine("PyTorch")
-                    .optTranslatorFactory(new TextEmbeddingTranslatorFactory())
-                    .build();
-
-            try (ZooModel<String, float[]> model = criteria.loadModel();
-                 Predictor<String, float[]> predictor = model.newPredictor()) {
-
-                return computeEmbeddingsWithPredictor(texts, predictor);
-            }
+            return this.modelCache.withPredictor(modelName, this,
+                predictor -> computeEmbeddingsWithPredictor(texts, predictor));
         } catch (Exception e) {
             throw new RequestError(500, "Failed to compute embedding using DJL with model [%s].".formatted(modelName),
                 e);
         }
     }
 
-    private List<double[]> computeEmbeddingsWithPredictor(List<String> texts, Predictor<String, float[]> predictor)
+    @Override
+    public void dispose()
     {
-        return texts.stream()
-            .map(text -> predictAndConvert(text, predictor))
-            .toList();
+        // Called when the server configuration is removed or changed, unload the models that are no longer needed.
+        this.modelCache.release(this);
     }
 
-    private double[] predictAndConvert(String text, Predictor<String, float[]> predictor)
+    private List<float[]> computeEmbeddingsWithPredictor(List<String> texts, Predictor<String, float[]> predictor)
     {
-        try {
-            float[] embeddings = predictor.predict(text);
-            return convertFloatToDouble(embeddings);
-        } catch (Exception e) {
-            LOGGER.error("Failed to compute embeddings for text: {}", text, e);
-            return new double[0];
+        float[][] result = new float[texts.size()][];
+
+        for (List<Integer> batch : getBatches(texts)) {
+            List<String> batchTexts = batch.stream().map(texts::get).toList();
+            List<float[]> embeddings = predictBatch(batchTexts, predictor);
+            for (int i = 0; i < batch.size(); i++) {
+                result[batch.get(i)] = embeddings.get(i);
+            }
         }
+
+        return Arrays.asList(result);
     }
 
     /**
-     * Convert a float array to a double array.
+     * Split the texts into batches of texts of similar length to limit padding.
      *
-     * @param floatArray the float array to convert
-     * @return the converted double array
+     * @param texts the texts to split
+     * @return the batches as lists of indexes in the given list of texts
      */
-    private double[] convertFloatToDouble(float[] floatArray)
+    static List<List<Integer>> getBatches(List<String> texts)
     {
-        double[] doubleArray = new double[floatArray.length];
-        for (int i = 0; i < floatArray.length; i++) {
-            doubleArray[i] = floatArray[i];
+        List<Integer> sortedIndexes = IntStream.range(0, texts.size()).boxed()
+            .sorted(Comparator.comparingInt(i -> texts.get(i).length()))
+            .toList();
+
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Integer> currentBatch = new ArrayList<>();
+        int shortestLength = 0;
+        for (Integer index : sortedIndexes) {
+            int length = texts.get(index).length();
+            if (!currentBatch.isEmpty() && (currentBatch.size() >= MAX_BATCH_SIZE
+                || length > Math.max(shortestLength, 1) * MAX_LENGTH_RATIO)) {
+                batches.add(currentBatch);
+                currentBatch = new ArrayList<>();
+            }
+            if (currentBatch.isEmpty()) {
+                shortestLength = length;
+            }
+            currentBatch.add(index);
+        }
+        if (!currentBatch.isEmpty()) {
+            batches.add(currentBatch);
+        }
+
+        return batches;
+    }
+
+    private List<float[]> predictBatch(List<String> texts, Predictor<String, float[]> predictor)
+    {
+        if (texts.size() > 1) {
+            try {
+                return predictor.batchPredict(texts);
+            } catch (Exception e) {
+                LOGGER.warn("Failed to compute embeddings for a batch of [{}] texts, computing them one by one. "
+                    + "Root cause: [{}]", texts.size(), ExceptionUtils.getRootCauseMessage(e));
+            }
+        }
+
+        return texts.stream()
+            .map(text -> predict(text, predictor))
+            .toList();
+    }
+
+    private float[] predict(String text, Predictor<String, float[]> predictor)
+    {
+        try {
+            return predictor.predict(text);
+        } catch (Exception e) {
+            LOGGER.error("Failed to compute embeddings for text: {}", text, e);
+            return new float[0];
         }
-        return doubleArray;
     }
 }
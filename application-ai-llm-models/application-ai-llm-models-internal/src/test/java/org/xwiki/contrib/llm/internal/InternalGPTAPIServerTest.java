@@ -19,8 +19,9 @@
  */
 package org.xwiki.contrib.llm.internal;
 
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.Test;
 import org.xwiki.test.TestEnvironment;
@@ -28,6 +29,7 @@ import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.junit5.mockito.ComponentTest;
 import org.xwiki.test.junit5.mockito.InjectMockComponents;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -37,7 +39,7 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
  * @version $Id$
  */
 @ComponentTest
-@ComponentList(TestEnvironment.class)
+@ComponentList({ TestEnvironment.class, DJLModelCache.class })
 class InternalGPTAPIServerTest
 {
     @InjectMockComponents
@@ -46,10 +48,40 @@ class InternalGPTAPIServerTest
     @Test
     void embed() throws Exception
     {
-        List<double[]> embed = this.server.embed("sentence-transformers/all-MiniLM-L6-v2", List.of("XWiki is great!"));
+        List<float[]> embed = this.server.embed("sentence-transformers/all-MiniLM-L6-v2", List.of("XWiki is great!"));
 
         assertEquals(1, embed.size());
         assertEquals(384, embed.get(0).length);
-        assertTrue(Arrays.stream(embed.get(0)).anyMatch(x -> x != 0));
+        float[] embedding = embed.get(0);
+        assertTrue(IntStream.range(0, embedding.length).anyMatch(i -> embedding[i] != 0));
+
+        // The second call reuses the loaded model and must return the same embedding.
+        List<float[]> secondEmbed = this.server.embed("sentence-transformers/all-MiniLM-L6-v2",
+            List.of("XWiki is great!"));
+        assertArrayEquals(embed.get(0), secondEmbed.get(0));
+
+        // Embedding several texts of different lengths in batches must give the same result for each text.
+        List<float[]> batchEmbed = this.server.embed("sentence-transformers/all-MiniLM-L6-v2",
+            List.of("A much longer text about XWiki that will be in a different batch.", "XWiki is great!",
+                "XWiki"));
+        assertEquals(3, batchEmbed.size());
+        assertArrayEquals(embed.get(0), batchEmbed.get(1), 1e-5f);
+
+        this.server.dispose();
+    }
+
+    @Test
+    void getBatches()
+    {
+        List<String> texts = List.of("a".repeat(100), "b", "c".repeat(10), "d".repeat(15), "e".repeat(40));
+
+        assertEquals(List.of(List.of(1), List.of(2, 3), List.of(4), List.of(0)),
+            InternalGPTAPIServer.getBatches(texts));
+
+        List<String> manyTexts = Collections.nCopies(InternalGPTAPIServer.MAX_BATCH_SIZE + 1, "text");
+        List<List<Integer>> batches = InternalGPTAPIServer.getBatches(manyTexts);
+        assertEquals(2, batches.size());
+        assertEquals(InternalGPTAPIServer.MAX_BATCH_SIZE, batches.get(0).size());
+        assertEquals(1, batches.get(1).size());
     }
 }